@@ -0,0 +1,94 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.benchmarks;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.excilys.ebi.spring.dbunit.config.DBType;
+
+/**
+ * The embedded databases the benchmarks run against. Each call to
+ * {@link #createDataSource()} creates a new in-memory database with the
+ * {@link SyntheticDataSets} schema.
+ */
+public enum BenchmarkDatabase {
+
+    H2(DBType.H2, "org.h2.Driver", "jdbc:h2:mem:bench%d;DB_CLOSE_DELAY=-1"), /**/
+    HSQLDB(DBType.HSQLDB, "org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:bench%d");
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final DBType dbType;
+
+    private final String driverClassName;
+
+    private final String urlPattern;
+
+    private BenchmarkDatabase(DBType dbType, String driverClassName, String urlPattern) {
+        this.dbType = dbType;
+        this.driverClassName = driverClassName;
+        this.urlPattern = urlPattern;
+    }
+
+    public DBType getDbType() {
+        return dbType;
+    }
+
+    /**
+     * @return a single connection, auto-commit data source on a new database,
+     *         to be closed with {@link #shutdown(SingleConnectionDataSource)}
+     * @throws SQLException JDBC failure
+     */
+    public SingleConnectionDataSource createDataSource() throws SQLException {
+
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(String.format(urlPattern, COUNTER.incrementAndGet()), "sa", "", true);
+        dataSource.setDriverClassName(driverClassName);
+
+        execute(dataSource, SyntheticDataSets.DDL);
+        return dataSource;
+    }
+
+    public void shutdown(SingleConnectionDataSource dataSource) throws SQLException {
+        try {
+            execute(dataSource, "SHUTDOWN");
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static void execute(DataSource dataSource, String... statements) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetCache;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions;
+
+/**
+ * Parsing cost of each {@link DataSetFormat}, cache excluded.
+ * <p>
+ * <code>load</code> builds the dataset the way the populator does and reads
+ * every value, as lazy formats only parse while iterating. <code>produce</code>
+ * only drives the format's producer, which is what the streaming path does;
+ * CSV has no producer of its own, so its <code>produce</code> figure is the
+ * cost of replaying the cached dataset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataSetFormatBenchmark {
+
+    @Param({ "FLAT", "FLYWEIGHT_FLAT", "XML", "STREAMING", "CSV", "BINARY" })
+    private DataSetFormat format;
+
+    @Param({ "100", "10000", "100000" })
+    private int rows;
+
+    private final DataSetFormatOptions options = new DataSetFormatOptions();
+
+    // a disabled cache always parses
+    private final DataSetCache noCache = new DataSetCache(0);
+
+    private File directory;
+
+    private Resource resource;
+
+    @Setup
+    public void generate() throws DataSetException, IOException {
+        directory = File.createTempFile("spring-dbunit-benchmarks", "");
+        directory.delete();
+        resource = new FileSystemResource(SyntheticDataSets.write(rows, format, directory));
+    }
+
+    @TearDown
+    public void delete() {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) throws DataSetException, IOException {
+
+        IDataSet dataSet = noCache.get(format, resource, options);
+
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next()) {
+            ITable table = iterator.getTable();
+            Column[] columns = table.getTableMetaData().getColumns();
+            // streamed tables don't know their row count
+            try {
+                for (int row = 0;; row++) {
+                    for (Column column : columns) {
+                        blackhole.consume(table.getValue(row, column.getColumnName()));
+                    }
+                }
+            } catch (RowOutOfBoundsException e) {
+                // end of table
+            }
+        }
+    }
+
+    @Benchmark
+    public void produce(final Blackhole blackhole) throws DataSetException, IOException {
+
+        IDataSetProducer producer = format.producer(resource, options);
+        producer.setConsumer(new DefaultConsumer() {
+            @Override
+            public void row(Object[] values) {
+                blackhole.consume(values);
+            }
+        });
+        producer.produce();
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.benchmarks;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetConfiguration.newDataSetConfiguration;
+import static com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration.newExpectedDataSetConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.dbunit.Assertion;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.FileSystemUtils;
+
+import com.excilys.ebi.spring.dbunit.BulkDataReader;
+import com.excilys.ebi.spring.dbunit.DbUnitDatabasePopulator;
+import com.excilys.ebi.spring.dbunit.DefaultDataReader;
+import com.excilys.ebi.spring.dbunit.assertion.HashingAssertion;
+import com.excilys.ebi.spring.dbunit.config.ComparisonMode;
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.config.Phase;
+
+/**
+ * Cost of checking an expected dataset against the database, the way the
+ * test execution listener does it: the tables are read at once through the
+ * {@link BulkDataReader}, then each one is compared with DBUnit's
+ * {@link Assertion} or with the {@link HashingAssertion}. With checksums,
+ * only the tables whose checksums differ are read and compared. Streaming
+ * merges the expected files with the tables without loading either.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpectedDataSetBenchmark {
+
+    @Param({ "H2", "HSQLDB" })
+    private BenchmarkDatabase database;
+
+    @Param({ "1000", "10000" })
+    private int rows;
+
+    @Param({ "DBUNIT", "HASH", "CHECKSUM", "STREAMING" })
+    private ComparisonMode comparisonMode;
+
+    private File directory;
+
+    private SingleConnectionDataSource dataSource;
+
+    private GenericApplicationContext applicationContext;
+
+    private ExpectedDataSetConfiguration expectedConfiguration;
+
+    private final BulkDataReader dataReader = new DefaultDataReader();
+
+    @Setup
+    public void setUp() throws DataSetException, IOException, SQLException {
+
+        directory = File.createTempFile("spring-dbunit-benchmarks", "");
+        directory.delete();
+        String location = "file:" + SyntheticDataSets.write(rows, DataSetFormat.FLAT, directory).getAbsolutePath();
+
+        dataSource = database.createDataSource();
+        applicationContext = new GenericApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton("dataSource", dataSource);
+        applicationContext.refresh();
+
+        DbUnitDatabasePopulator populator = new DbUnitDatabasePopulator();
+        populator.setDataSetConfiguration(newDataSetConfiguration()/**/
+                .withDataSetResourceLocations(new String[] { location })/**/
+                .withDbType(database.getDbType())/**/
+                .withSetUpOp(new DBOperation[] { DBOperation.CLEAN_INSERT }).build());
+        populator.setPhase(Phase.SETUP);
+        populator.populate(dataSource.getConnection());
+
+        expectedConfiguration = newExpectedDataSetConfiguration()/**/
+        .withDataSetResourceLocations(new String[] { location })/**/
+        .withDbType(database.getDbType()).build();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try {
+            database.shutdown(dataSource);
+        } finally {
+            applicationContext.close();
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    public void compare() throws Exception {
+        if (comparisonMode == ComparisonMode.STREAMING) {
+            dataReader.verifyStreaming(applicationContext, expectedConfiguration);
+            return;
+        }
+
+        IDataSet expectedDataSet = expectedConfiguration.getDataSet();
+        String[] tableNames = expectedDataSet.getTableNames();
+        if (comparisonMode == ComparisonMode.CHECKSUM) {
+            tableNames = dataReader.verifyChecksums(applicationContext, expectedConfiguration, expectedDataSet);
+        }
+        IDataSet dataSet = dataReader.execute(applicationContext, expectedConfiguration, tableNames);
+        for (String tableName : tableNames) {
+            if (comparisonMode != ComparisonMode.DBUNIT) {
+                HashingAssertion.assertEquals(expectedDataSet.getTable(tableName), dataSet.getTable(tableName));
+            } else {
+                Assertion.assertEquals(expectedDataSet.getTable(tableName), dataSet.getTable(tableName));
+            }
+        }
+    }
+}
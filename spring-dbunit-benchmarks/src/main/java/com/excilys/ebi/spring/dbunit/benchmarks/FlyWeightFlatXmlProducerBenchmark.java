@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.InputSource;
+
+import com.excilys.ebi.spring.dbunit.dataset.xml.flyweight.FlyWeightFlatXmlProducer;
+import com.excilys.ebi.spring.dbunit.dataset.xml.stax.StaxFlatXmlProducer;
+
+/**
+ * Cost of turning the XML attributes of a row into values, which grows with
+ * the number of columns. <code>sparse</code> rows omit every other null
+ * value, so that consecutive rows don't have the same attributes. The SAX
+ * based flyweight producer is compared with the StAX one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlyWeightFlatXmlProducerBenchmark {
+
+    @Param({ "4", "32" })
+    private int columns;
+
+    @Param({ "false", "true" })
+    private boolean sparse;
+
+    @Param({ "100000" })
+    private int rows;
+
+    private byte[] content;
+
+    @Setup
+    public void generate() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        writer.write("<dataset>\n");
+        for (int row = 0; row < rows; row++) {
+            writer.write("<WIDE");
+            for (int column = 0; column < columns; column++) {
+                if (!sparse || column == 0 || (row + column) % 2 == 0) {
+                    writer.write(" COL" + column + "=\"value" + (row + column) % 500 + "\"");
+                }
+            }
+            writer.write("/>\n");
+        }
+        writer.write("</dataset>");
+        writer.close();
+        content = out.toByteArray();
+    }
+
+    @Benchmark
+    public void produce(final Blackhole blackhole) throws DataSetException {
+        // column sensing, so that sparse rows don't lose columns
+        FlyWeightFlatXmlProducer producer = new FlyWeightFlatXmlProducer(new InputSource(new ByteArrayInputStream(content)), false, sparse, false);
+        producer.setConsumer(new DefaultConsumer() {
+            @Override
+            public void row(Object[] values) {
+                blackhole.consume(values);
+            }
+        });
+        producer.produce();
+    }
+
+    @Benchmark
+    public void produceStax(final Blackhole blackhole) throws DataSetException {
+        StaxFlatXmlProducer producer = new StaxFlatXmlProducer(new ByteArrayInputStream(content), null, sparse, false);
+        producer.setConsumer(new DefaultConsumer() {
+            @Override
+            public void row(Object[] values) {
+                blackhole.consume(values);
+            }
+        });
+        producer.produce();
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.benchmarks;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetConfiguration.newDataSetConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.dbunit.dataset.DataSetException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.FileSystemUtils;
+
+import com.excilys.ebi.spring.dbunit.DbUnitDatabasePopulator;
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
+import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.config.Phase;
+
+/**
+ * Cost of {@link DbUnitDatabasePopulator#populate(Connection)} for each
+ * {@link DBOperation}, against embedded databases.
+ * <p>
+ * The dataset is parsed once and then served by the dataset cache, so only
+ * the database work is measured. Before each invocation, the tables are put in
+ * the state the operation expects: empty for INSERT, loaded for the others.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PopulateBenchmark {
+
+    @Param({ "H2", "HSQLDB" })
+    private BenchmarkDatabase database;
+
+    @Param({ "INSERT", "CLEAN_INSERT", "REFRESH", "UPDATE", "DELETE", "DELETE_ALL" })
+    private DBOperation operation;
+
+    @Param({ "false", "true" })
+    private boolean batchedStatements;
+
+    /**
+     * Not a divisor of the row counts: DBUnit then ends with an empty batch,
+     * which HSQLDB rejects
+     */
+    @Param({ "128" })
+    private int batchSize;
+
+    @Param({ "FLAT" })
+    private DataSetFormat format;
+
+    @Param({ "false" })
+    private boolean streaming;
+
+    @Param({ "1000", "10000" })
+    private int rows;
+
+    private File directory;
+
+    private SingleConnectionDataSource dataSource;
+
+    private DbUnitDatabasePopulator populator;
+
+    private DbUnitDatabasePopulator preparer;
+
+    @Setup
+    public void setUp() throws DataSetException, IOException, SQLException {
+
+        directory = File.createTempFile("spring-dbunit-benchmarks", "");
+        directory.delete();
+        String location = "file:" + SyntheticDataSets.write(rows, format, directory).getAbsolutePath();
+
+        dataSource = database.createDataSource();
+
+        populator = populator(newDataSetConfiguration()/**/
+                .withDataSetResourceLocations(new String[] { location })/**/
+                .withFormat(format)/**/
+                .withDbType(database.getDbType())/**/
+                .withBatchedStatements(batchedStatements)/**/
+                .withBatchSize(batchSize)/**/
+                .withStreaming(streaming)/**/
+                .withSetUpOp(new DBOperation[] { operation }).build());
+
+        preparer = populator(newDataSetConfiguration()/**/
+                .withDataSetResourceLocations(new String[] { location })/**/
+                .withFormat(format)/**/
+                .withDbType(database.getDbType())/**/
+                .withBatchedStatements(true)/**/
+                .withBatchSize(batchSize)/**/
+                .withSetUpOp(new DBOperation[] { operation == DBOperation.INSERT ? DBOperation.DELETE_ALL : DBOperation.CLEAN_INSERT }).build());
+    }
+
+    private static DbUnitDatabasePopulator populator(DataSetConfiguration configuration) {
+        DbUnitDatabasePopulator populator = new DbUnitDatabasePopulator();
+        populator.setDataSetConfiguration(configuration);
+        populator.setPhase(Phase.SETUP);
+        return populator;
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() throws SQLException {
+        preparer.populate(dataSource.getConnection());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try {
+            database.shutdown(dataSource);
+        } finally {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    public void populate() throws SQLException {
+        populator.populate(dataSource.getConnection());
+    }
+}
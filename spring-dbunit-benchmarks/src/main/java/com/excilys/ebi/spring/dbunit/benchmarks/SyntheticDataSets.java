@@ -0,0 +1,180 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Random;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.csv.CsvDataSetWriter;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.XmlDataSet;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.dataset.binary.BinaryDataSet;
+
+/**
+ * Generates reproducible datasets of any size, and writes them in the
+ * different {@link DataSetFormat formats}.
+ * <p>
+ * The generated dataset has a parent table and a child table referencing it,
+ * with a mix of column types and some null values.
+ */
+public final class SyntheticDataSets {
+
+    public static final String PARENT_TABLE = "BENCH_PARENT";
+
+    public static final String CHILD_TABLE = "BENCH_CHILD";
+
+    /**
+     * DDL creating the tables of the generated datasets, understood by both H2
+     * and HSQLDB
+     */
+    public static final String[] DDL = {
+            "CREATE TABLE " + PARENT_TABLE + " (ID INTEGER PRIMARY KEY, NAME VARCHAR(64) NOT NULL, CREATED TIMESTAMP)",
+            "CREATE TABLE " + CHILD_TABLE + " (ID INTEGER PRIMARY KEY, PARENT_ID INTEGER NOT NULL REFERENCES " + PARENT_TABLE
+                    + " (ID), LABEL VARCHAR(255), AMOUNT DECIMAL(12, 2), ACTIVE BOOLEAN)" };
+
+    private static final Column[] PARENT_COLUMNS = { new Column("ID", DataType.INTEGER), new Column("NAME", DataType.VARCHAR),
+            new Column("CREATED", DataType.TIMESTAMP) };
+
+    private static final Column[] CHILD_COLUMNS = { new Column("ID", DataType.INTEGER), new Column("PARENT_ID", DataType.INTEGER),
+            new Column("LABEL", DataType.VARCHAR), new Column("AMOUNT", DataType.DECIMAL), new Column("ACTIVE", DataType.BOOLEAN) };
+
+    private static final int CHILDREN_PER_PARENT = 4;
+
+    private static final long SEED = 42L;
+
+    private SyntheticDataSets() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param rows the number of rows of the child table, the parent table has
+     *            a quarter of them
+     * @return an in-memory dataset, always the same for the same number of rows
+     * @throws DataSetException DBUnit failure
+     */
+    public static IDataSet generate(int rows) throws DataSetException {
+
+        Random random = new Random(SEED);
+        int parents = Math.max(1, rows / CHILDREN_PER_PARENT);
+        long now = 1300000000000L;
+
+        DefaultTable parentTable = new DefaultTable(PARENT_TABLE, PARENT_COLUMNS);
+        for (int i = 0; i < parents; i++) {
+            // the first row has no null value, so that flat XML files don't need column sensing
+            Timestamp created = i % 10 == 9 ? null : new Timestamp(now - random.nextInt(1000000) * 1000L);
+            parentTable.addRow(new Object[] { i, "parent" + i, created });
+        }
+
+        DefaultTable childTable = new DefaultTable(CHILD_TABLE, CHILD_COLUMNS);
+        for (int i = 0; i < rows; i++) {
+            String label = i % 7 == 3 ? null : randomText(random, 10 + random.nextInt(60));
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(10000000), 2);
+            childTable.addRow(new Object[] { i, i % parents, label, amount, random.nextBoolean() });
+        }
+
+        return new DefaultDataSet(parentTable, childTable);
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            // letters and a few spaces
+            int c = random.nextInt(27);
+            chars[i] = c == 26 ? ' ' : (char) ('a' + c);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Writes a dataset in the given format
+     * 
+     * @param dataSet the dataset
+     * @param format FLAT, FLYWEIGHT_FLAT, XML, STREAMING, CSV or BINARY
+     * @param directory the target directory
+     * @return the file, or the directory for CSV, to load with the format
+     * @throws DataSetException DBUnit failure
+     * @throws IOException I/O failure
+     */
+    public static File write(IDataSet dataSet, DataSetFormat format, File directory) throws DataSetException, IOException {
+
+        directory.mkdirs();
+
+        switch (format) {
+        case FLAT:
+        case FLYWEIGHT_FLAT:
+            File flatFile = new File(directory, "dataSet-flat.xml");
+            OutputStream flatOut = new FileOutputStream(flatFile);
+            try {
+                FlatXmlDataSet.write(dataSet, flatOut);
+            } finally {
+                flatOut.close();
+            }
+            return flatFile;
+
+        case XML:
+        case STREAMING:
+            File xmlFile = new File(directory, "dataSet.xml");
+            OutputStream xmlOut = new FileOutputStream(xmlFile);
+            try {
+                XmlDataSet.write(dataSet, xmlOut);
+            } finally {
+                xmlOut.close();
+            }
+            return xmlFile;
+
+        case CSV:
+            File csvDirectory = new File(directory, "csv");
+            csvDirectory.mkdirs();
+            CsvDataSetWriter.write(dataSet, csvDirectory);
+            return csvDirectory;
+
+        case BINARY:
+            File binaryFile = new File(directory, "dataSet.bin");
+            BinaryDataSet.write(dataSet, binaryFile);
+            return binaryFile;
+
+        default:
+            throw new IllegalArgumentException("Can't generate datasets in format " + format);
+        }
+    }
+
+    /**
+     * Generates a dataset and writes it in the given format
+     * 
+     * @param rows the number of rows of the child table
+     * @param format the format
+     * @param directory the target directory
+     * @return the file, or the directory for CSV, to load with the format
+     * @throws DataSetException DBUnit failure
+     * @throws IOException I/O failure
+     */
+    public static File write(int rows, DataSetFormat format, File directory) throws DataSetException, IOException {
+        return write(generate(rows), format, directory);
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit;
+
+import org.dbunit.dataset.IDataSet;
+import org.springframework.context.ApplicationContext;
+
+import com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration;
+
+/**
+ * {@link DataReader} able to read and compare several tables at once, which
+ * custom readers implementing only {@link DataReader} are not required to be
+ */
+public interface BulkDataReader extends DataReader {
+
+	/**
+	 * Read all the given tables at once, so that they can be compared with
+	 * an expected dataset
+	 * 
+	 * @param applicationContext
+	 *            the context holding the DataSource
+	 * @param expectedDataSetConfiguration
+	 *            the configuration
+	 * @param tableNames
+	 *            the names of the tables to read
+	 * @return a dataset holding the tables, which doesn't depend on the
+	 *         database connection anymore
+	 */
+	IDataSet execute(ApplicationContext applicationContext, ExpectedDataSetConfiguration expectedDataSetConfiguration, String[] tableNames) throws Exception;
+
+	/**
+	 * Compare the checksums of the expected tables with the ones the database
+	 * computes, see {@link com.excilys.ebi.spring.dbunit.assertion.TableChecksum}
+	 * 
+	 * @param applicationContext
+	 *            the context holding the DataSource
+	 * @param expectedDataSetConfiguration
+	 *            the configuration
+	 * @param expectedDataSet
+	 *            the expected tables
+	 * @return the names of the tables that the checksums didn't prove equal,
+	 *         because they differ or can't be computed, to be compared row by
+	 *         row
+	 */
+	String[] verifyChecksums(ApplicationContext applicationContext, ExpectedDataSetConfiguration expectedDataSetConfiguration, IDataSet expectedDataSet)
+			throws Exception;
+
+	/**
+	 * Compare the expected files with the database while streaming both, see
+	 * {@link com.excilys.ebi.spring.dbunit.assertion.StreamingAssertion}
+	 * 
+	 * @param applicationContext
+	 *            the context holding the DataSource
+	 * @param expectedDataSetConfiguration
+	 *            the configuration
+	 * @throws org.dbunit.assertion.DbComparisonFailure
+	 *             on the first table that differs
+	 */
+	void verifyStreaming(ApplicationContext applicationContext, ExpectedDataSetConfiguration expectedDataSetConfiguration) throws Exception;
+}
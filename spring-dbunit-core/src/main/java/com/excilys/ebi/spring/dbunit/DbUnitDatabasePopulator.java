@@ -15,16 +15,30 @@
  */
 package com.excilys.ebi.spring.dbunit;
 
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getDataSetFingerprint;
 import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getDatabaseConnection;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getQualifiedName;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.releaseDatabaseConnection;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.IOException;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
 
 import org.dbunit.DatabaseUnitException;
-import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.FilteredDataSet;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.ReplacementDataSet;
 import org.dbunit.operation.DatabaseOperation;
@@ -33,9 +47,20 @@ import org.springframework.beans.factory.annotation.Required;
 import org.springframework.jdbc.datasource.init.DatabasePopulator;
 import org.springframework.util.StopWatch;
 
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
 import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
 import com.excilys.ebi.spring.dbunit.config.Phase;
+import com.excilys.ebi.spring.dbunit.database.ForeignKeyGraph;
 import com.excilys.ebi.spring.dbunit.dataset.DataSetDecorator;
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetricsListener;
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetricsRecorder;
+import com.excilys.ebi.spring.dbunit.metrics.Step;
+import com.excilys.ebi.spring.dbunit.operation.ForeignKeyChecks;
+import com.excilys.ebi.spring.dbunit.operation.ParallelOperation;
+import com.excilys.ebi.spring.dbunit.operation.SequenceResetOperation;
+import com.excilys.ebi.spring.dbunit.operation.SnapshotOperation;
+import com.excilys.ebi.spring.dbunit.operation.StreamingOperation;
+import com.excilys.ebi.spring.dbunit.tracking.DirtyTableTracker;
 
 public class DbUnitDatabasePopulator implements DatabasePopulator {
 
@@ -45,21 +70,49 @@ public class DbUnitDatabasePopulator implements DatabasePopulator {
 
     private Phase phase;
 
+    private DataSetMetricsListener metricsListener;
+
+    private DataSource dataSource;
+
+    /**
+     * Set when the foreign key checks were to be disabled but can't be
+     */
+    private boolean orderByForeignKeysInstead;
+
     @Override
     public void populate(Connection connection) throws SQLException {
 
         LOGGER.debug("populating");
 
         StopWatch sw = new StopWatch("DbUnitDatabasePopulator");
+        DataSetMetricsRecorder metrics = new DataSetMetricsRecorder(metricsListener, phase);
 
-        DatabaseOperation operation = phase.getOperation(dataSetConfiguration);
+        DBOperation[] operations = phase.getOperations(dataSetConfiguration);
         try {
-            IDataSet dataSet = decorateDataSetIfNeeded(dataSetConfiguration.getDataSet(), dataSetConfiguration.getDecorators());
             String schema = dataSetConfiguration.getSchema();
-            DatabaseConnection databaseConnection = getDatabaseConnection(connection, schema, dataSetConfiguration);
-            sw.start("populating");
-            operation.execute(databaseConnection, dataSet);
-            sw.stop();
+            long start = System.nanoTime();
+            IDatabaseConnection databaseConnection = getDatabaseConnection(dataSource, connection, schema, dataSetConfiguration);
+            metrics.record(Step.CONNECT, null, start, -1);
+
+            try {
+                ForeignKeyChecks foreignKeyChecks = getForeignKeyChecksToDisable(connection);
+                if (foreignKeyChecks == null) {
+                    populate(connection, databaseConnection, operations, sw, metrics);
+
+                } else {
+                    String[] tables = foreignKeyChecks.isPerTable() ? getQualifiedTableNames(databaseConnection) : null;
+                    foreignKeyChecks.disable(connection, tables);
+                    boolean populated = false;
+                    try {
+                        populate(connection, databaseConnection, operations, sw, metrics);
+                        populated = true;
+                    } finally {
+                        enableForeignKeyChecks(foreignKeyChecks, connection, tables, populated);
+                    }
+                }
+            } finally {
+                releaseDatabaseConnection(databaseConnection);
+            }
             LOGGER.debug(sw.prettyPrint());
 
         } catch (BatchUpdateException e) {
@@ -74,16 +127,372 @@ public class DbUnitDatabasePopulator implements DatabasePopulator {
         }
     }
 
+    private void populate(Connection connection, IDatabaseConnection databaseConnection, DBOperation[] operations, StopWatch sw, DataSetMetricsRecorder metrics)
+            throws DatabaseUnitException, SQLException, IOException {
+
+        DirtyTableTracker tracker = getDirtyTableTrackerIfNeeded(connection, operations);
+        if (tracker == null) {
+            String[] tableNames = populate(connection, databaseConnection, operations, null, sw, metrics);
+            resetSequencesIfNeeded(databaseConnection, operations, tableNames, sw);
+
+        } else {
+            String fingerprint = getDataSetFingerprint(dataSetConfiguration, databaseConnection);
+            Set<String> dirtyTables = tracker.getDirtyTables(fingerprint);
+            boolean loaded = false;
+            tracker.suspend();
+            try {
+                String[] tableNames = populate(connection, databaseConnection, operations, dirtyTables, sw, metrics);
+                // still suspended, so that restarting identities leaves the tables clean
+                resetSequencesIfNeeded(databaseConnection, operations, tableNames, sw);
+                loaded = true;
+            } finally {
+                tracker.resume();
+                if (loaded) {
+                    tracker.loaded(fingerprint);
+                } else {
+                    tracker.markAllDirty();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param dirtyTables the tables to reload, or null to load the whole
+     *            dataset
+     * @return the names of the loaded tables
+     */
+    private String[] populate(Connection connection, IDatabaseConnection databaseConnection, DBOperation[] operations, Set<String> dirtyTables, StopWatch sw,
+            DataSetMetricsRecorder metrics) throws DatabaseUnitException, SQLException, IOException {
+
+        if (dirtyTables != null) {
+            IDataSet dataSet = getDirtyDataSet(databaseConnection, dirtyTables, metrics);
+            String[] tableNames = dataSet.getTableNames();
+            if (tableNames.length == 0) {
+                LOGGER.debug("No table of the dataset has been written since it was loaded, skipping");
+            } else {
+                LOGGER.debug("Reloading tables {}", Arrays.toString(tableNames));
+                sw.start("reloading dirty tables");
+                long start = System.nanoTime();
+                phase.getOperation(dataSetConfiguration).execute(databaseConnection, metrics.meter(dataSet, Step.EXECUTE));
+                metrics.record(Step.EXECUTE, null, start, -1);
+                sw.stop();
+            }
+            return tableNames;
+        }
+
+        SnapshotOperation snapshotOperation = getSnapshotOperationIfNeeded(connection, databaseConnection, operations);
+        if (snapshotOperation != null) {
+            sw.start("restoring snapshot");
+            long start = System.nanoTime();
+            String[] tableNames = snapshotOperation.restore(databaseConnection);
+            sw.stop();
+            if (tableNames != null) {
+                metrics.record(Step.EXECUTE, null, start, -1);
+                return tableNames;
+            }
+        }
+
+        String[] tableNames = execute(databaseConnection, operations, sw, metrics);
+
+        if (snapshotOperation != null) {
+            sw.start("taking snapshot");
+            try {
+                snapshotOperation.take(databaseConnection, tableNames);
+            } catch (SQLException e) {
+                // the dataset is loaded all the same
+                LOGGER.warn("Could not take snapshot, dataset will be loaded without snapshots from now on", e);
+            } catch (DataSetException e) {
+                LOGGER.warn("Could not take snapshot, dataset will be loaded without snapshots from now on", e);
+            } finally {
+                sw.stop();
+            }
+        }
+        return tableNames;
+    }
+
+    /**
+     * The dirty tables are reloaded along with all the tables following them
+     * in the dataset, as the cleaning operations delete in reverse order and
+     * referencing tables are expected to come later.
+     */
+    private IDataSet getDirtyDataSet(IDatabaseConnection databaseConnection, Set<String> dirtyTables, DataSetMetricsRecorder metrics)
+            throws DataSetException, IOException, SQLException {
+
+        IDataSet dataSet = getDecoratedDataSet(databaseConnection, metrics);
+        String[] tableNames = dataSet.getTableNames();
+
+        int first = tableNames.length;
+        for (int i = 0; i < tableNames.length && first == tableNames.length; i++) {
+            String simpleName = tableNames[i].substring(tableNames[i].lastIndexOf('.') + 1).toUpperCase(Locale.ENGLISH);
+            if (dirtyTables.contains(simpleName)) {
+                first = i;
+            }
+        }
+
+        String[] reloaded = new String[tableNames.length - first];
+        System.arraycopy(tableNames, first, reloaded, 0, reloaded.length);
+        return new FilteredDataSet(reloaded, dataSet);
+    }
+
+    /**
+     * @return the names of the tables of the dataset
+     */
+    private String[] execute(IDatabaseConnection databaseConnection, DBOperation[] operations, StopWatch sw, DataSetMetricsRecorder metrics)
+            throws DatabaseUnitException, SQLException, IOException {
+
+        boolean ordered = isOrderByForeignKeys();
+        if (dataSetConfiguration.isStreaming() && StreamingOperation.supports(operations) && !ordered) {
+            StreamingOperation streamingOperation = new StreamingOperation(dataSetConfiguration, getReplacements(dataSetConfiguration.getDecorators()));
+            sw.start("streaming");
+            // parsing and decorating happen while executing
+            long start = System.nanoTime();
+            streamingOperation.execute(databaseConnection, operations);
+            metrics.record(Step.EXECUTE, null, start, -1);
+            sw.stop();
+            return streamingOperation.getTableNames();
+        }
+
+        if (dataSetConfiguration.isStreaming() && ordered) {
+            LOGGER.info("Tables ordered by foreign keys can't be streamed, loading the whole dataset");
+        } else if (dataSetConfiguration.isStreaming()) {
+            LOGGER.info("Operations {} can't be streamed, loading the whole dataset", Arrays.toString(operations));
+        }
+        IDataSet dataSet = getDecoratedDataSet(databaseConnection, metrics);
+
+        ParallelOperation parallelOperation = getParallelOperationIfNeeded(databaseConnection, metrics);
+        if (parallelOperation != null) {
+            sw.start("populating in parallel");
+            long start = System.nanoTime();
+            String[] tableNames = parallelOperation.execute(databaseConnection, operations, dataSet);
+            sw.stop();
+            if (tableNames != null) {
+                metrics.record(Step.EXECUTE, null, start, -1);
+                return tableNames;
+            }
+        }
+
+        DatabaseOperation operation = phase.getOperation(dataSetConfiguration);
+        sw.start("populating");
+        long start = System.nanoTime();
+        operation.execute(databaseConnection, metrics.meter(dataSet, Step.EXECUTE));
+        metrics.record(Step.EXECUTE, null, start, -1);
+        sw.stop();
+        return dataSet.getTableNames();
+    }
+
+    private IDataSet getDecoratedDataSet(IDatabaseConnection databaseConnection, DataSetMetricsRecorder metrics)
+            throws DataSetException, IOException, SQLException {
+
+        long start = System.nanoTime();
+        IDataSet dataSet = dataSetConfiguration.getDataSet();
+        metrics.record(Step.PARSE, null, start, -1);
+
+        start = System.nanoTime();
+        dataSet = decorateDataSetIfNeeded(dataSet, dataSetConfiguration.getDecorators());
+        dataSet = orderTablesIfNeeded(dataSet, databaseConnection);
+        metrics.record(Step.DECORATE, null, start, -1);
+
+        return dataSet;
+    }
+
+    private IDataSet orderTablesIfNeeded(IDataSet dataSet, IDatabaseConnection databaseConnection) throws DataSetException, SQLException {
+
+        if (!isOrderByForeignKeys()) {
+            return dataSet;
+        }
+
+        String[] tableNames = ForeignKeyGraph.getInstance(databaseConnection).sort(databaseConnection, dataSet.getTableNames());
+        if (tableNames == null) {
+            LOGGER.warn("Tables have cyclic foreign keys, keeping the dataset order");
+            return dataSet;
+        }
+        return new FilteredDataSet(tableNames, dataSet);
+    }
+
+    private void resetSequencesIfNeeded(IDatabaseConnection databaseConnection, DBOperation[] operations, String[] tableNames, StopWatch sw)
+            throws DataSetException, SQLException {
+
+        if (!dataSetConfiguration.isResetSequences() || tableNames.length == 0) {
+            return;
+        }
+
+        boolean executed = false;
+        for (DBOperation operation : operations) {
+            executed |= operation != DBOperation.NONE;
+        }
+        if (!executed) {
+            return;
+
+        } else if (!databaseConnection.getConnection().getAutoCommit()) {
+            // restarting an identity is DDL, that commits the transaction on most databases
+            LOGGER.info("Identity columns are not reset inside transactions, as it would commit them");
+            return;
+        }
+
+        sw.start("resetting sequences");
+        new SequenceResetOperation(dataSetConfiguration.getDbType().getDialect()).execute(databaseConnection, tableNames);
+        sw.stop();
+    }
+
+    private boolean isOrderByForeignKeys() {
+        return dataSetConfiguration.isOrderByForeignKeys() || orderByForeignKeysInstead;
+    }
+
+    private ForeignKeyChecks getForeignKeyChecksToDisable(Connection connection) throws SQLException {
+
+        orderByForeignKeysInstead = false;
+
+        if (!dataSetConfiguration.isDisableForeignKeyChecks()) {
+            return null;
+        }
+
+        ForeignKeyChecks foreignKeyChecks = ForeignKeyChecks.forConfiguration(dataSetConfiguration);
+        if (foreignKeyChecks == null) {
+            LOGGER.warn("Foreign key checks can't be disabled on {}, populating with the checks", dataSetConfiguration.getDbType());
+            return null;
+
+        } else if (!foreignKeyChecks.isPerSession() && !connection.getAutoCommit()) {
+            // would apply to the other sessions, and may commit the transaction
+            LOGGER.info("Foreign key checks of the whole database are not disabled inside transactions, populating with the checks");
+            return null;
+
+        } else if (!foreignKeyChecks.isAllowed(connection)) {
+            LOGGER.warn("Not allowed to disable the foreign key checks on {}, populating with the checks, tables ordered by foreign keys",
+                    dataSetConfiguration.getDbType());
+            orderByForeignKeysInstead = true;
+            return null;
+        }
+
+        return foreignKeyChecks;
+    }
+
+    /**
+     * @return the qualified names of the tables of the dataset, whose foreign
+     *         key checks are disabled one by one
+     */
+    private String[] getQualifiedTableNames(IDatabaseConnection databaseConnection) throws DataSetException, IOException, SQLException {
+        IDataSet databaseDataSet = databaseConnection.createDataSet();
+        String[] tableNames = dataSetConfiguration.getDataSet().getTableNames();
+        String[] tables = new String[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            String databaseName = databaseDataSet.getTableMetaData(tableNames[i]).getTableName();
+            tables[i] = getQualifiedName(databaseConnection.getSchema(), databaseName, databaseConnection);
+        }
+        return tables;
+    }
+
+    /**
+     * A failure to enable the checks again is only reported if the population
+     * itself succeeded, so that it never hides the original failure
+     */
+    private void enableForeignKeyChecks(ForeignKeyChecks foreignKeyChecks, Connection connection, String[] tables, boolean populated) throws SQLException {
+        try {
+            foreignKeyChecks.enable(connection, tables);
+        } catch (SQLException e) {
+            if (populated) {
+                throw e;
+            }
+            LOGGER.error("Could not enable foreign key checks again", e);
+        }
+    }
+
+    private DirtyTableTracker getDirtyTableTrackerIfNeeded(Connection connection, DBOperation[] operations) throws SQLException {
+
+        if (phase != Phase.SETUP || !dataSetConfiguration.isReloadDirtyTablesOnly()) {
+            return null;
+        }
+
+        DirtyTableTracker tracker = DirtyTableTracker.getTracker(connection);
+        if (tracker == null) {
+            LOGGER.warn("reloadDirtyTablesOnly requires a DirtyTableTrackingDataSource, loading the whole dataset");
+            return null;
+
+        } else if (!SnapshotOperation.supports(operations)) {
+            // partial reloads only make sense when the setup cleans the tables first
+            LOGGER.info("Operations {} can't reload dirty tables only, loading the whole dataset", Arrays.toString(operations));
+            return null;
+
+        } else if (!connection.getAutoCommit()) {
+            // a rollback would leave the tracker out of sync
+            LOGGER.info("Dirty tables are not tracked inside transactions, loading the whole dataset");
+            return null;
+        }
+
+        return tracker;
+    }
+
+    private SnapshotOperation getSnapshotOperationIfNeeded(Connection connection, IDatabaseConnection databaseConnection, DBOperation[] operations)
+            throws SQLException, IOException {
+
+        if (phase != Phase.SETUP || !dataSetConfiguration.isSnapshot()) {
+            return null;
+
+        } else if (!SnapshotOperation.supports(operations)) {
+            LOGGER.info("Operations {} can't be snapshotted, loading the whole dataset", Arrays.toString(operations));
+            return null;
+
+        } else if (!connection.getAutoCommit()) {
+            // a rollback would leave the snapshot registry out of sync
+            LOGGER.info("Snapshots are not used inside transactions, loading the whole dataset");
+            return null;
+
+        } else if (dataSource == null) {
+            // the snapshot tables couldn't be dropped afterwards
+            LOGGER.info("Snapshots require the DataSource to be set, loading the whole dataset");
+            return null;
+        }
+
+        return new SnapshotOperation(dataSetConfiguration, dataSource, databaseConnection);
+    }
+
+    private ParallelOperation getParallelOperationIfNeeded(IDatabaseConnection databaseConnection, DataSetMetricsRecorder metrics) throws SQLException {
+
+        if (dataSetConfiguration.getParallelism() < 2) {
+            return null;
+
+        } else if (dataSource == null) {
+            LOGGER.warn("parallelism requires the populator to have a DataSource, populating on a single connection");
+            return null;
+
+        } else if (!databaseConnection.getConnection().getAutoCommit()) {
+            // the other connections wouldn't take part in the transaction
+            LOGGER.info("Tables are not populated in parallel inside transactions, populating on a single connection");
+            return null;
+        }
+
+        return new ParallelOperation(dataSource, dataSetConfiguration, metrics);
+    }
+
     private IDataSet decorateDataSetIfNeeded(IDataSet dataSet, Class<? extends DataSetDecorator>[] decorators) {
         if (decorators == null || decorators.length == 0)
             return dataSet;
 
         ReplacementDataSet decoratedSet = new ReplacementDataSet(dataSet);
 
+        for (DataSetDecorator decorator : instantiateDecorators(decorators)) {
+            decoratedSet.addReplacementSubstring(decorator.getStringToReplace(), decorator.getStringReplacement());
+        }
+
+        return decoratedSet;
+    }
+
+    private Map<String, String> getReplacements(Class<? extends DataSetDecorator>[] decorators) {
+        Map<String, String> replacements = new LinkedHashMap<String, String>();
+        if (decorators != null) {
+            for (DataSetDecorator decorator : instantiateDecorators(decorators)) {
+                replacements.put(decorator.getStringToReplace(), decorator.getStringReplacement());
+            }
+        }
+        return replacements;
+    }
+
+    private List<DataSetDecorator> instantiateDecorators(Class<? extends DataSetDecorator>[] decorators) {
+
+        List<DataSetDecorator> instances = new ArrayList<DataSetDecorator>(decorators.length);
+
         for (Class<? extends DataSetDecorator> decoratorClass : decorators) {
             try {
-                DataSetDecorator decorator = decoratorClass.newInstance();
-                decoratedSet.addReplacementSubstring(decorator.getStringToReplace(), decorator.getStringReplacement());
+                instances.add(decoratorClass.newInstance());
             } catch (InstantiationException e) {
                 LOGGER.error("Could not instantiate DataSetDecorator {}" + decoratorClass, e);
             } catch (IllegalAccessException e) {
@@ -91,7 +500,7 @@ public class DbUnitDatabasePopulator implements DatabasePopulator {
             }
         }
 
-        return decoratedSet;
+        return instances;
     }
 
     public DataSetConfiguration getDataSetConfiguration() {
@@ -102,6 +511,14 @@ public class DbUnitDatabasePopulator implements DatabasePopulator {
         return phase;
     }
 
+    public DataSetMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
     @Required
     public void setDataSetConfiguration(DataSetConfiguration dataSetConfiguration) {
         this.dataSetConfiguration = dataSetConfiguration;
@@ -112,4 +529,15 @@ public class DbUnitDatabasePopulator implements DatabasePopulator {
         this.phase = phase;
     }
 
+    public void setMetricsListener(DataSetMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * @param dataSource the DataSource the connection comes from, providing
+     *            the extra connections when populating in parallel
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
 }
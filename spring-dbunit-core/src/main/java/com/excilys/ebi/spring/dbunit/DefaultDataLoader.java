@@ -28,6 +28,7 @@ import org.springframework.context.ApplicationContext;
 
 import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
 import com.excilys.ebi.spring.dbunit.config.Phase;
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetrics;
 
 /**
  * @author <a href="mailto:slandelle@excilys.com">Stephane LANDELLE</a>
@@ -41,7 +42,9 @@ public class DefaultDataLoader implements DataLoader {
             DbUnitDatabasePopulator populator = new DbUnitDatabasePopulator();
             populator.setDataSetConfiguration(dataSetConfiguration);
             populator.setPhase(phase);
+            populator.setMetricsListener(DataSetMetrics.getListener(context));
             DataSource dataSource = lookUpDataSource(context, dataSetConfiguration);
+            populator.setDataSource(dataSource);
             executeOperation(populator, dataSource);
         }
     }
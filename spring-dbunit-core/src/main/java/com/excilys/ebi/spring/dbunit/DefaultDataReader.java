@@ -16,22 +16,322 @@
 package com.excilys.ebi.spring.dbunit;
 
 import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getDatabaseConnection;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getQualifiedName;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.lookUpDataSource;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.releaseDatabaseConnection;
+import static org.springframework.jdbc.datasource.DataSourceUtils.getConnection;
+import static org.springframework.jdbc.datasource.DataSourceUtils.isConnectionTransactional;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.jdbc.datasource.DataSourceUtils.releaseConnection;
 
-import org.dbunit.database.DatabaseConnection;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.CachedResultSetTable;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.IResultSetTable;
+import org.dbunit.database.IResultSetTableFactory;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTableMetaData;
 import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.slf4j.Logger;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
 
+import com.excilys.ebi.spring.dbunit.assertion.StreamingAssertion;
+import com.excilys.ebi.spring.dbunit.assertion.TableChecksum;
+import com.excilys.ebi.spring.dbunit.config.DBType;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
 import com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.dataset.stream.PipedDataSetProducer;
+
+public class DefaultDataReader implements BulkDataReader {
 
-public class DefaultDataReader implements DataReader {
+    private static final Logger LOGGER = getLogger(DefaultDataReader.class);
 
+    /**
+     * The database types for which the lack of checksums has been reported
+     */
+    private static final Set<DBType> CHECKSUMS_UNSUPPORTED = Collections.newSetFromMap(new ConcurrentHashMap<DBType, Boolean>());
+
+    /**
+     * The table is read with all its columns by the result set table factory
+     * of the configuration, and cached in memory if it isn't already, so that
+     * the connection can be released before returning
+     */
     @Override
     public IDataSet execute(ApplicationContext applicationContext, ExpectedDataSetConfiguration expectedDataSetConfiguration, String tableName) throws Exception {
-        if (expectedDataSetConfiguration != null) {
-            DatabaseConnection databaseConnection = getDatabaseConnection(applicationContext, expectedDataSetConfiguration);
-            return databaseConnection.createDataSet(new String[] { tableName });
+
+        if (expectedDataSetConfiguration == null) {
+            return null;
+        }
+
+        DataSource dataSource = lookUpDataSource(applicationContext, expectedDataSetConfiguration.getDataSourceSpringName());
+        Connection connection = null;
+        IDatabaseConnection databaseConnection = null;
+
+        try {
+            connection = getConnection(dataSource);
+            databaseConnection = getDatabaseConnection(dataSource, connection, expectedDataSetConfiguration.getSchema(), expectedDataSetConfiguration);
+            ITableMetaData metaData = databaseConnection.createDataSet().getTableMetaData(tableName);
+
+            IResultSetTableFactory factory = (IResultSetTableFactory) databaseConnection.getConfig().getProperty(DatabaseConfig.PROPERTY_RESULTSET_TABLE_FACTORY);
+            IResultSetTable table = factory.createTable(metaData, databaseConnection);
+            if (!(table instanceof CachedResultSetTable)) {
+                // closes the forward only or scrollable result set
+                table = new CachedResultSetTable(table);
+            }
+            return new DefaultDataSet(table);
+
+        } finally {
+            release(databaseConnection, connection, dataSource);
         }
-        return null;
     }
 
+    /**
+     * All the tables are read on a single connection, released before
+     * returning. Each one is fetched with a single query selecting the
+     * columns that are not ignored, ordered by primary key the way DBUnit
+     * does, and cached in memory.
+     */
+    @Override
+    public IDataSet execute(ApplicationContext applicationContext, ExpectedDataSetConfiguration expectedDataSetConfiguration, String[] tableNames) throws Exception {
+
+        if (expectedDataSetConfiguration == null) {
+            return null;
+        } else if (tableNames.length == 0) {
+            return new DefaultDataSet();
+        }
+        return read(applicationContext, expectedDataSetConfiguration, tableNames, expectedDataSetConfiguration.getColumnsToIgnore());
+    }
+
+    private IDataSet read(ApplicationContext applicationContext, ExpectedDataSetConfiguration expectedDataSetConfiguration, String[] tableNames,
+            String[] columnsToIgnore) throws Exception {
+
+        DataSource dataSource = lookUpDataSource(applicationContext, expectedDataSetConfiguration.getDataSourceSpringName());
+        Connection connection = null;
+        IDatabaseConnection databaseConnection = null;
+
+        try {
+            connection = getConnection(dataSource);
+            databaseConnection = getDatabaseConnection(dataSource, connection, expectedDataSetConfiguration.getSchema(), expectedDataSetConfiguration);
+            IDataSet databaseDataSet = databaseConnection.createDataSet();
+
+            ITable[] tables = new ITable[tableNames.length];
+            for (int i = 0; i < tableNames.length; i++) {
+                ITableMetaData metaData = getProjectedMetaData(databaseDataSet.getTableMetaData(tableNames[i]), columnsToIgnore);
+                tables[i] = new CachedResultSetTable(metaData, databaseConnection);
+            }
+            return new DefaultDataSet(tables);
+
+        } finally {
+            release(databaseConnection, connection, dataSource);
+        }
+    }
+
+    /**
+     * The checksums are computed on a single connection, with one query per
+     * table
+     */
+    @Override
+    public String[] verifyChecksums(ApplicationContext applicationContext, ExpectedDataSetConfiguration expectedDataSetConfiguration, IDataSet expectedDataSet)
+            throws Exception {
+
+        String[] tableNames = expectedDataSet.getTableNames();
+        if (expectedDataSetConfiguration == null || tableNames.length == 0) {
+            return tableNames;
+        }
+
+        DBType dbType = expectedDataSetConfiguration.getDbType();
+        DataSource dataSource = lookUpDataSource(applicationContext, expectedDataSetConfiguration.getDataSourceSpringName());
+        Connection connection = null;
+        IDatabaseConnection databaseConnection = null;
+
+        try {
+            connection = getConnection(dataSource);
+            databaseConnection = getDatabaseConnection(dataSource, connection, expectedDataSetConfiguration.getSchema(), expectedDataSetConfiguration);
+            IDataSet databaseDataSet = databaseConnection.createDataSet();
+
+            List<String> mismatches = new ArrayList<String>();
+            for (String tableName : tableNames) {
+                ITable expectedTable = expectedDataSet.getTable(tableName);
+                ITableMetaData metaData = getProjectedMetaData(databaseDataSet.getTableMetaData(tableName), expectedDataSetConfiguration.getColumnsToIgnore());
+                String sql = getChecksumSql(dbType, metaData, expectedTable, expectedDataSetConfiguration.getColumnsToIgnore(), databaseConnection);
+
+                if (sql == null) {
+                    LOGGER.debug("No checksum for table {}, comparing it row by row", tableName);
+                    mismatches.add(tableName);
+
+                } else if (!TableChecksum.of(expectedTable, metaData.getColumns()).equals(queryChecksum(connection, sql))) {
+                    LOGGER.debug("Checksum mismatch for table {}, comparing it row by row", tableName);
+                    mismatches.add(tableName);
+                }
+            }
+            return mismatches.toArray(new String[mismatches.size()]);
+
+        } finally {
+            release(databaseConnection, connection, dataSource);
+        }
+    }
+
+    /**
+     * Outside of a transaction, autocommit is disabled while comparing, as
+     * drivers like PostgreSQL's buffer the whole result otherwise, and
+     * restored afterwards
+     */
+    @Override
+    public void verifyStreaming(ApplicationContext applicationContext, ExpectedDataSetConfiguration expectedDataSetConfiguration) throws Exception {
+
+        if (expectedDataSetConfiguration == null) {
+            return;
+        }
+
+        DataSource dataSource = lookUpDataSource(applicationContext, expectedDataSetConfiguration.getDataSourceSpringName());
+        Connection connection = null;
+        IDatabaseConnection databaseConnection = null;
+
+        try {
+            connection = getConnection(dataSource);
+            databaseConnection = getDatabaseConnection(dataSource, connection, expectedDataSetConfiguration.getSchema(), expectedDataSetConfiguration);
+
+            boolean autoCommit = !isConnectionTransactional(connection, dataSource) && connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                verifyStreaming(databaseConnection, expectedDataSetConfiguration);
+            } finally {
+                if (autoCommit) {
+                    // nothing was written
+                    try {
+                        connection.rollback();
+                    } finally {
+                        connection.setAutoCommit(true);
+                    }
+                }
+            }
+
+        } finally {
+            release(databaseConnection, connection, dataSource);
+        }
+    }
+
+    private void verifyStreaming(IDatabaseConnection databaseConnection, ExpectedDataSetConfiguration expectedDataSetConfiguration) throws Exception {
+
+        StreamingAssertion assertion = new StreamingAssertion(databaseConnection, expectedDataSetConfiguration.getDbType().getDialect(),
+                expectedDataSetConfiguration.getColumnsToIgnore());
+        DataSetFormat format = expectedDataSetConfiguration.getFormat();
+        for (Resource resource : DataSetFormat.resolveResources(expectedDataSetConfiguration.getDataSetResourceLocations())) {
+            IDataSetProducer producer = new PipedDataSetProducer(format.producer(resource, expectedDataSetConfiguration.getFormatOptions()));
+            producer.setConsumer(assertion);
+            try {
+                producer.produce();
+            } finally {
+                assertion.close();
+            }
+        }
+    }
+
+    private void release(IDatabaseConnection databaseConnection, Connection connection, DataSource dataSource) {
+        releaseDatabaseConnection(databaseConnection);
+        if (connection != null && !isConnectionTransactional(connection, dataSource)) {
+            releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * @return the checksum query, or null if the columns don't match, one of
+     *         them can't be part of a checksum or the dialect doesn't support
+     *         checksums
+     */
+    private String getChecksumSql(DBType dbType, ITableMetaData metaData, ITable expectedTable, String[] columnsToIgnore,
+            IDatabaseConnection databaseConnection) throws DataSetException {
+
+        Column[] columns = metaData.getColumns();
+        Column[] expectedColumns = getProjectedMetaData(expectedTable.getTableMetaData(), columnsToIgnore).getColumns();
+        if (columns.length == 0 || columns.length != expectedColumns.length) {
+            return null;
+        }
+
+        String[] names = new String[columns.length];
+        int[] sqlTypes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (!TableChecksum.isSupported(columns[i].getDataType()) || Columns.getColumn(columns[i].getColumnName(), expectedColumns) == null) {
+                return null;
+            }
+            names[i] = getQualifiedName(null, columns[i].getColumnName(), databaseConnection);
+            sqlTypes[i] = columns[i].getDataType().getSqlType();
+        }
+
+        String sql = dbType.getDialect().getTableChecksumSql(getQualifiedName(databaseConnection.getSchema(), metaData.getTableName(), databaseConnection), names,
+                sqlTypes);
+        if (sql == null && CHECKSUMS_UNSUPPORTED.add(dbType)) {
+            LOGGER.warn("The {} dialect doesn't support checksums, expected datasets are compared row by row", dbType);
+        }
+        return sql;
+    }
+
+    private TableChecksum queryChecksum(Connection connection, String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery(sql);
+            resultSet.next();
+            BigDecimal sum = resultSet.getBigDecimal(2);
+            return new TableChecksum(resultSet.getLong(1), sum != null ? sum.toBigInteger() : BigInteger.ZERO);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return the metadata without the ignored columns, so that they are not
+     *         fetched at all
+     */
+    private ITableMetaData getProjectedMetaData(ITableMetaData metaData, String[] columnsToIgnore) throws DataSetException {
+
+        if (columnsToIgnore == null || columnsToIgnore.length == 0) {
+            return metaData;
+        }
+
+        // ignored primary keys still order the rows
+        return new DefaultTableMetaData(metaData.getTableName(), withoutIgnored(metaData.getColumns(), columnsToIgnore), metaData.getPrimaryKeys());
+    }
+
+    private Column[] withoutIgnored(Column[] columns, String[] columnsToIgnore) {
+
+        List<Column> kept = new ArrayList<Column>(columns.length);
+        for (Column column : columns) {
+            if (!isIgnored(column.getColumnName(), columnsToIgnore)) {
+                kept.add(column);
+            }
+        }
+        return kept.toArray(new Column[kept.size()]);
+    }
+
+    private boolean isIgnored(String columnName, String[] columnsToIgnore) {
+        for (String columnToIgnore : columnsToIgnore) {
+            if (columnToIgnore.equalsIgnoreCase(columnName)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,293 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.assertion;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.dbunit.assertion.DbComparisonFailure;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+
+import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
+
+/**
+ * Compares tables as multisets of rows: each row is normalized and hashed
+ * once, so that the comparison is a single pass over each table, whatever the
+ * order of the rows.
+ * <p>
+ * Values are normalized with the type of the actual column, as DBUnit does,
+ * and numbers are compared regardless of their scale. Failures only report
+ * the first differing rows, see
+ * {@link ConfigurationDefaults#DEFAULT_MAX_REPORTED_ROWS}.
+ */
+public final class HashingAssertion {
+
+    private HashingAssertion() {
+    }
+
+    public static void assertEquals(ITable expected, ITable actual) throws DataSetException {
+        assertEqualsIgnoreCols(expected, actual, new String[0]);
+    }
+
+    public static void assertEqualsIgnoreCols(ITable expected, ITable actual, String[] columnsToIgnore) throws DataSetException {
+
+        String tableName = expected.getTableMetaData().getTableName();
+        Set<String> ignored = new HashSet<String>();
+        for (String columnToIgnore : columnsToIgnore) {
+            ignored.add(columnToIgnore.toUpperCase(Locale.ENGLISH));
+        }
+
+        Column[] columns = getComparedColumns(expected.getTableMetaData(), ignored);
+        Set<String> expectedNames = getColumnNames(columns);
+        Set<String> actualNames = getColumnNames(getComparedColumns(actual.getTableMetaData(), ignored));
+        if (!expectedNames.equals(actualNames)) {
+            throw new DbComparisonFailure("Column mismatch in table " + tableName, expectedNames.toString(), actualNames.toString());
+        }
+
+        // values of both sides are cast to the database types
+        DataType[] dataTypes = new DataType[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Column actualColumn = actual.getTableMetaData().getColumns()[actual.getTableMetaData().getColumnIndex(columns[i].getColumnName())];
+            dataTypes[i] = actualColumn.getDataType() != DataType.UNKNOWN ? actualColumn.getDataType() : columns[i].getDataType();
+        }
+
+        int expectedRowCount = expected.getRowCount();
+        RowMultiset remaining = new RowMultiset(expected, columns, dataTypes);
+        for (int i = 0; i < expectedRowCount; i++) {
+            remaining.add(i);
+        }
+
+        int actualRowCount = actual.getRowCount();
+        List<Object[]> unexpected = new ArrayList<Object[]>();
+        int unexpectedCount = 0;
+        for (int i = 0; i < actualRowCount; i++) {
+            Object[] values = normalize(actual, i, columns, dataTypes);
+            if (!remaining.remove(values) && unexpectedCount++ < ConfigurationDefaults.DEFAULT_MAX_REPORTED_ROWS) {
+                unexpected.add(values);
+            }
+        }
+
+        List<Object[]> missing = new ArrayList<Object[]>();
+        int missingCount = remaining.collect(missing, ConfigurationDefaults.DEFAULT_MAX_REPORTED_ROWS);
+
+        if (missingCount > 0 || unexpectedCount > 0) {
+            String reason = "Row mismatch in table " + tableName + ": " + missingCount + " of " + expectedRowCount + " expected rows missing, "
+                    + unexpectedCount + " of " + actualRowCount + " actual rows unexpected";
+            throw new DbComparisonFailure(reason, describe(missing, missingCount, columns), describe(unexpected, unexpectedCount, columns));
+        }
+    }
+
+    static Column[] getComparedColumns(ITableMetaData metaData, Set<String> ignored) throws DataSetException {
+        List<Column> columns = new ArrayList<Column>();
+        for (Column column : metaData.getColumns()) {
+            if (!ignored.contains(column.getColumnName().toUpperCase(Locale.ENGLISH))) {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new Column[columns.size()]);
+    }
+
+    static Set<String> getColumnNames(Column[] columns) {
+        Set<String> names = new TreeSet<String>();
+        for (Column column : columns) {
+            names.add(column.getColumnName().toUpperCase(Locale.ENGLISH));
+        }
+        return names;
+    }
+
+    static String describe(List<Object[]> rows, int count, Column[] columns) {
+        StringBuilder description = new StringBuilder();
+        for (Object[] values : rows) {
+            description.append("\n[");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    description.append(", ");
+                }
+                description.append(columns[i].getColumnName()).append('=');
+                if (values[i] instanceof BigDecimal) {
+                    description.append(((BigDecimal) values[i]).toPlainString());
+                } else if (values[i] instanceof ByteBuffer) {
+                    description.append(((ByteBuffer) values[i]).remaining()).append(" bytes");
+                } else {
+                    description.append(values[i]);
+                }
+            }
+            description.append(']');
+        }
+        if (count > rows.size()) {
+            description.append("\n... and ").append(count - rows.size()).append(" more");
+        }
+        return description.toString();
+    }
+
+    /**
+     * @return the values of a row, cast with the given types, and numbers
+     *         stripped of their scale
+     */
+    private static Object[] normalize(ITable table, int row, Column[] columns, DataType[] dataTypes) throws DataSetException {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = normalize(dataTypes[i].typeCast(table.getValue(row, columns[i].getColumnName())));
+        }
+        return values;
+    }
+
+    static Object normalize(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+
+        } else if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            return integer.bitLength() < 64 ? (Object) integer.longValue() : integer;
+
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            if (decimal.scale() <= 0 || decimal.signum() == 0) {
+                return normalize(decimal.toBigInteger());
+            }
+            BigDecimal stripped = decimal.stripTrailingZeros();
+            return stripped.scale() <= 0 ? normalize(stripped.toBigInteger()) : stripped;
+
+        } else if (value instanceof Number) {
+            try {
+                return normalize(new BigDecimal(value.toString()));
+            } catch (NumberFormatException e) {
+                // NaN and infinities
+                return value;
+            }
+
+        } else if (value instanceof byte[]) {
+            // content based equals and hashCode
+            return ByteBuffer.wrap((byte[]) value);
+        }
+        return value;
+    }
+
+    private static long hash(Object[] values) {
+        long hash = 1;
+        for (Object value : values) {
+            // sequences and numbered labels have linear hash codes, which collide once summed up
+            long valueHash = (value == null ? 0 : value.hashCode()) * 0x9E3779B97F4A7C15L;
+            hash = 31 * hash + (valueHash ^ (valueHash >>> 32));
+        }
+        return hash;
+    }
+
+    /**
+     * Counts the expected rows by normalized values. Only the hash and the
+     * index of each distinct row are kept, in primitive arrays, so that big
+     * tables don't fill the heap with normalized values: rows with the same
+     * hash are normalized again to be told apart.
+     */
+    private static final class RowMultiset {
+
+        private final ITable table;
+
+        private final Column[] columns;
+
+        private final DataType[] dataTypes;
+
+        private final long[] hashes;
+
+        /**
+         * Index of the row in the table, -1 for free slots
+         */
+        private final int[] rows;
+
+        private final int[] counts;
+
+        private final int mask;
+
+        RowMultiset(ITable table, Column[] columns, DataType[] dataTypes) {
+            this.table = table;
+            this.columns = columns;
+            this.dataTypes = dataTypes;
+            // at most half full
+            int capacity = Integer.highestOneBit(Math.max(table.getRowCount(), 1)) * 4;
+            hashes = new long[capacity];
+            rows = new int[capacity];
+            counts = new int[capacity];
+            Arrays.fill(rows, -1);
+            mask = capacity - 1;
+        }
+
+        void add(int row) throws DataSetException {
+            Object[] values = normalize(table, row, columns, dataTypes);
+            long hash = hash(values);
+            int slot = find(values, hash);
+            if (rows[slot] == -1) {
+                hashes[slot] = hash;
+                rows[slot] = row;
+            }
+            counts[slot]++;
+        }
+
+        /**
+         * @return false if there's no such row left
+         */
+        boolean remove(Object[] values) throws DataSetException {
+            int slot = find(values, hash(values));
+            if (rows[slot] == -1 || counts[slot] == 0) {
+                return false;
+            }
+            counts[slot]--;
+            return true;
+        }
+
+        /**
+         * @return the slot of the given row, or the free slot where it belongs
+         */
+        private int find(Object[] values, long hash) throws DataSetException {
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (rows[slot] != -1) {
+                if (hashes[slot] == hash && Arrays.equals(values, normalize(table, rows[slot], columns, dataTypes))) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * @param missing collects the values of the rows left
+         * @param max the maximum number of rows to collect
+         * @return the number of rows left
+         */
+        int collect(List<Object[]> missing, int max) throws DataSetException {
+            int count = 0;
+            for (int slot = 0; slot < rows.length; slot++) {
+                for (int i = 0; i < counts[slot]; i++) {
+                    if (count++ < max) {
+                        missing.add(normalize(table, rows[slot], columns, dataTypes));
+                    }
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.assertion;
+
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getQualifiedName;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.dbunit.assertion.DbComparisonFailure;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
+import com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect;
+
+/**
+ * Compares the expected tables produced by a
+ * {@link org.dbunit.dataset.stream.IDataSetProducer} with the database as a
+ * merge join, so that neither side is held in memory.
+ * <p>
+ * The database rows are read through a forward only cursor, with the fetch
+ * size the dialect derives from the configured one, ordered by primary key,
+ * or by all the compared columns if the table has none or if one of its key
+ * columns is ignored. Some drivers only stream the cursor outside of
+ * autocommit, which is left to the caller. The expected rows must come in the
+ * same order, with nulls sorted the way the database reports it sorts them,
+ * and all the rows of a table in a single block. Values are normalized like
+ * with the {@link HashingAssertion}, and failures report the first differing
+ * rows the same way.
+ */
+public class StreamingAssertion implements IDataSetConsumer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingAssertion.class);
+
+    private final IDatabaseConnection connection;
+
+    private final DatabaseDialect dialect;
+
+    private final Set<String> ignored = new HashSet<String>();
+
+    private final Set<String> comparedTables = new HashSet<String>();
+
+    private IDataSet databaseDataSet;
+
+    private boolean nullsFirst;
+
+    private String tableName;
+
+    private Column[] columns;
+
+    private DataType[] dataTypes;
+
+    // for each compared column, its index in the expected rows
+    private int[] expectedIndexes;
+
+    // indexes of the columns that order the rows, among the compared ones
+    private int[] keyIndexes;
+
+    private Statement statement;
+
+    private ResultSet resultSet;
+
+    private Object[] actual;
+
+    private Object[] previousExpected;
+
+    private int expectedRowCount;
+
+    private int actualRowCount;
+
+    private int missingCount;
+
+    private int unexpectedCount;
+
+    private List<Object[]> missing;
+
+    private List<Object[]> unexpected;
+
+    public StreamingAssertion(IDatabaseConnection connection, DatabaseDialect dialect, String[] columnsToIgnore) {
+        this.connection = connection;
+        this.dialect = dialect;
+        if (columnsToIgnore != null) {
+            for (String columnToIgnore : columnsToIgnore) {
+                ignored.add(columnToIgnore.toUpperCase(Locale.ENGLISH));
+            }
+        }
+    }
+
+    public void startDataSet() throws DataSetException {
+        try {
+            databaseDataSet = connection.createDataSet();
+            DatabaseMetaData metaData = connection.getConnection().getMetaData();
+            // ascending order
+            nullsFirst = metaData.nullsAreSortedLow() || metaData.nullsAreSortedAtStart();
+        } catch (SQLException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    public void endDataSet() throws DataSetException {
+        databaseDataSet = null;
+    }
+
+    public void startTable(ITableMetaData metaData) throws DataSetException {
+
+        ITableMetaData databaseMetaData = databaseDataSet.getTableMetaData(metaData.getTableName());
+        tableName = databaseMetaData.getTableName();
+        if (!comparedTables.add(tableName.toUpperCase(Locale.ENGLISH))) {
+            throw new DataSetException("Rows of table " + tableName + " are split in several blocks or files, they can't be streamed");
+        }
+
+        columns = HashingAssertion.getComparedColumns(databaseMetaData, ignored);
+        Column[] expectedColumns = HashingAssertion.getComparedColumns(metaData, ignored);
+        // tables without any row don't declare their columns
+        if (expectedColumns.length > 0) {
+            Set<String> expectedNames = HashingAssertion.getColumnNames(expectedColumns);
+            Set<String> actualNames = HashingAssertion.getColumnNames(columns);
+            if (!expectedNames.equals(actualNames)) {
+                throw new DbComparisonFailure("Column mismatch in table " + tableName, expectedNames.toString(), actualNames.toString());
+            }
+        }
+
+        dataTypes = new DataType[columns.length];
+        expectedIndexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            dataTypes[i] = columns[i].getDataType();
+            expectedIndexes[i] = expectedColumns.length > 0 ? metaData.getColumnIndex(columns[i].getColumnName()) : -1;
+        }
+        keyIndexes = getKeyIndexes(databaseMetaData);
+
+        expectedRowCount = 0;
+        actualRowCount = 0;
+        missingCount = 0;
+        unexpectedCount = 0;
+        missing = new ArrayList<Object[]>();
+        unexpected = new ArrayList<Object[]>();
+        previousExpected = null;
+        actual = null;
+
+        try {
+            statement = connection.getConnection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(dialect.getCursorFetchSize((Integer) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_FETCH_SIZE)));
+            resultSet = statement.executeQuery(getSelectSql());
+            actual = next();
+        } catch (SQLException e) {
+            throw new DataSetException("Failed to read table " + tableName, e);
+        }
+    }
+
+    public void row(Object[] values) throws DataSetException {
+
+        Object[] expected = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            expected[i] = HashingAssertion.normalize(dataTypes[i].typeCast(values[expectedIndexes[i]]));
+        }
+        expectedRowCount++;
+
+        if (previousExpected != null && compareKeys(previousExpected, expected) > 0) {
+            throw new DataSetException("Expected rows of table " + tableName + " must be sorted by " + describeKey() + " to be streamed");
+        }
+        previousExpected = expected;
+
+        try {
+            // database rows before the expected one are unexpected
+            while (actual != null && compareKeys(actual, expected) < 0) {
+                unexpected(actual);
+                actual = next();
+            }
+
+            if (actual != null && compareKeys(actual, expected) == 0) {
+                if (compareValues(actual, expected) != 0) {
+                    missing(expected);
+                    unexpected(actual);
+                }
+                actual = next();
+            } else {
+                missing(expected);
+            }
+        } catch (SQLException e) {
+            throw new DataSetException("Failed to read table " + tableName, e);
+        }
+    }
+
+    public void endTable() throws DataSetException {
+        try {
+            while (actual != null) {
+                unexpected(actual);
+                actual = next();
+            }
+        } catch (SQLException e) {
+            throw new DataSetException("Failed to read table " + tableName, e);
+        } finally {
+            close();
+        }
+
+        if (missingCount > 0 || unexpectedCount > 0) {
+            String reason = "Row mismatch in table " + tableName + ": " + missingCount + " of " + expectedRowCount + " expected rows missing, "
+                    + unexpectedCount + " of " + actualRowCount + " actual rows unexpected";
+            throw new DbComparisonFailure(reason, HashingAssertion.describe(missing, missingCount, columns), HashingAssertion.describe(unexpected,
+                    unexpectedCount, columns));
+        }
+    }
+
+    /**
+     * Releases the cursor of the current table, if the comparison stopped
+     * before its end
+     */
+    public void close() {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOGGER.debug("Could not close statement", e);
+            }
+            statement = null;
+            resultSet = null;
+        }
+    }
+
+    private int[] getKeyIndexes(ITableMetaData databaseMetaData) throws DataSetException {
+
+        Column[] primaryKeys = databaseMetaData.getPrimaryKeys();
+        int[] indexes = new int[primaryKeys.length];
+        for (int i = 0; i < primaryKeys.length; i++) {
+            indexes[i] = indexOf(primaryKeys[i].getColumnName());
+            if (indexes[i] < 0) {
+                // ignored key column
+                indexes = new int[0];
+                break;
+            }
+        }
+
+        if (indexes.length == 0) {
+            indexes = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                indexes[i] = i;
+            }
+        }
+        return indexes;
+    }
+
+    private int indexOf(String columnName) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].getColumnName().equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String getSelectSql() {
+
+        StringBuilder sql = new StringBuilder("select ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(getQualifiedName(null, columns[i].getColumnName(), connection));
+        }
+        if (columns.length == 0) {
+            sql.append("*");
+        }
+        sql.append(" from ").append(getQualifiedName(connection.getSchema(), tableName, connection));
+        for (int i = 0; i < keyIndexes.length; i++) {
+            sql.append(i == 0 ? " order by " : ", ").append(getQualifiedName(null, columns[keyIndexes[i]].getColumnName(), connection));
+        }
+        return sql.toString();
+    }
+
+    private String describeKey() {
+        List<String> names = new ArrayList<String>(keyIndexes.length);
+        for (int keyIndex : keyIndexes) {
+            names.add(columns[keyIndex].getColumnName());
+        }
+        return names.toString();
+    }
+
+    /**
+     * @return the next database row, checked to come after the previous one
+     */
+    private Object[] next() throws SQLException, DataSetException {
+
+        if (!resultSet.next()) {
+            return null;
+        }
+
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            row[i] = HashingAssertion.normalize(dataTypes[i].getSqlValue(i + 1, resultSet));
+        }
+        actualRowCount++;
+
+        if (actual != null && compareKeys(actual, row) > 0) {
+            throw new DataSetException("The database doesn't sort the rows of table " + tableName + " by " + describeKey()
+                    + " the way they are compared, use another comparison mode");
+        }
+        return row;
+    }
+
+    private void missing(Object[] row) {
+        if (missingCount++ < ConfigurationDefaults.DEFAULT_MAX_REPORTED_ROWS) {
+            missing.add(row);
+        }
+    }
+
+    private void unexpected(Object[] row) {
+        if (unexpectedCount++ < ConfigurationDefaults.DEFAULT_MAX_REPORTED_ROWS) {
+            unexpected.add(row);
+        }
+    }
+
+    private int compareKeys(Object[] row1, Object[] row2) {
+        for (int keyIndex : keyIndexes) {
+            int comparison = compare(row1[keyIndex], row2[keyIndex]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    private int compareValues(Object[] row1, Object[] row2) {
+        for (int i = 0; i < row1.length; i++) {
+            int comparison = compare(row1[i], row2[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Orders normalized values, with nulls where the database sorts them:
+     * first for MySQL, SQL Server or H2, last for PostgreSQL, Oracle or DB2
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(Object value1, Object value2) {
+        if (value1 == null || value2 == null) {
+            int comparison = value1 == null ? (value2 == null ? 0 : -1) : 1;
+            return nullsFirst ? comparison : -comparison;
+
+        } else if (value1.getClass() == value2.getClass() && value1 instanceof Comparable) {
+            return ((Comparable<Object>) value1).compareTo(value2);
+
+        } else if (value1 instanceof Number && value2 instanceof Number) {
+            // normalized numbers of different magnitudes or scales
+            return toBigDecimal(value1).compareTo(toBigDecimal(value2));
+        }
+        return value1.toString().compareTo(value2.toString());
+    }
+
+    private static BigDecimal toBigDecimal(Object number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        } else if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        return BigDecimal.valueOf(((Number) number).longValue());
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.assertion;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Types;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * Order independent checksum of a table: the row count and the sum of the
+ * hashes of the rows, which a database can compute in a single query, see
+ * {@link com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect#getTableChecksumSql(String, String[], int[])}.
+ * <p>
+ * A row is hashed as the first 8 bytes of the SHA-256 digest of the UTF-8
+ * text of its values, read as a signed big-endian long. The values are
+ * separated by the character 31, null values are written as <code>0</code>,
+ * and the other ones as <code>1</code> followed by:
+ * <ul>
+ * <li>strings as they are</li>
+ * <li>integers and decimals in plain notation, without trailing zeros after
+ * the point</li>
+ * <li>booleans as TRUE or FALSE</li>
+ * <li>dates, times and timestamps like {@link java.sql.Date},
+ * {@link java.sql.Time} and {@link java.sql.Timestamp} do</li>
+ * </ul>
+ * Columns of other types, such as floating point numbers, don't have a
+ * checksum.
+ */
+public final class TableChecksum {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final long rowCount;
+
+    private final BigInteger sum;
+
+    public TableChecksum(long rowCount, BigInteger sum) {
+        this.rowCount = rowCount;
+        this.sum = sum;
+    }
+
+    /**
+     * @param dataType the type of a column
+     * @return true if the column can be part of a checksum
+     */
+    public static boolean isSupported(DataType dataType) {
+        switch (dataType.getSqlType()) {
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+        case Types.NVARCHAR:
+        case Types.LONGNVARCHAR:
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+        case Types.BOOLEAN:
+        case Types.DATE:
+        case Types.TIME:
+        case Types.TIMESTAMP:
+            return dataType != DataType.UNKNOWN;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @param table the table
+     * @param columns the columns to include, with the types of the database
+     *            the checksum is compared with
+     * @return the checksum of the table
+     */
+    public static TableChecksum of(ITable table, Column[] columns) throws DataSetException {
+
+        MessageDigest digest = newDigest();
+        StringBuilder row = new StringBuilder();
+        int rowCount = table.getRowCount();
+
+        // the high and low halves of the hashes are summed apart, a long can't overflow below 2^31 rows
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < rowCount; i++) {
+            row.setLength(0);
+            for (int j = 0; j < columns.length; j++) {
+                if (j > 0) {
+                    row.append((char) 31);
+                }
+                Object value = columns[j].getDataType().typeCast(table.getValue(i, columns[j].getColumnName()));
+                if (value == null) {
+                    row.append('0');
+                } else {
+                    row.append('1').append(getText(value));
+                }
+            }
+            long hash = hash(digest, row.toString());
+            high += hash >> 32;
+            low += hash & 0xFFFFFFFFL;
+        }
+
+        return new TableChecksum(rowCount, BigInteger.valueOf(high).shiftLeft(32).add(BigInteger.valueOf(low)));
+    }
+
+    private static String getText(Object value) {
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            // stripTrailingZeros doesn't strip zero before Java 8
+            return decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toPlainString();
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value).booleanValue() ? "TRUE" : "FALSE";
+        }
+        return value.toString();
+    }
+
+    private static long hash(MessageDigest digest, String row) {
+        byte[] bytes = digest.digest(row.getBytes(UTF8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = hash << 8 | bytes[i] & 0xFF;
+        }
+        return hash;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every JVM", e);
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public BigInteger getSum() {
+        return sum;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (rowCount ^ rowCount >>> 32) + sum.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TableChecksum)) {
+            return false;
+        }
+        TableChecksum other = (TableChecksum) obj;
+        return rowCount == other.rowCount && sum.equals(other.sum);
+    }
+
+    @Override
+    public String toString() {
+        return rowCount + " rows, sum " + sum;
+    }
+}
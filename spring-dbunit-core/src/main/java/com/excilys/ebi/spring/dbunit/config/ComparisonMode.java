@@ -0,0 +1,49 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.config;
+
+import org.dbunit.Assertion;
+
+import com.excilys.ebi.spring.dbunit.assertion.HashingAssertion;
+import com.excilys.ebi.spring.dbunit.assertion.StreamingAssertion;
+import com.excilys.ebi.spring.dbunit.assertion.TableChecksum;
+
+/**
+ * How the tables of an expected dataset are compared with the database
+ */
+public enum ComparisonMode {
+
+	/** Row by row, in order, @see {@link Assertion#assertEquals(org.dbunit.dataset.ITable, org.dbunit.dataset.ITable)} */
+	DBUNIT,
+
+	/** Rows hashed and compared as multisets, regardless of order, @see {@link HashingAssertion} */
+	HASH,
+
+	/**
+	 * Checksums computed by the database, compared with the ones of the expected tables. Tables whose checksums differ
+	 * or can't be computed are then compared like with {@link #HASH}, @see {@link TableChecksum}
+	 * <p>
+	 * Supported on H2, PostgreSQL 11+, MySQL 5.5+ and SQL Server 2019+, other databases fall back to {@link #HASH} for all
+	 * tables.
+	 */
+	CHECKSUM,
+
+	/**
+	 * Expected files and tables streamed side by side and merged in primary key order, so that memory doesn't depend
+	 * on the size of the tables. The expected rows must be sorted, @see {@link StreamingAssertion}
+	 */
+	STREAMING;
+}
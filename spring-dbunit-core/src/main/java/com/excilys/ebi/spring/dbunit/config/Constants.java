@@ -35,6 +35,10 @@ public interface Constants {
 
 		public static final boolean DEFAULT_CASE_SENSITIVE_TABLE_NAMES = false;
 
+		public static final boolean DEFAULT_COLUMNAR = false;
+
+		public static final boolean DEFAULT_LAZY = false;
+
 		public static final String DEFAULT_ESCAPE_PATTERN = "";
 
 		public static final int DEFAULT_BATCH_SIZE = 100;
@@ -50,5 +54,33 @@ public interface Constants {
 		public static final String[] DEFAULT_TABLE_TYPE = { "TABLE" };
 
 		public static final String DEFAULT_SCHEMA = System.getProperty("spring.dbunit.schema");
+
+		public static final int DEFAULT_DATASET_CACHE_SIZE = Integer.getInteger("spring.dbunit.datasetcachesize", 32);
+
+		public static final int DEFAULT_STRING_POOL_SIZE = Integer.getInteger("spring.dbunit.stringpoolsize", 1 << 16);
+
+		public static final boolean DEFAULT_STREAMING = false;
+
+		public static final boolean DEFAULT_SNAPSHOT = false;
+
+		public static final boolean DEFAULT_RELOAD_DIRTY_TABLES_ONLY = false;
+
+		public static final boolean DEFAULT_CACHE_METADATA = false;
+
+		public static final int DEFAULT_PARALLELISM = 1;
+
+		public static final boolean DEFAULT_ORDER_BY_FOREIGN_KEYS = false;
+
+		public static final boolean DEFAULT_DISABLE_FOREIGN_KEY_CHECKS = false;
+
+		public static final boolean DEFAULT_RESET_SEQUENCES = false;
+
+		public static final ComparisonMode DEFAULT_COMPARISON_MODE = ComparisonMode.DBUNIT;
+
+		public static final int DEFAULT_MAX_REPORTED_ROWS = Integer.getInteger("spring.dbunit.maxreportedrows", 10);
+
+		public static final String DEFAULT_METRICS_REPORT = System.getProperty("spring.dbunit.metrics.report");
+
+		public static final int DEFAULT_LOADER_THREADS = Integer.getInteger("spring.dbunit.loaderthreads", Runtime.getRuntime().availableProcessors());
 	}
 }
@@ -15,9 +15,15 @@
  */
 package com.excilys.ebi.spring.dbunit.config;
 
+import org.dbunit.operation.CompositeOperation;
 import org.dbunit.operation.DatabaseOperation;
 import org.springframework.core.Constants;
 
+import com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect;
+import com.excilys.ebi.spring.dbunit.dialect.DefaultDatabaseDialect;
+import com.excilys.ebi.spring.dbunit.operation.BulkInsertOperation;
+import com.excilys.ebi.spring.dbunit.operation.TruncateAllOperation;
+
 /**
  * @author <a href="mailto:slandelle@excilys.com">Stephane LANDELLE</a>
  */
@@ -45,7 +51,16 @@ public enum DBOperation {
 	TRUNCATE_TABLE,
 
 	/** @see {@link DatabaseOperation#CLEAN_INSERT} */
-	CLEAN_INSERT;
+	CLEAN_INSERT,
+
+	/** Inserts with the fastest load path of the database, @see {@link BulkInsertOperation} */
+	BULK_INSERT,
+
+	/** {@link #DELETE_ALL} followed by {@link #BULK_INSERT} */
+	BULK_CLEAN_INSERT,
+
+	/** Empties all the tables at once, @see {@link TruncateAllOperation} */
+	TRUNCATE_ALL;
 
 	/** Internal representation of the {@link DatabaseOperation} constants */
 	private final transient Constants operations = new Constants(DatabaseOperation.class);
@@ -56,6 +71,30 @@ public enum DBOperation {
 	 * @return The DatabaseOperation for this enum
 	 */
 	public DatabaseOperation getDatabaseOperation() {
-		return DatabaseOperation.class.cast(operations.asObject(name()));
+		return getDatabaseOperation(null);
+	}
+
+	/**
+	 * Convert this enum into {@link DatabaseOperation operation database}.
+	 * 
+	 * @param dbType the database type, that selects the bulk load and truncate
+	 *            paths, null for the portable ones
+	 * @return The DatabaseOperation for this enum
+	 */
+	public DatabaseOperation getDatabaseOperation(DBType dbType) {
+		switch (this) {
+		case BULK_INSERT:
+			return new BulkInsertOperation(getDialect(dbType).getBulkLoader());
+		case BULK_CLEAN_INSERT:
+			return new CompositeOperation(DatabaseOperation.DELETE_ALL, new BulkInsertOperation(getDialect(dbType).getBulkLoader()));
+		case TRUNCATE_ALL:
+			return new TruncateAllOperation(getDialect(dbType));
+		default:
+			return DatabaseOperation.class.cast(operations.asObject(name()));
+		}
+	}
+
+	private DatabaseDialect getDialect(DBType dbType) {
+		return dbType != null ? dbType.getDialect() : new DefaultDatabaseDialect();
 	}
 }
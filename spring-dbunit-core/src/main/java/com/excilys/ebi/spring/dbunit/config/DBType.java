@@ -32,32 +32,46 @@ import org.dbunit.ext.oracle.Oracle10DataTypeFactory;
 import org.dbunit.ext.oracle.OracleDataTypeFactory;
 import org.dbunit.ext.postgresql.PostgresqlDataTypeFactory;
 
+import com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect;
+import com.excilys.ebi.spring.dbunit.dialect.Db2Dialect;
+import com.excilys.ebi.spring.dbunit.dialect.DefaultDatabaseDialect;
+import com.excilys.ebi.spring.dbunit.dialect.H2Dialect;
+import com.excilys.ebi.spring.dbunit.dialect.HsqldbDialect;
+import com.excilys.ebi.spring.dbunit.dialect.MsSqlDialect;
+import com.excilys.ebi.spring.dbunit.dialect.MySqlDialect;
+import com.excilys.ebi.spring.dbunit.dialect.PostgresqlDialect;
+
 /**
  * @author <a href="mailto:slandelle@excilys.com">Stephane LANDELLE</a>
  */
 public enum DBType {
 
-	DB2(Db2DataTypeFactory.class, Db2MetadataHandler.class), /**/
-	HSQLDB(HsqldbDataTypeFactory.class, DefaultMetadataHandler.class), /**/
-	H2(H2DataTypeFactory.class, DefaultMetadataHandler.class), /**/
-	MCKOY(MckoiDataTypeFactory.class, DefaultMetadataHandler.class), /**/
-	MSSQL(MsSqlDataTypeFactory.class, DefaultMetadataHandler.class), /**/
-	MYSQL(MySqlDataTypeFactory.class, MySqlMetadataHandler.class), /**/
-	NETEZZA(NetezzaDataTypeFactory.class, NetezzaMetadataHandler.class), /**/
-	ORACLE(OracleDataTypeFactory.class, DefaultMetadataHandler.class), /**/
-	ORACLE10(Oracle10DataTypeFactory.class, DefaultMetadataHandler.class), /**/
-	POSTGRESQL(PostgresqlDataTypeFactory.class, DefaultMetadataHandler.class);
+	DB2(Db2DataTypeFactory.class, Db2MetadataHandler.class, Db2Dialect.class), /**/
+	HSQLDB(HsqldbDataTypeFactory.class, DefaultMetadataHandler.class, HsqldbDialect.class), /**/
+	H2(H2DataTypeFactory.class, DefaultMetadataHandler.class, H2Dialect.class), /**/
+	MCKOY(MckoiDataTypeFactory.class, DefaultMetadataHandler.class, DefaultDatabaseDialect.class), /**/
+	MSSQL(MsSqlDataTypeFactory.class, DefaultMetadataHandler.class, MsSqlDialect.class), /**/
+	MYSQL(MySqlDataTypeFactory.class, MySqlMetadataHandler.class, MySqlDialect.class), /**/
+	NETEZZA(NetezzaDataTypeFactory.class, NetezzaMetadataHandler.class, DefaultDatabaseDialect.class), /**/
+	ORACLE(OracleDataTypeFactory.class, DefaultMetadataHandler.class, DefaultDatabaseDialect.class), /**/
+	ORACLE10(Oracle10DataTypeFactory.class, DefaultMetadataHandler.class, DefaultDatabaseDialect.class), /**/
+	POSTGRESQL(PostgresqlDataTypeFactory.class, DefaultMetadataHandler.class, PostgresqlDialect.class);
 
 	private final Class<? extends IDataTypeFactory> dataTypeFactoryClass;
 	private final Class<? extends IMetadataHandler> metadataHandlerClass;
+	private final Class<? extends DatabaseDialect> dialectClass;
 
 	private IDataTypeFactory dataTypeFactory;
 
 	private IMetadataHandler metadataHandler;
 
-	private DBType(Class<? extends IDataTypeFactory> dataTypeFactoryClass, Class<? extends IMetadataHandler> metadataHandlerClass) {
+	private DatabaseDialect dialect;
+
+	private DBType(Class<? extends IDataTypeFactory> dataTypeFactoryClass, Class<? extends IMetadataHandler> metadataHandlerClass,
+			Class<? extends DatabaseDialect> dialectClass) {
 		this.dataTypeFactoryClass = dataTypeFactoryClass;
 		this.metadataHandlerClass = metadataHandlerClass;
+		this.dialectClass = dialectClass;
 	}
 
 	IDataTypeFactory getDataTypeFactory() {
@@ -78,6 +92,15 @@ public enum DBType {
 		return metadataHandler;
 	}
 
+	public DatabaseDialect getDialect() {
+
+		// doesn't really matter if it's not synchronized...
+		if (dialect == null) {
+			dialect = getInstance(dialectClass);
+		}
+		return dialect;
+	}
+
 	private <T> T getInstance(Class<T> clazz) {
 		try {
 			return clazz.newInstance();
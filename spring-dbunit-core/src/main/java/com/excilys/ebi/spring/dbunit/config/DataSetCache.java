@@ -0,0 +1,206 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
+
+/**
+ * Process-wide LRU cache of parsed {@link IDataSet datasets}, so that the same
+ * data file shared by many test methods is only parsed once.
+ * <p>
+ * Entries are keyed by resource URL, resource last modification time,
+ * {@link DataSetFormat} and a snapshot of the {@link DataSetFormatOptions},
+ * so editing a data file or changing the options yields a fresh parse.
+ * <p>
+ * Cached datasets are shared: callers must treat them as read-only. The cache
+ * size is set with the <code>spring.dbunit.datasetcachesize</code> system
+ * property, 0 disabling caching.
+ */
+public class DataSetCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataSetCache.class);
+
+    private static final DataSetCache INSTANCE = new DataSetCache(ConfigurationDefaults.DEFAULT_DATASET_CACHE_SIZE);
+
+    public static DataSetCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final int maxSize;
+
+    private final Map<Key, IDataSet> entries;
+
+    private long hitCount;
+
+    private long missCount;
+
+    public DataSetCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Key, IDataSet>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, IDataSet> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the dataset for the given resource, parsing it only if it's not
+     * already cached
+     * 
+     * @param format the format
+     * @param resource the data file
+     * @param options the format options
+     * @return the parsed {@link IDataSet dataset}
+     * @throws DataSetException DBUnit failure
+     * @throws IOException I/O failure
+     */
+    public IDataSet get(DataSetFormat format, Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+
+        if (maxSize <= 0 || !format.isCacheable()) {
+            return format.fromResource(resource, options);
+        }
+
+        Key key = new Key(resource, format, options);
+
+        synchronized (entries) {
+            IDataSet dataSet = entries.get(key);
+            if (dataSet != null) {
+                hitCount++;
+                return dataSet;
+            }
+            missCount++;
+        }
+
+        LOGGER.debug("miss from dataset cache for {}", key.location);
+        // parse outside the lock, concurrent misses on the same key are harmless
+        IDataSet dataSet = format.fromResource(resource, options);
+
+        synchronized (entries) {
+            IDataSet existing = entries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            entries.put(key, dataSet);
+        }
+        return dataSet;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            hitCount = 0;
+            missCount = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (entries) {
+            return hitCount;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (entries) {
+            return missCount;
+        }
+    }
+
+    private static final class Key {
+
+        private final String location;
+        private final long lastModified;
+        private final DataSetFormat format;
+        private final DataSetFormatOptions options;
+
+        private Key(Resource resource, DataSetFormat format, DataSetFormatOptions options) {
+            this.location = location(resource);
+            this.lastModified = lastModified(resource);
+            this.format = format;
+            // options are mutable, so keep a copy
+            this.options = options != null ? options.copy() : null;
+        }
+
+        private static String location(Resource resource) {
+            try {
+                return resource.getURL().toExternalForm();
+            } catch (IOException e) {
+                return resource.getDescription();
+            }
+        }
+
+        private static long lastModified(Resource resource) {
+            try {
+                long lastModified = resource.lastModified();
+                if (resource.isReadable()) {
+                    return lastModified;
+                }
+                // directories (CSV datasets): look at the files inside
+                File[] files = resource.getFile().listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        lastModified = Math.max(lastModified, file.lastModified());
+                    }
+                }
+                return lastModified;
+            } catch (IOException e) {
+                return -1L;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + location.hashCode();
+            result = prime * result + (int) (lastModified ^ (lastModified >>> 32));
+            result = prime * result + format.hashCode();
+            result = prime * result + (options == null ? 0 : options.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return location.equals(other.location) && lastModified == other.lastModified && format == other.format
+                    && (options == null ? other.options == null : options.equals(other.options));
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.excilys.ebi.spring.dbunit.config;
 import static org.springframework.util.StringUtils.tokenizeToStringArray;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.dbunit.database.DatabaseConfig;
@@ -26,14 +27,16 @@ import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.IDataSet;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
 import com.excilys.ebi.spring.dbunit.dataset.DataSetDecorator;
+import com.excilys.ebi.spring.dbunit.dataset.LazyCompositeDataSet;
 
 /**
  * @author <a href="mailto:slandelle@excilys.com">Stephane LANDELLE</a>
  */
-public class DataSetConfiguration implements DatabaseConnectionConfigurer {
+public class DataSetConfiguration implements PoolableConnectionConfigurer {
 
     private boolean disabled;
 
@@ -69,10 +72,31 @@ public class DataSetConfiguration implements DatabaseConnectionConfigurer {
 
     private Class<? extends DataSetDecorator>[] decorators = null;
 
+    private boolean streaming = ConfigurationDefaults.DEFAULT_STREAMING;
+
+    private boolean snapshot = ConfigurationDefaults.DEFAULT_SNAPSHOT;
+
+    private boolean reloadDirtyTablesOnly = ConfigurationDefaults.DEFAULT_RELOAD_DIRTY_TABLES_ONLY;
+
+    private boolean cacheMetadata = ConfigurationDefaults.DEFAULT_CACHE_METADATA;
+
+    private int parallelism = ConfigurationDefaults.DEFAULT_PARALLELISM;
+
+    private boolean orderByForeignKeys = ConfigurationDefaults.DEFAULT_ORDER_BY_FOREIGN_KEYS;
+
+    private boolean disableForeignKeyChecks = ConfigurationDefaults.DEFAULT_DISABLE_FOREIGN_KEY_CHECKS;
+
+    private boolean resetSequences = ConfigurationDefaults.DEFAULT_RESET_SEQUENCES;
+
     public IDataSet getDataSet() throws DataSetException, IOException {
 
         List<IDataSet> dataSets = format.loadMultiple(formatOptions, dataSetResourceLocations);
-        return dataSets.size() == 1 ? dataSets.get(0) : new CompositeDataSet(dataSets.toArray(new IDataSet[dataSets.size()]));
+        if (dataSets.size() == 1) {
+            return dataSets.get(0);
+        }
+        IDataSet[] dataSetArray = dataSets.toArray(new IDataSet[dataSets.size()]);
+        // the composite would read every table of every file
+        return formatOptions.isLazy() ? new LazyCompositeDataSet(dataSetArray, formatOptions.isCaseSensitiveTableNames()) : new CompositeDataSet(dataSetArray);
     }
 
     @Override
@@ -82,7 +106,7 @@ public class DataSetConfiguration implements DatabaseConnectionConfigurer {
 
         databaseConfig.setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, dbType.getDataTypeFactory());
         databaseConfig.setProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER, dbType.getMetadataHandler());
-        databaseConfig.setProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN, escapePattern);
+        databaseConfig.setProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN, StringUtils.hasText(escapePattern) ? escapePattern : null);
         databaseConfig.setProperty(DatabaseConfig.PROPERTY_BATCH_SIZE, batchSize);
         databaseConfig.setProperty(DatabaseConfig.PROPERTY_FETCH_SIZE, fetchSize);
         databaseConfig.setProperty(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES, formatOptions.isCaseSensitiveTableNames());
@@ -92,6 +116,22 @@ public class DataSetConfiguration implements DatabaseConnectionConfigurer {
         databaseConfig.setProperty(DatabaseConfig.PROPERTY_TABLE_TYPE, tableType);
     }
 
+    @Override
+    public List<Object> getConnectionKey() {
+        return Arrays.<Object> asList(/**/
+                DataSetConfiguration.class, /**/
+                cacheMetadata, /**/
+                dbType, /**/
+                escapePattern, /**/
+                batchSize, /**/
+                fetchSize, /**/
+                formatOptions.isCaseSensitiveTableNames(), /**/
+                qualifiedTableNames, /**/
+                batchedStatements, /**/
+                skipOracleRecycleBinTables, /**/
+                Arrays.asList(tableType));
+    }
+
     public static Builder newDataSetConfiguration() {
         return new Builder();
     }
@@ -194,6 +234,46 @@ public class DataSetConfiguration implements DatabaseConnectionConfigurer {
             return this;
         }
 
+        public Builder withStreaming(boolean streaming) {
+            dataSetConfiguration.streaming = streaming;
+            return this;
+        }
+
+        public Builder withSnapshot(boolean snapshot) {
+            dataSetConfiguration.snapshot = snapshot;
+            return this;
+        }
+
+        public Builder withReloadDirtyTablesOnly(boolean reloadDirtyTablesOnly) {
+            dataSetConfiguration.reloadDirtyTablesOnly = reloadDirtyTablesOnly;
+            return this;
+        }
+
+        public Builder withCacheMetadata(boolean cacheMetadata) {
+            dataSetConfiguration.cacheMetadata = cacheMetadata;
+            return this;
+        }
+
+        public Builder withParallelism(int parallelism) {
+            dataSetConfiguration.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder withOrderByForeignKeys(boolean orderByForeignKeys) {
+            dataSetConfiguration.orderByForeignKeys = orderByForeignKeys;
+            return this;
+        }
+
+        public Builder withDisableForeignKeyChecks(boolean disableForeignKeyChecks) {
+            dataSetConfiguration.disableForeignKeyChecks = disableForeignKeyChecks;
+            return this;
+        }
+
+        public Builder withResetSequences(boolean resetSequences) {
+            dataSetConfiguration.resetSequences = resetSequences;
+            return this;
+        }
+
         public DataSetConfiguration build() {
 
             Assert.notNull(dataSetConfiguration.dataSetResourceLocations, "dataSetResourceLocations is required");
@@ -350,4 +430,69 @@ public class DataSetConfiguration implements DatabaseConnectionConfigurer {
     public void setDecorators(Class<? extends DataSetDecorator>[] decorators) {
         this.decorators = decorators;
     }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public boolean isReloadDirtyTablesOnly() {
+        return reloadDirtyTablesOnly;
+    }
+
+    public void setReloadDirtyTablesOnly(boolean reloadDirtyTablesOnly) {
+        this.reloadDirtyTablesOnly = reloadDirtyTablesOnly;
+    }
+
+    @Override
+    public boolean isCacheMetadata() {
+        return cacheMetadata;
+    }
+
+    public void setCacheMetadata(boolean cacheMetadata) {
+        this.cacheMetadata = cacheMetadata;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public boolean isOrderByForeignKeys() {
+        return orderByForeignKeys;
+    }
+
+    public void setOrderByForeignKeys(boolean orderByForeignKeys) {
+        this.orderByForeignKeys = orderByForeignKeys;
+    }
+
+    public boolean isDisableForeignKeyChecks() {
+        return disableForeignKeyChecks;
+    }
+
+    public void setDisableForeignKeyChecks(boolean disableForeignKeyChecks) {
+        this.disableForeignKeyChecks = disableForeignKeyChecks;
+    }
+
+    public boolean isResetSequences() {
+        return resetSequences;
+    }
+
+    public void setResetSequences(boolean resetSequences) {
+        this.resetSequences = resetSequences;
+    }
 }
@@ -18,26 +18,48 @@ package com.excilys.ebi.spring.dbunit.config;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.dbunit.dataset.CachedDataSet;
 import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.csv.CsvDataSet;
 import org.dbunit.dataset.excel.XlsDataSet;
+import org.dbunit.dataset.stream.DataSetProducerAdapter;
+import org.dbunit.dataset.stream.IDataSetProducer;
 import org.dbunit.dataset.stream.StreamingDataSet;
 import org.dbunit.dataset.xml.FlatDtdDataSet;
 import org.dbunit.dataset.xml.FlatXmlDataSet;
 import org.dbunit.dataset.xml.FlatXmlDataSetBuilder;
+import org.dbunit.dataset.xml.FlatXmlProducer;
 import org.dbunit.dataset.xml.XmlDataSet;
 import org.dbunit.dataset.xml.XmlProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.ResourceUtils;
 import org.springframework.util.StringUtils;
 import org.xml.sax.InputSource;
 
+import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
+import com.excilys.ebi.spring.dbunit.dataset.binary.BinaryDataSet;
+import com.excilys.ebi.spring.dbunit.dataset.binary.BinaryDataSetProducer;
+import com.excilys.ebi.spring.dbunit.dataset.columnar.ColumnarDataSet;
 import com.excilys.ebi.spring.dbunit.dataset.xml.LinkedHashMapFlatDtdProducer;
 import com.excilys.ebi.spring.dbunit.dataset.xml.flyweight.FlyWeightFlatXmlDataSetBuilder;
+import com.excilys.ebi.spring.dbunit.dataset.xml.flyweight.FlyWeightFlatXmlProducer;
+import com.excilys.ebi.spring.dbunit.dataset.xml.lazy.LazyFlatXmlDataSet;
+import com.excilys.ebi.spring.dbunit.dataset.xml.stax.StaxFlatXmlProducer;
 
 /**
  * @author <a href="mailto:slandelle@excilys.com">Stephane LANDELLE</a>
@@ -54,6 +76,12 @@ public enum DataSetFormat {
          */
         @Override
         protected IDataSet fromResource(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+            if (isLazy(options)) {
+                return lazy(resource, options);
+            }
+            if (options.isColumnar()) {
+                return new ColumnarDataSet(producer(resource, options), options.isCaseSensitiveTableNames());
+            }
             FlyWeightFlatXmlDataSetBuilder builder = new FlyWeightFlatXmlDataSetBuilder();
             builder.setColumnSensing(options.isColumnSensing());
             builder.setDtdMetadata(options.isDtdMetadata());
@@ -64,6 +92,18 @@ public enum DataSetFormat {
             }
             return builder.build(resource.getInputStream());
         }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IDataSetProducer producer(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+            InputSource inputSource = new InputSource(resource.getInputStream());
+            if (StringUtils.hasText(options.getDtdLocation())) {
+                return new FlyWeightFlatXmlProducer(inputSource, FLAT_DTD.loadUnique(null, options.getDtdLocation()));
+            }
+            return new FlyWeightFlatXmlProducer(inputSource, options.isDtdMetadata(), options.isColumnSensing(), options.isCaseSensitiveTableNames());
+        }
     },
 
     /**
@@ -76,6 +116,9 @@ public enum DataSetFormat {
          */
         @Override
         protected IDataSet fromResource(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+            if (isLazy(options)) {
+                return lazy(resource, options);
+            }
             FlatXmlDataSetBuilder builder = new FlatXmlDataSetBuilder();
             builder.setColumnSensing(options.isColumnSensing());
             builder.setDtdMetadata(options.isDtdMetadata());
@@ -86,6 +129,52 @@ public enum DataSetFormat {
             }
             return builder.build(resource.getInputStream());
         }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IDataSetProducer producer(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+            InputSource inputSource = new InputSource(resource.getInputStream());
+            if (StringUtils.hasText(options.getDtdLocation())) {
+                return new FlatXmlProducer(inputSource, FLAT_DTD.loadUnique(null, options.getDtdLocation()));
+            }
+            return new FlatXmlProducer(inputSource, options.isDtdMetadata(), options.isColumnSensing(), options.isCaseSensitiveTableNames());
+        }
+    },
+
+    /**
+     * Flat XML pulled with StAX, see {@link StaxFlatXmlProducer}. Inline DTDs
+     * are not read, use {@link DataSetFormatOptions#getDtdLocation()} for
+     * typed metadata.
+     */
+    STAX_FLAT {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected IDataSet fromResource(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+            if (isLazy(options)) {
+                return lazy(resource, options);
+            }
+            if (options.isColumnar()) {
+                return new ColumnarDataSet(producer(resource, options), options.isCaseSensitiveTableNames());
+            }
+            return new CachedDataSet(producer(resource, options), options.isCaseSensitiveTableNames());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IDataSetProducer producer(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+            IDataSet metaDataSet = null;
+            if (StringUtils.hasText(options.getDtdLocation())) {
+                metaDataSet = FLAT_DTD.loadUnique(null, options.getDtdLocation());
+            }
+            return new StaxFlatXmlProducer(resource.getInputStream(), metaDataSet, options.isColumnSensing(), options.isCaseSensitiveTableNames());
+        }
     },
 
     /**
@@ -100,6 +189,14 @@ public enum DataSetFormat {
         protected IDataSet fromResource(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
             return new XmlDataSet(resource.getInputStream());
         }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IDataSetProducer producer(Resource resource, DataSetFormatOptions options) throws IOException {
+            return new XmlProducer(new InputSource(resource.getInputStream()));
+        }
     },
 
     /**
@@ -114,6 +211,22 @@ public enum DataSetFormat {
         protected IDataSet fromResource(Resource resource, DataSetFormatOptions options) throws IOException {
             return new StreamingDataSet(new XmlProducer(new InputSource(resource.getInputStream())));
         }
+
+        /**
+         * A streaming dataset can only be iterated once.
+         */
+        @Override
+        protected boolean isCacheable() {
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IDataSetProducer producer(Resource resource, DataSetFormatOptions options) throws IOException {
+            return new XmlProducer(new InputSource(resource.getInputStream()));
+        }
     },
 
     /**
@@ -145,8 +258,49 @@ public enum DataSetFormat {
         protected IDataSet fromResource(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
             return new XlsDataSet(resource.getFile());
         }
+    },
+
+    /**
+     * @see {@link BinaryDataSet}.
+     */
+    BINARY {
+        @Override
+        protected IDataSet fromResource(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+            if (options.isColumnar()) {
+                return new ColumnarDataSet(producer(resource, options), options.isCaseSensitiveTableNames());
+            }
+            if (ResourceUtils.isFileURL(resource.getURL())) {
+                return new BinaryDataSet(new BinaryDataSetProducer(resource.getFile()), options.isCaseSensitiveTableNames());
+            }
+
+            InputStream in = resource.getInputStream();
+            try {
+                return new BinaryDataSet(new BinaryDataSetProducer(in), options.isCaseSensitiveTableNames());
+            } finally {
+                in.close();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IDataSetProducer producer(Resource resource, DataSetFormatOptions options) throws IOException {
+            if (ResourceUtils.isFileURL(resource.getURL())) {
+                return new BinaryDataSetProducer(resource.getFile());
+            }
+
+            InputStream in = resource.getInputStream();
+            try {
+                return new BinaryDataSetProducer(in);
+            } finally {
+                in.close();
+            }
+        }
     };
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataSetFormat.class);
+
     private static final ResourcePatternResolver RESOURCE_LOADER = new PathMatchingResourcePatternResolver();
 
     /**
@@ -160,20 +314,149 @@ public enum DataSetFormat {
      */
     protected abstract IDataSet fromResource(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException;
 
+    /**
+     * @return true if the options ask for tables to be parsed on first access,
+     *         which is compatible with them
+     */
+    protected boolean isLazy(DataSetFormatOptions options) {
+        if (options.isLazy() && options.isDtdMetadata()) {
+            LOGGER.info("Inline DTD metadata needs the whole document, loading it eagerly");
+            return false;
+        }
+        return options.isLazy();
+    }
+
+    /**
+     * @return a dataset parsing each table with this format on first access
+     */
+    protected IDataSet lazy(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+        DataSetFormatOptions eagerOptions = options.copy();
+        eagerOptions.setLazy(false);
+        return new LazyFlatXmlDataSet(resource, this, eagerOptions);
+    }
+
+    /**
+     * @return true if the datasets built by this format can be shared through
+     *         the {@link DataSetCache}
+     */
+    protected boolean isCacheable() {
+        return true;
+    }
+
+    /**
+     * Returns a {@link IDataSetProducer producer} for streaming the given
+     * resource without building the whole dataset in memory. Formats without a
+     * dedicated producer build the dataset of this very resource and iterate
+     * over it.
+     * 
+     * @param resource the data file
+     * @param options the options
+     * @return a {@link IDataSetProducer producer}
+     * @throws DataSetException DBUnit failure
+     * @throws IOException I/O failure
+     */
+    public IDataSetProducer producer(Resource resource, DataSetFormatOptions options) throws DataSetException, IOException {
+        return new DataSetProducerAdapter(DataSetCache.getInstance().get(this, resource, options));
+    }
+
+    /**
+     * Resolves locations, possibly with wildcards
+     * 
+     * @param locations the locations
+     * @return the matching resources, in declaration order
+     * @throws IOException I/O failure
+     */
+    public static List<Resource> resolveResources(String[] locations) throws IOException {
+        List<Resource> resources = new ArrayList<Resource>(locations.length);
+        for (String location : locations) {
+            resources.addAll(Arrays.asList(RESOURCE_LOADER.getResources(location)));
+        }
+        return resources;
+    }
+
     public IDataSet loadUnique(DataSetFormatOptions options, String location) throws DataSetException, IOException {
         Resource resource = RESOURCE_LOADER.getResource(location);
-        return fromResource(resource, options);
+        return DataSetCache.getInstance().get(this, resource, options);
     }
 
-    public List<IDataSet> loadMultiple(DataSetFormatOptions options, String[] locations) throws DataSetException, IOException {
+    /**
+     * Loads all the resources matching the given locations. When there's more
+     * than one, they are parsed concurrently; the returned datasets are always
+     * in declaration order.
+     * 
+     * @param options the options
+     * @param locations the locations, possibly with wildcards
+     * @return the {@link IDataSet datasets}, in declaration order
+     * @throws DataSetException DBUnit failure
+     * @throws IOException I/O failure
+     */
+    public List<IDataSet> loadMultiple(final DataSetFormatOptions options, String[] locations) throws DataSetException, IOException {
 
-        List<IDataSet> dataSets = new ArrayList<IDataSet>(locations.length);
-        for (String location : locations) {
-            Resource[] resources = RESOURCE_LOADER.getResources(location);
+        List<Resource> resources = resolveResources(locations);
+
+        List<IDataSet> dataSets = new ArrayList<IDataSet>(resources.size());
+
+        if (resources.size() < 2 || ConfigurationDefaults.DEFAULT_LOADER_THREADS < 2) {
             for (Resource resource : resources) {
-                dataSets.add(fromResource(resource, options));
+                dataSets.add(DataSetCache.getInstance().get(this, resource, options));
             }
+            return dataSets;
         }
-        return dataSets;
+
+        List<Future<IDataSet>> futures = new ArrayList<Future<IDataSet>>(resources.size());
+        try {
+            for (final Resource resource : resources) {
+                futures.add(LoaderExecutorHolder.EXECUTOR.submit(new Callable<IDataSet>() {
+                    public IDataSet call() throws Exception {
+                        return DataSetCache.getInstance().get(DataSetFormat.this, resource, options);
+                    }
+                }));
+            }
+
+            for (Future<IDataSet> future : futures) {
+                dataSets.add(future.get());
+            }
+            return dataSets;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataSetException("Interrupted while loading datasets", e);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DataSetException) {
+                throw (DataSetException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DataSetException(cause);
+
+        } finally {
+            for (Future<IDataSet> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Shared pool for parsing datasets, lazily created on first multiple load.
+     * Threads are daemons so they never prevent the JVM from exiting.
+     */
+    private static class LoaderExecutorHolder {
+
+        private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(ConfigurationDefaults.DEFAULT_LOADER_THREADS, new ThreadFactory() {
+
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "spring-dbunit-loader-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
 }
@@ -23,6 +23,8 @@ public class DataSetFormatOptions {
 	private String dtdLocation = ConfigurationDefaults.DEFAULT_DTD_LOCATION;
 	private boolean dtdMetadata = ConfigurationDefaults.DEFAULT_DTD_METADATA;
 	private boolean caseSensitiveTableNames = ConfigurationDefaults.DEFAULT_CASE_SENSITIVE_TABLE_NAMES;
+	private boolean columnar = ConfigurationDefaults.DEFAULT_COLUMNAR;
+	private boolean lazy = ConfigurationDefaults.DEFAULT_LAZY;
 
 	public static DataSetFormatOptions.Builder newFormatOptions() {
 		return new Builder();
@@ -55,6 +57,16 @@ public class DataSetFormatOptions {
 			return this;
 		}
 
+		public DataSetFormatOptions.Builder withColumnar(boolean columnar) {
+			options.columnar = columnar;
+			return this;
+		}
+
+		public DataSetFormatOptions.Builder withLazy(boolean lazy) {
+			options.lazy = lazy;
+			return this;
+		}
+
 		public DataSetFormatOptions build() {
 			return options;
 		}
@@ -76,6 +88,14 @@ public class DataSetFormatOptions {
 		return caseSensitiveTableNames;
 	}
 
+	public boolean isColumnar() {
+		return columnar;
+	}
+
+	public boolean isLazy() {
+		return lazy;
+	}
+
 	public void setColumnSensing(boolean columnSensing) {
 		this.columnSensing = columnSensing;
 	}
@@ -91,4 +111,48 @@ public class DataSetFormatOptions {
 	public void setCaseSensitiveTableNames(boolean caseSensitiveTableNames) {
 		this.caseSensitiveTableNames = caseSensitiveTableNames;
 	}
-}
\ No newline at end of file
+
+	public void setColumnar(boolean columnar) {
+		this.columnar = columnar;
+	}
+
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	DataSetFormatOptions copy() {
+		DataSetFormatOptions copy = new DataSetFormatOptions();
+		copy.columnSensing = columnSensing;
+		copy.dtdLocation = dtdLocation;
+		copy.dtdMetadata = dtdMetadata;
+		copy.caseSensitiveTableNames = caseSensitiveTableNames;
+		copy.columnar = columnar;
+		copy.lazy = lazy;
+		return copy;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (caseSensitiveTableNames ? 1231 : 1237);
+		result = prime * result + (columnSensing ? 1231 : 1237);
+		result = prime * result + (columnar ? 1231 : 1237);
+		result = prime * result + ((dtdLocation == null) ? 0 : dtdLocation.hashCode());
+		result = prime * result + (dtdMetadata ? 1231 : 1237);
+		result = prime * result + (lazy ? 1231 : 1237);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof DataSetFormatOptions))
+			return false;
+		DataSetFormatOptions other = (DataSetFormatOptions) obj;
+		return caseSensitiveTableNames == other.caseSensitiveTableNames && columnSensing == other.columnSensing && dtdMetadata == other.dtdMetadata
+				&& columnar == other.columnar && lazy == other.lazy
+				&& (dtdLocation == null ? other.dtdLocation == null : dtdLocation.equals(other.dtdLocation));
+	}
+}
@@ -18,6 +18,7 @@ package com.excilys.ebi.spring.dbunit.config;
 import static org.springframework.util.StringUtils.tokenizeToStringArray;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.dbunit.database.DatabaseConfig;
@@ -26,10 +27,12 @@ import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.IDataSet;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
+import com.excilys.ebi.spring.dbunit.dataset.LazyCompositeDataSet;
 
-public class ExpectedDataSetConfiguration implements DatabaseConnectionConfigurer {
+public class ExpectedDataSetConfiguration implements PoolableConnectionConfigurer {
 
     private boolean disabled;
 
@@ -53,9 +56,20 @@ public class ExpectedDataSetConfiguration implements DatabaseConnectionConfigure
 
     private String schema = ConfigurationDefaults.DEFAULT_SCHEMA;
 
+    private boolean cacheMetadata = ConfigurationDefaults.DEFAULT_CACHE_METADATA;
+
+    private ComparisonMode comparisonMode = ConfigurationDefaults.DEFAULT_COMPARISON_MODE;
+
+    private int fetchSize = ConfigurationDefaults.DEFAULT_FETCH_SIZE;
+
     public IDataSet getDataSet() throws DataSetException, IOException {
         List<IDataSet> dataSets = format.loadMultiple(formatOptions, dataSetResourceLocations);
-        return dataSets.size() == 1 ? dataSets.get(0) : new CompositeDataSet(dataSets.toArray(new IDataSet[dataSets.size()]));
+        if (dataSets.size() == 1) {
+            return dataSets.get(0);
+        }
+        IDataSet[] dataSetArray = dataSets.toArray(new IDataSet[dataSets.size()]);
+        // the composite would read every table of every file
+        return formatOptions.isLazy() ? new LazyCompositeDataSet(dataSetArray, formatOptions.isCaseSensitiveTableNames()) : new CompositeDataSet(dataSetArray);
     }
 
     @Override
@@ -65,12 +79,26 @@ public class ExpectedDataSetConfiguration implements DatabaseConnectionConfigure
 
         databaseConfig.setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, dbType.getDataTypeFactory());
         databaseConfig.setProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER, dbType.getMetadataHandler());
-        databaseConfig.setProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN, escapePattern);
+        databaseConfig.setProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN, StringUtils.hasText(escapePattern) ? escapePattern : null);
+        databaseConfig.setProperty(DatabaseConfig.PROPERTY_FETCH_SIZE, fetchSize);
         databaseConfig.setProperty(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES, formatOptions.isCaseSensitiveTableNames());
         databaseConfig.setProperty(DatabaseConfig.FEATURE_QUALIFIED_TABLE_NAMES, qualifiedTableNames);
         databaseConfig.setProperty(DatabaseConfig.PROPERTY_TABLE_TYPE, tableType);
     }
 
+    @Override
+    public List<Object> getConnectionKey() {
+        return Arrays.<Object> asList(/**/
+                ExpectedDataSetConfiguration.class, /**/
+                cacheMetadata, /**/
+                dbType, /**/
+                escapePattern, /**/
+                fetchSize, /**/
+                formatOptions.isCaseSensitiveTableNames(), /**/
+                qualifiedTableNames, /**/
+                Arrays.asList(tableType));
+    }
+
     public static Builder newExpectedDataSetConfiguration() {
         return new Builder();
     }
@@ -141,12 +169,28 @@ public class ExpectedDataSetConfiguration implements DatabaseConnectionConfigure
             return this;
         }
 
+        public Builder withCacheMetadata(boolean cacheMetadata) {
+            expectedDataSetConfiguration.cacheMetadata = cacheMetadata;
+            return this;
+        }
+
+        public Builder withComparisonMode(ComparisonMode comparisonMode) {
+            expectedDataSetConfiguration.comparisonMode = comparisonMode;
+            return this;
+        }
+
+        public Builder withFetchSize(int fetchSize) {
+            expectedDataSetConfiguration.fetchSize = fetchSize;
+            return this;
+        }
+
         public ExpectedDataSetConfiguration build() {
 
             Assert.notNull(expectedDataSetConfiguration.dataSetResourceLocations, "dataSetResourceLocations is required");
             Assert.notNull(expectedDataSetConfiguration.dbType, "dbType is required");
             Assert.notNull(expectedDataSetConfiguration.format, "format is required");
             Assert.notNull(expectedDataSetConfiguration.formatOptions, "formatOptions are required");
+            Assert.notNull(expectedDataSetConfiguration.comparisonMode, "comparisonMode is required");
 
             return expectedDataSetConfiguration;
         }
@@ -247,4 +291,29 @@ public class ExpectedDataSetConfiguration implements DatabaseConnectionConfigure
     public void setColumnsToIgnore(String[] columnsToIgnore) {
         this.columnsToIgnore = columnsToIgnore;
     }
+
+    @Override
+    public boolean isCacheMetadata() {
+        return cacheMetadata;
+    }
+
+    public void setCacheMetadata(boolean cacheMetadata) {
+        this.cacheMetadata = cacheMetadata;
+    }
+
+    public ComparisonMode getComparisonMode() {
+        return comparisonMode;
+    }
+
+    public void setComparisonMode(ComparisonMode comparisonMode) {
+        this.comparisonMode = comparisonMode;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
 }
@@ -27,15 +27,20 @@ public enum Phase {
 		@Override
 		public DatabaseOperation getOperation(DataSetConfiguration configuration) {
 			if (configuration.getSetUpOperation().length == 1) {
-				return configuration.getSetUpOperation()[0].getDatabaseOperation();
+				return configuration.getSetUpOperation()[0].getDatabaseOperation(configuration.getDbType());
 			} else {
 				DatabaseOperation[] databaseOperations = new DatabaseOperation[configuration.getSetUpOperation().length];
 				for (int i = 0; i < configuration.getSetUpOperation().length; i++) {
-					databaseOperations[i] = configuration.getSetUpOperation()[i].getDatabaseOperation();
+					databaseOperations[i] = configuration.getSetUpOperation()[i].getDatabaseOperation(configuration.getDbType());
 				}
 				return new CompositeOperation(databaseOperations);
 			}
 		}
+
+		@Override
+		public DBOperation[] getOperations(DataSetConfiguration configuration) {
+			return configuration.getSetUpOperation();
+		}
 	}
 
 	,
@@ -43,16 +48,23 @@ public enum Phase {
 		@Override
 		public DatabaseOperation getOperation(DataSetConfiguration configuration) {
 			if (configuration.getTearDownOperation().length == 1) {
-				return configuration.getTearDownOperation()[0].getDatabaseOperation();
+				return configuration.getTearDownOperation()[0].getDatabaseOperation(configuration.getDbType());
 			} else {
 				DatabaseOperation[] databaseOperations = new DatabaseOperation[configuration.getTearDownOperation().length];
 				for (int i = 0; i < configuration.getTearDownOperation().length; i++) {
-					databaseOperations[i] = configuration.getTearDownOperation()[i].getDatabaseOperation();
+					databaseOperations[i] = configuration.getTearDownOperation()[i].getDatabaseOperation(configuration.getDbType());
 				}
 				return new CompositeOperation(databaseOperations);
 			}
 		}
+
+		@Override
+		public DBOperation[] getOperations(DataSetConfiguration configuration) {
+			return configuration.getTearDownOperation();
+		}
 	};
 
 	public abstract DatabaseOperation getOperation(DataSetConfiguration configuration);
+
+	public abstract DBOperation[] getOperations(DataSetConfiguration configuration);
 }
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.config;
+
+import java.util.List;
+
+/**
+ * {@link DatabaseConnectionConfigurer} whose DBUnit connections can be reused
+ * through the {@link com.excilys.ebi.spring.dbunit.database.DatabaseConnectionPool}
+ * by all the configurers with the same key. Other configurers get a new
+ * connection each time.
+ */
+public interface PoolableConnectionConfigurer extends DatabaseConnectionConfigurer {
+
+	/**
+	 * @return true if the connection metadata is to be shared through the
+	 *         {@link com.excilys.ebi.spring.dbunit.database.DatabaseMetadataCache}
+	 */
+	boolean isCacheMetadata();
+
+	/**
+	 * @return everything {@link #configure} sets on the DatabaseConfig, along
+	 *         with {@link #isCacheMetadata()}: configurers with equal keys
+	 *         share their connections
+	 */
+	List<Object> getConnectionKey();
+}
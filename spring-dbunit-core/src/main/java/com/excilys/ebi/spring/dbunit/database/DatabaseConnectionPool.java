@@ -0,0 +1,138 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.database;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import org.dbunit.DatabaseUnitException;
+
+import com.excilys.ebi.spring.dbunit.config.DatabaseConnectionConfigurer;
+
+/**
+ * Process-wide pool of the {@link PooledDatabaseConnection}s wrapping the JDBC
+ * connections of each DataSource, so that the loading and assertion phases of
+ * all the tests reuse them instead of creating and configuring new ones.
+ * <p>
+ * Idle connections are keyed by schema and configuration: the caller builds a
+ * key holding everything the configurer sets. A connection is used by one
+ * thread at a time, between {@link #acquire} and {@link #release}; one that
+ * is never released is simply not reused. DataSources are weakly referenced,
+ * so that closed application contexts don't keep their connections.
+ */
+public class DatabaseConnectionPool {
+
+    private static final DatabaseConnectionPool INSTANCE = new DatabaseConnectionPool();
+
+    private final Map<DataSource, ConcurrentMap<List<Object>, Queue<PooledDatabaseConnection>>> pools = Collections
+            .synchronizedMap(new WeakHashMap<DataSource, ConcurrentMap<List<Object>, Queue<PooledDatabaseConnection>>>());
+
+    public static DatabaseConnectionPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param dataSource
+     *            the DataSource the JDBC connection comes from
+     * @param key
+     *            the schema and all the settings of the configurer
+     * @param connection
+     *            the JDBC connection to wrap
+     * @param schema
+     *            the schema, may be null
+     * @param configurer
+     *            the configurer, only called for new connections
+     * @param cacheMetadata
+     *            if the metadata is to be shared through the
+     *            {@link DatabaseMetadataCache}
+     * @return an idle connection bound to the JDBC connection, or a new one
+     */
+    public PooledDatabaseConnection acquire(DataSource dataSource, List<Object> key, Connection connection, String schema,
+            DatabaseConnectionConfigurer configurer, boolean cacheMetadata) throws DatabaseUnitException {
+
+        Queue<PooledDatabaseConnection> pool = getPool(dataSource, key);
+        PooledDatabaseConnection databaseConnection = pool.poll();
+        if (databaseConnection != null) {
+            databaseConnection.bind(connection);
+        } else {
+            databaseConnection = new PooledDatabaseConnection(pool, connection, schema, cacheMetadata);
+            configurer.configure(databaseConnection.getConfig());
+        }
+        return databaseConnection;
+    }
+
+    /**
+     * Unbinds the connection from its JDBC connection, which is left open, and
+     * makes it available again
+     */
+    public void release(PooledDatabaseConnection databaseConnection) {
+        databaseConnection.unbind();
+        databaseConnection.getPool().offer(databaseConnection);
+    }
+
+    private Queue<PooledDatabaseConnection> getPool(DataSource dataSource, List<Object> key) {
+
+        ConcurrentMap<List<Object>, Queue<PooledDatabaseConnection>> dataSourcePools;
+        synchronized (pools) {
+            dataSourcePools = pools.get(dataSource);
+            if (dataSourcePools == null) {
+                dataSourcePools = new ConcurrentHashMap<List<Object>, Queue<PooledDatabaseConnection>>();
+                pools.put(dataSource, dataSourcePools);
+            }
+        }
+
+        Queue<PooledDatabaseConnection> pool = dataSourcePools.get(key);
+        if (pool == null) {
+            Queue<PooledDatabaseConnection> newPool = new ConcurrentLinkedQueue<PooledDatabaseConnection>();
+            pool = dataSourcePools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Forgets all the idle connections
+     */
+    public void clear() {
+        pools.clear();
+    }
+
+    /**
+     * @return the number of idle connections
+     */
+    public int size() {
+        int size = 0;
+        synchronized (pools) {
+            for (ConcurrentMap<List<Object>, Queue<PooledDatabaseConnection>> dataSourcePools : pools.values()) {
+                for (Queue<PooledDatabaseConnection> pool : dataSourcePools.values()) {
+                    size += pool.size();
+                }
+            }
+        }
+        return size;
+    }
+}
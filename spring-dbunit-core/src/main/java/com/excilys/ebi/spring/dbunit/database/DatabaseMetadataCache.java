@@ -0,0 +1,78 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.database;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Process-wide cache of the database metadata read by
+ * {@link MetadataCachingDatabaseConnection}s: table names, columns and primary
+ * keys.
+ * <p>
+ * Entries are keyed by JDBC URL, user, schema and the DBUnit settings that
+ * change how metadata is read (data type factory, metadata handler, table
+ * types...). The cache is never refreshed by itself: {@link #invalidate()} it
+ * when the schema changes, for example after recreating tables.
+ */
+public class DatabaseMetadataCache {
+
+    private static final DatabaseMetadataCache INSTANCE = new DatabaseMetadataCache();
+
+    private final ConcurrentMap<List<Object>, Entry> entries = new ConcurrentHashMap<List<Object>, Entry>();
+
+    public static DatabaseMetadataCache getInstance() {
+        return INSTANCE;
+    }
+
+    Entry getEntry(List<Object> key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry newEntry = new Entry();
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Forgets all the cached metadata, including the {@link ForeignKeyGraph
+     * foreign keys}
+     */
+    public void invalidate() {
+        entries.clear();
+        ForeignKeyGraph.invalidate();
+    }
+
+    /**
+     * @return the number of cached databases
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    static class Entry {
+
+        volatile String[] tableNames;
+
+        final ConcurrentMap<String, ITableMetaData> tables = new ConcurrentHashMap<String, ITableMetaData>();
+    }
+}
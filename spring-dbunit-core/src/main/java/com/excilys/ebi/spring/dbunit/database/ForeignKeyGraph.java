@@ -0,0 +1,188 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.database;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * The foreign keys between the tables of a schema, read from the JDBC
+ * metadata when a table is first met, and shared process-wide per JDBC URL,
+ * user and schema. Like the {@link DatabaseMetadataCache}, that also clears
+ * it, it has to be {@link #invalidate() invalidated} when the schema changes.
+ */
+public class ForeignKeyGraph {
+
+    private static final ConcurrentMap<List<Object>, ForeignKeyGraph> GRAPHS = new ConcurrentHashMap<List<Object>, ForeignKeyGraph>();
+
+    // upper cased table name -> upper cased names of the tables it references
+    private final ConcurrentMap<String, Set<String>> referencedTables = new ConcurrentHashMap<String, Set<String>>();
+
+    private static final String[] CYCLIC = new String[0];
+
+    // dataset table names -> sorted names, or CYCLIC
+    private final ConcurrentMap<List<String>, String[]> orders = new ConcurrentHashMap<List<String>, String[]>();
+
+    private ForeignKeyGraph() {
+    }
+
+    /**
+     * @param connection a connection
+     * @return the graph of the schema of the connection
+     */
+    public static ForeignKeyGraph getInstance(IDatabaseConnection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getConnection().getMetaData();
+        List<Object> key = Arrays.<Object> asList(metaData.getURL(), metaData.getUserName(), connection.getSchema());
+        ForeignKeyGraph graph = GRAPHS.get(key);
+        if (graph == null) {
+            ForeignKeyGraph newGraph = new ForeignKeyGraph();
+            graph = GRAPHS.putIfAbsent(key, newGraph);
+            if (graph == null) {
+                graph = newGraph;
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Forgets the foreign keys of all the schemas
+     */
+    public static void invalidate() {
+        GRAPHS.clear();
+    }
+
+    /**
+     * Groups tables in waves: the tables of a wave only reference tables of
+     * the previous waves, or tables out of the given ones. Self references are
+     * ignored.
+     * 
+     * @param connection the connection
+     * @param tableNames the dataset table names
+     * @return the dataset table names grouped in waves, in the given order
+     *         inside each wave, or null if the tables have cyclic dependencies
+     */
+    public List<List<String>> getWaves(IDatabaseConnection connection, String[] tableNames) throws DataSetException, SQLException {
+
+        IDataSet databaseDataSet = connection.createDataSet();
+
+        // upper cased database name -> dataset name
+        Map<String, String> tables = new LinkedHashMap<String, String>();
+        Map<String, Set<String>> dependencies = new LinkedHashMap<String, Set<String>>();
+        for (String tableName : tableNames) {
+            String databaseName = databaseDataSet.getTableMetaData(tableName).getTableName();
+            databaseName = databaseName.substring(databaseName.lastIndexOf('.') + 1);
+            String key = databaseName.toUpperCase(Locale.ENGLISH);
+            if (!tables.containsKey(key)) {
+                tables.put(key, tableName);
+                dependencies.put(key, getReferencedTables(connection, databaseName));
+            }
+        }
+
+        List<List<String>> waves = new ArrayList<List<String>>();
+        Set<String> done = new HashSet<String>();
+        while (done.size() < tables.size()) {
+            List<String> wave = new ArrayList<String>();
+            for (Map.Entry<String, Set<String>> table : dependencies.entrySet()) {
+                if (!done.contains(table.getKey()) && isReady(table.getKey(), table.getValue(), tables.keySet(), done)) {
+                    wave.add(table.getKey());
+                }
+            }
+            if (wave.isEmpty()) {
+                return null;
+            }
+            done.addAll(wave);
+
+            List<String> dataSetNames = new ArrayList<String>(wave.size());
+            for (String table : wave) {
+                dataSetNames.add(tables.get(table));
+            }
+            waves.add(dataSetNames);
+        }
+        return waves;
+    }
+
+    /**
+     * @param connection the connection
+     * @param tableNames the dataset table names
+     * @return the dataset table names, referenced tables first, or null if the
+     *         tables have cyclic dependencies. The order is cached per table
+     *         names.
+     */
+    public String[] sort(IDatabaseConnection connection, String[] tableNames) throws DataSetException, SQLException {
+
+        List<String> key = Arrays.asList(tableNames);
+        String[] order = orders.get(key);
+        if (order == null) {
+            List<List<String>> waves = getWaves(connection, tableNames);
+            if (waves == null) {
+                order = CYCLIC;
+            } else {
+                List<String> sorted = new ArrayList<String>(tableNames.length);
+                for (List<String> wave : waves) {
+                    sorted.addAll(wave);
+                }
+                order = sorted.toArray(new String[sorted.size()]);
+            }
+            orders.put(key, order);
+        }
+        return order == CYCLIC ? null : order.clone();
+    }
+
+    private boolean isReady(String table, Set<String> referencedTables, Set<String> tables, Set<String> done) {
+        for (String referencedTable : referencedTables) {
+            if (!referencedTable.equals(table) && tables.contains(referencedTable) && !done.contains(referencedTable)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Set<String> getReferencedTables(IDatabaseConnection connection, String table) throws SQLException {
+
+        String key = table.toUpperCase(Locale.ENGLISH);
+        Set<String> tables = referencedTables.get(key);
+        if (tables == null) {
+            tables = new HashSet<String>();
+            ResultSet importedKeys = connection.getConnection().getMetaData().getImportedKeys(null, connection.getSchema(), table);
+            try {
+                while (importedKeys.next()) {
+                    tables.add(importedKeys.getString("PKTABLE_NAME").toUpperCase(Locale.ENGLISH));
+                }
+            } finally {
+                importedKeys.close();
+            }
+            tables = Collections.unmodifiableSet(tables);
+            referencedTables.put(key, tables);
+        }
+        return tables;
+    }
+}
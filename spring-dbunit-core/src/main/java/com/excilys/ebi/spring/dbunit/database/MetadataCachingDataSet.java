@@ -0,0 +1,137 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.database;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseDataSet;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.IResultSetTableFactory;
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Database dataset reading its metadata from a {@link DatabaseMetadataCache}
+ * entry. Misses are read through a regular {@link DatabaseDataSet} on the
+ * current connection and fully loaded before being shared, so that cached
+ * metadata never goes back to the connection it was read with.
+ */
+class MetadataCachingDataSet extends AbstractDataSet {
+
+    private final IDatabaseConnection connection;
+
+    private final DatabaseMetadataCache.Entry entry;
+
+    private DatabaseDataSet delegate;
+
+    MetadataCachingDataSet(IDatabaseConnection connection, DatabaseMetadataCache.Entry entry, boolean caseSensitiveTableNames) {
+        super(caseSensitiveTableNames);
+        this.connection = connection;
+        this.entry = entry;
+    }
+
+    private DatabaseDataSet getDelegate() throws DataSetException {
+        if (delegate == null) {
+            try {
+                delegate = new DatabaseDataSet(connection, isCaseSensitiveTableNames());
+            } catch (SQLException e) {
+                throw new DataSetException(e);
+            }
+        }
+        return delegate;
+    }
+
+    @Override
+    public String[] getTableNames() throws DataSetException {
+        String[] tableNames = entry.tableNames;
+        if (tableNames == null) {
+            tableNames = getDelegate().getTableNames();
+            entry.tableNames = tableNames;
+        }
+        return tableNames.clone();
+    }
+
+    @Override
+    public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+
+        String key = isCaseSensitiveTableNames() ? tableName : tableName.toUpperCase(Locale.ENGLISH);
+        ITableMetaData metaData = entry.tables.get(key);
+
+        if (metaData == null) {
+            metaData = getDelegate().getTableMetaData(tableName);
+            // load everything that would otherwise be read lazily
+            metaData.getColumns();
+            metaData.getPrimaryKeys();
+            entry.tables.putIfAbsent(key, metaData);
+        }
+        return metaData;
+    }
+
+    @Override
+    public ITable getTable(String tableName) throws DataSetException {
+
+        ITableMetaData metaData = getTableMetaData(tableName);
+        IResultSetTableFactory factory = (IResultSetTableFactory) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_RESULTSET_TABLE_FACTORY);
+        try {
+            return factory.createTable(metaData, connection);
+        } catch (SQLException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    @Override
+    protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+        return new TableIterator(getTableNames(), reversed);
+    }
+
+    private class TableIterator implements ITableIterator {
+
+        private final String[] tableNames;
+
+        private final boolean reversed;
+
+        private int index = -1;
+
+        private TableIterator(String[] tableNames, boolean reversed) {
+            this.tableNames = tableNames;
+            this.reversed = reversed;
+        }
+
+        private String getTableName() {
+            return tableNames[reversed ? tableNames.length - 1 - index : index];
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < tableNames.length;
+        }
+
+        @Override
+        public ITableMetaData getTableMetaData() throws DataSetException {
+            return MetadataCachingDataSet.this.getTableMetaData(getTableName());
+        }
+
+        @Override
+        public ITable getTable() throws DataSetException {
+            return MetadataCachingDataSet.this.getTable(getTableName());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * {@link DatabaseConnection} sharing its database metadata with the other
+ * connections to the same database through the {@link DatabaseMetadataCache},
+ * instead of reading it again from JDBC each time.
+ * <p>
+ * The cache entry is chosen on the first {@link #createDataSet()}, so the
+ * connection must be configured before.
+ */
+public class MetadataCachingDatabaseConnection extends DatabaseConnection {
+
+    private IDataSet dataSet;
+
+    public MetadataCachingDatabaseConnection(Connection connection) throws DatabaseUnitException {
+        super(connection);
+    }
+
+    public MetadataCachingDatabaseConnection(Connection connection, String schema) throws DatabaseUnitException {
+        super(connection, schema);
+    }
+
+    @Override
+    public IDataSet createDataSet() throws SQLException {
+        if (dataSet == null) {
+            boolean caseSensitiveTableNames = getConfig().getFeature(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES);
+            dataSet = new MetadataCachingDataSet(this, DatabaseMetadataCache.getInstance().getEntry(getCacheKey(this)), caseSensitiveTableNames);
+        }
+        return dataSet;
+    }
+
+    static List<Object> getCacheKey(IDatabaseConnection connection) throws SQLException {
+        DatabaseConfig config = connection.getConfig();
+        DatabaseMetaData metaData = connection.getConnection().getMetaData();
+        return Arrays.<Object> asList(/**/
+                metaData.getURL(), /**/
+                metaData.getUserName(), /**/
+                connection.getSchema(), /**/
+                getClassName(config.getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY)), /**/
+                getClassName(config.getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER)), /**/
+                Arrays.asList((Object[]) config.getProperty(DatabaseConfig.PROPERTY_TABLE_TYPE)), /**/
+                config.getFeature(DatabaseConfig.FEATURE_QUALIFIED_TABLE_NAMES), /**/
+                config.getFeature(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES), /**/
+                config.getFeature(DatabaseConfig.FEATURE_SKIP_ORACLE_RECYCLEBIN_TABLES));
+    }
+
+    private static String getClassName(Object object) {
+        return object != null ? object.getClass().getName() : null;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.database;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Queue;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.AbstractDatabaseConnection;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.util.SQLHelper;
+import org.slf4j.Logger;
+
+/**
+ * DBUnit connection handed out by the {@link DatabaseConnectionPool}: unlike a
+ * {@link org.dbunit.database.DatabaseConnection}, it is bound to a new JDBC
+ * connection each time it's acquired, so that the schema is checked and the
+ * {@link DatabaseConfig} configured only once.
+ * <p>
+ * The database dataset is created again for each use, so that the metadata
+ * is not kept from one test to the next, unless it's cached by the
+ * {@link DatabaseMetadataCache}.
+ */
+public class PooledDatabaseConnection extends AbstractDatabaseConnection {
+
+    private static final Logger LOGGER = getLogger(PooledDatabaseConnection.class);
+
+    private final Queue<PooledDatabaseConnection> pool;
+
+    private final String schema;
+
+    private final boolean cacheMetadata;
+
+    private List<Object> metadataCacheKey;
+
+    private Connection connection;
+
+    private IDataSet dataSet;
+
+    PooledDatabaseConnection(Queue<PooledDatabaseConnection> pool, Connection connection, String schema, boolean cacheMetadata) throws DatabaseUnitException {
+        this.pool = pool;
+        this.connection = connection;
+        this.schema = schema != null ? SQLHelper.correctCase(schema, connection) : null;
+        this.cacheMetadata = cacheMetadata;
+        validateSchema();
+    }
+
+    /**
+     * Same check as DBUnit, which only warns
+     */
+    private void validateSchema() throws DatabaseUnitException {
+        if (schema != null) {
+            try {
+                if (!SQLHelper.schemaExists(connection, schema)) {
+                    LOGGER.warn("The given schema '{}' does not exist.", schema);
+                }
+            } catch (SQLException e) {
+                throw new DatabaseUnitException("Exception while checking the schema for validity", e);
+            }
+        }
+    }
+
+    void bind(Connection connection) {
+        this.connection = connection;
+    }
+
+    void unbind() {
+        connection = null;
+        dataSet = null;
+    }
+
+    Queue<PooledDatabaseConnection> getPool() {
+        return pool;
+    }
+
+    @Override
+    public IDataSet createDataSet() throws SQLException {
+        if (dataSet == null) {
+            boolean caseSensitiveTableNames = getConfig().getFeature(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES);
+            if (cacheMetadata) {
+                // same database and configuration for each use
+                if (metadataCacheKey == null) {
+                    metadataCacheKey = MetadataCachingDatabaseConnection.getCacheKey(this);
+                }
+                dataSet = new MetadataCachingDataSet(this, DatabaseMetadataCache.getInstance().getEntry(metadataCacheKey), caseSensitiveTableNames);
+            } else {
+                dataSet = new DatabaseDataSet(this, caseSensitiveTableNames);
+            }
+        }
+        return dataSet;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (connection == null) {
+            throw new IllegalStateException("This connection has been released to the pool");
+        }
+        return connection;
+    }
+
+    @Override
+    public String getSchema() {
+        return schema;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        getConnection().close();
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.CompositeTable;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchTableException;
+import org.dbunit.dataset.OrderedTableNameMap;
+
+/**
+ * Same as {@link org.dbunit.dataset.CompositeDataSet}, tables with the same
+ * name being combined, except that tables are only read from the datasets
+ * when asked for, instead of all at construction time.
+ */
+public class LazyCompositeDataSet extends AbstractDataSet {
+
+    /**
+     * The datasets holding each table, in declaration order
+     */
+    private final OrderedTableNameMap dataSetsByTable;
+
+    public LazyCompositeDataSet(IDataSet[] dataSets, boolean caseSensitiveTableNames) throws DataSetException {
+        super(caseSensitiveTableNames);
+        dataSetsByTable = createTableNameMap();
+        for (IDataSet dataSet : dataSets) {
+            for (String tableName : dataSet.getTableNames()) {
+                if (!dataSetsByTable.containsTable(tableName)) {
+                    dataSetsByTable.add(tableName, new ArrayList<IDataSet>());
+                }
+                getDataSets(tableName).add(dataSet);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<IDataSet> getDataSets(String tableName) throws DataSetException {
+        List<IDataSet> dataSets = (List<IDataSet>) dataSetsByTable.get(tableName);
+        if (dataSets == null) {
+            throw new NoSuchTableException(tableName);
+        }
+        return dataSets;
+    }
+
+    @Override
+    public String[] getTableNames() throws DataSetException {
+        return dataSetsByTable.getTableNames();
+    }
+
+    @Override
+    public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+        return getDataSets(tableName).get(0).getTableMetaData(tableName);
+    }
+
+    @Override
+    public ITable getTable(String tableName) throws DataSetException {
+
+        List<IDataSet> dataSets = getDataSets(tableName);
+        if (dataSets.size() == 1) {
+            return dataSets.get(0).getTable(tableName);
+        }
+
+        ITable[] tables = new ITable[dataSets.size()];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = dataSets.get(i).getTable(tableName);
+        }
+        return new CompositeTable(tables[0].getTableMetaData(), tables);
+    }
+
+    @Override
+    protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+        return new LazyTableIterator(this, getTableNames(), reversed);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Iterates over the tables of a dataset by name, so that each one is only
+ * loaded when the iterator reaches it
+ */
+public class LazyTableIterator implements ITableIterator {
+
+    private final IDataSet dataSet;
+
+    private final String[] tableNames;
+
+    private int index = -1;
+
+    public LazyTableIterator(IDataSet dataSet, String[] tableNames, boolean reversed) {
+        this.dataSet = dataSet;
+        this.tableNames = new String[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            this.tableNames[i] = tableNames[reversed ? tableNames.length - 1 - i : i];
+        }
+    }
+
+    @Override
+    public boolean next() throws DataSetException {
+        return ++index < tableNames.length;
+    }
+
+    @Override
+    public ITableMetaData getTableMetaData() throws DataSetException {
+        return dataSet.getTableMetaData(tableNames[index]);
+    }
+
+    @Override
+    public ITable getTable() throws DataSetException {
+        return dataSet.getTable(tableNames[index]);
+    }
+}
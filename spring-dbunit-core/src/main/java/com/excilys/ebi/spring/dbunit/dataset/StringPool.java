@@ -0,0 +1,137 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
+
+/**
+ * Process-wide, bounded pool of strings, so that the same names and values
+ * read by many producers, possibly in parallel, are only kept once in memory.
+ * <p>
+ * The pool is split into stripes, each one an LRU map guarded by its own lock,
+ * so that concurrent parsers seldom wait for each other. The pool size is set
+ * with the <code>spring.dbunit.stringpoolsize</code> system property, 0
+ * disabling pooling.
+ */
+public class StringPool {
+
+    private static final int STRIPES = 16;
+
+    private static final StringPool INSTANCE = new StringPool(ConfigurationDefaults.DEFAULT_STRING_POOL_SIZE);
+
+    public static StringPool getInstance() {
+        return INSTANCE;
+    }
+
+    private final Stripe[] stripes;
+
+    public StringPool(int maxSize) {
+        stripes = new Stripe[maxSize > 0 ? STRIPES : 0];
+        int stripeSize = (maxSize + STRIPES - 1) / STRIPES;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    /**
+     * @param value a string
+     * @return the pooled string equal to the given one, or the given one if
+     *         none was pooled yet
+     */
+    public String intern(String value) {
+
+        if (value == null || stripes.length == 0) {
+            return value;
+        }
+
+        int hash = value.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            String pooled = stripe.get(value);
+            if (pooled != null) {
+                stripe.hitCount++;
+                return pooled;
+            }
+            stripe.missCount++;
+            stripe.put(value, value);
+            return value;
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+                stripe.hitCount = 0;
+                stripe.missCount = 0;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        long hitCount = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hitCount += stripe.hitCount;
+            }
+        }
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        long missCount = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                missCount += stripe.missCount;
+            }
+        }
+        return missCount;
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private long hitCount;
+
+        private long missCount;
+
+        private Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.binary;
+
+import java.nio.charset.Charset;
+
+/**
+ * Layout of the binary dataset format.
+ * 
+ * <pre>
+ * file    := MAGIC VERSION table* END
+ * table   := TABLE string(name) varint(columnCount) column* varint(pkCount) varint(pkIndex)* row* END_TABLE
+ * column  := string(name) byte(nullable) (UNKNOWN_TYPE | KNOWN_TYPE zigzag(sqlType) string(sqlTypeName))
+ * row     := ROW value{columnCount}
+ * string  := STRING_REF varint(index) | STRING_NEW varint(length) utf8Bytes
+ * </pre>
+ * 
+ * Every string (table names, column names and values) is interned: its first
+ * occurrence is written inline and the following ones are written as an index
+ * in the strings already read.
+ */
+interface BinaryConstants {
+
+    int MAGIC = 0x53444255; // "SDBU"
+
+    byte VERSION = 1;
+
+    Charset UTF_8 = Charset.forName("UTF-8");
+
+    // records
+    byte END = 0;
+    byte TABLE = 1;
+    byte ROW = 2;
+    byte END_TABLE = 3;
+
+    // column types
+    byte UNKNOWN_TYPE = 0;
+    byte KNOWN_TYPE = 1;
+
+    // values
+    byte NULL = 0;
+    byte NO_VALUE = 1;
+    byte STRING_REF = 2;
+    byte STRING_NEW = 3;
+    byte INT = 4;
+    byte LONG = 5;
+    byte FLOAT = 6;
+    byte DOUBLE = 7;
+    byte DECIMAL = 8;
+    byte BIG_INTEGER = 9;
+    byte TRUE = 10;
+    byte FALSE = 11;
+    byte BYTES = 12;
+    byte DATE = 13;
+    byte TIME = 14;
+    byte TIMESTAMP = 15;
+    byte UTIL_DATE = 16;
+}
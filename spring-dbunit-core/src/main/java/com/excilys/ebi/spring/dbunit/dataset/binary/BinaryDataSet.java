@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * Compact binary dataset, meant to be compiled from another format (see
+ * {@link BinaryDataSetCompiler}) and loaded without any XML parsing.
+ * <p>
+ * Column metadata is stored once per table, values are typed and all strings
+ * are interned, see {@link BinaryConstants} for the layout.
+ */
+public class BinaryDataSet extends CachedDataSet {
+
+    public BinaryDataSet(BinaryDataSetProducer producer) throws DataSetException {
+        this(producer, false);
+    }
+
+    public BinaryDataSet(BinaryDataSetProducer producer, boolean caseSensitiveTableNames) throws DataSetException {
+        super(producer, caseSensitiveTableNames);
+    }
+
+    public BinaryDataSet(File file) throws DataSetException, IOException {
+        this(new BinaryDataSetProducer(file));
+    }
+
+    public BinaryDataSet(InputStream in) throws DataSetException, IOException {
+        this(new BinaryDataSetProducer(in));
+    }
+
+    /**
+     * Write the specified dataset to the specified output stream in the binary
+     * format.
+     */
+    public static void write(IDataSet dataSet, OutputStream out) throws DataSetException {
+        new BinaryDataSetWriter(out).write(dataSet);
+    }
+
+    /**
+     * Write the specified dataset to the specified file in the binary format.
+     */
+    public static void write(IDataSet dataSet, File file) throws DataSetException, IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(dataSet, out);
+        } finally {
+            out.close();
+        }
+    }
+}
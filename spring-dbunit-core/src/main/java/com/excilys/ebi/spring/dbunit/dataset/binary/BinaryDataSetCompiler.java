@@ -0,0 +1,152 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.binary;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions;
+
+/**
+ * Precompiles datasets into the {@link DataSetFormat#BINARY binary format}:
+ * every <code>.xml</code> (or <code>.xls</code>) file under the source
+ * directory is written as a <code>.bin</code> file, at the same relative path,
+ * under the target directory.
+ * <p>
+ * Arguments: <code>sourceDirectory targetDirectory [format] [columnSensing]</code>
+ * , the format defaulting to FLAT. For example, with the exec-maven-plugin:
+ * 
+ * <pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;phase&gt;process-test-resources&lt;/phase&gt;
+ *             &lt;goals&gt;
+ *                 &lt;goal&gt;java&lt;/goal&gt;
+ *             &lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;com.excilys.ebi.spring.dbunit.dataset.binary.BinaryDataSetCompiler&lt;/mainClass&gt;
+ *                 &lt;classpathScope&gt;test&lt;/classpathScope&gt;
+ *                 &lt;arguments&gt;
+ *                     &lt;argument&gt;${project.basedir}/src/test/datasets&lt;/argument&gt;
+ *                     &lt;argument&gt;${project.build.testOutputDirectory}&lt;/argument&gt;
+ *                 &lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ */
+public final class BinaryDataSetCompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryDataSetCompiler.class);
+
+    public static final String EXTENSION = ".bin";
+
+    private final DataSetFormat format;
+
+    private final DataSetFormatOptions options;
+
+    private final String sourceExtension;
+
+    public BinaryDataSetCompiler(DataSetFormat format, DataSetFormatOptions options) {
+        this.format = format;
+        this.options = options;
+        switch (format) {
+        case FLAT:
+        case FLYWEIGHT_FLAT:
+        case STAX_FLAT:
+        case XML:
+            sourceExtension = ".xml";
+            break;
+        case XLS:
+            sourceExtension = ".xls";
+            break;
+        default:
+            throw new IllegalArgumentException("Can't compile datasets from format " + format);
+        }
+    }
+
+    /**
+     * Compiles a single file
+     * 
+     * @param source the dataset to compile
+     * @param target the binary file to write
+     * @throws DataSetException DBUnit failure
+     * @throws IOException I/O failure
+     */
+    public void compile(File source, File target) throws DataSetException, IOException {
+        IDataSet dataSet = format.loadUnique(options, source.toURI().toString());
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create directory " + parent);
+        }
+        BinaryDataSet.write(dataSet, target);
+    }
+
+    /**
+     * Compiles all the datasets under a directory
+     * 
+     * @param sourceDirectory the directory to scan
+     * @param targetDirectory the directory where to write the binary files
+     * @return the number of compiled files
+     * @throws DataSetException DBUnit failure
+     * @throws IOException I/O failure
+     */
+    public int compileDirectory(File sourceDirectory, File targetDirectory) throws DataSetException, IOException {
+        File[] files = sourceDirectory.listFiles();
+        if (files == null) {
+            throw new IOException(sourceDirectory + " is not a directory");
+        }
+
+        int count = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                count += compileDirectory(file, new File(targetDirectory, name));
+
+            } else if (name.endsWith(sourceExtension)) {
+                File target = new File(targetDirectory, name.substring(0, name.length() - sourceExtension.length()) + EXTENSION);
+                LOGGER.info("Compiling {} into {}", file, target);
+                compile(file, target);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws DataSetException, IOException {
+
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: BinaryDataSetCompiler sourceDirectory targetDirectory [format] [columnSensing]");
+        }
+
+        DataSetFormat format = args.length > 2 ? DataSetFormat.valueOf(args[2]) : DataSetFormat.FLAT;
+        boolean columnSensing = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        BinaryDataSetCompiler compiler = new BinaryDataSetCompiler(format, DataSetFormatOptions.newFormatOptions().withColumnSensing(columnSensing).build());
+        int count = compiler.compileDirectory(new File(args[0]), new File(args[1]));
+        LOGGER.info("Compiled {} datasets", count);
+    }
+}
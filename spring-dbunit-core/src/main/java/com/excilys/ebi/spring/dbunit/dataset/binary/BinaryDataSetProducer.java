@@ -0,0 +1,294 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.binary;
+
+import static com.excilys.ebi.spring.dbunit.dataset.binary.BinaryConstants.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Reads a dataset in the binary format, see {@link BinaryDataSet}, and pushes
+ * it into a {@link IDataSetConsumer}.
+ * <p>
+ * Files are memory-mapped. As the underlying buffer is never consumed, the
+ * same producer can be used several times.
+ */
+public class BinaryDataSetProducer implements IDataSetProducer {
+
+    private static final IDataSetConsumer EMPTY_CONSUMER = new DefaultConsumer();
+
+    private final ByteBuffer buffer;
+
+    private IDataSetConsumer consumer = EMPTY_CONSUMER;
+
+    public BinaryDataSetProducer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public BinaryDataSetProducer(File file) throws IOException {
+        this(map(file));
+    }
+
+    /**
+     * Reads the whole stream, which is not closed
+     */
+    public BinaryDataSetProducer(InputStream in) throws IOException {
+        this(ByteBuffer.wrap(readFully(in)));
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // the mapping stays valid once the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    public void setConsumer(IDataSetConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    public void produce() throws DataSetException {
+        try {
+            new Reader(buffer.duplicate()).read();
+        } catch (BufferUnderflowException e) {
+            throw new DataSetException("Truncated binary dataset", e);
+        }
+    }
+
+    /**
+     * Holds the state of one reading
+     */
+    private class Reader {
+
+        private final ByteBuffer in;
+
+        private final List<String> strings = new ArrayList<String>();
+
+        private byte[] scratch = new byte[256];
+
+        private Reader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        private void read() throws DataSetException {
+            if (in.remaining() < 5 || in.getInt() != MAGIC) {
+                throw new DataSetException("Not a binary dataset");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new DataSetException("Unsupported binary dataset version " + version);
+            }
+
+            consumer.startDataSet();
+            for (byte record = in.get(); record != END; record = in.get()) {
+                if (record != TABLE) {
+                    throw new DataSetException("Corrupted binary dataset, unexpected record " + record);
+                }
+                readTable();
+            }
+            consumer.endDataSet();
+        }
+
+        private void readTable() throws DataSetException {
+            String tableName = readString();
+            Column[] columns = new Column[readVarInt()];
+            for (int i = 0; i < columns.length; i++) {
+                String columnName = readString();
+                Column.Nullable nullable = Column.nullableValue(in.get());
+                if (in.get() == UNKNOWN_TYPE) {
+                    columns[i] = new Column(columnName, DataType.UNKNOWN, nullable);
+                } else {
+                    int sqlType = unZigZag(readVarInt());
+                    String sqlTypeName = readString();
+                    columns[i] = new Column(columnName, dataType(sqlType), sqlTypeName, nullable);
+                }
+            }
+            Column[] primaryKeys = new Column[readVarInt()];
+            for (int i = 0; i < primaryKeys.length; i++) {
+                primaryKeys[i] = columns[readVarInt()];
+            }
+
+            consumer.startTable(new DefaultTableMetaData(tableName, columns, primaryKeys));
+            for (byte record = in.get(); record != END_TABLE; record = in.get()) {
+                if (record != ROW) {
+                    throw new DataSetException("Corrupted binary dataset, unexpected record " + record + " in table " + tableName);
+                }
+                // consumers such as CachedDataSet keep the array
+                Object[] values = new Object[columns.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readValue();
+                }
+                consumer.row(values);
+            }
+            consumer.endTable();
+        }
+
+        private DataType dataType(int sqlType) {
+            try {
+                return DataType.forSqlType(sqlType);
+            } catch (DataTypeException e) {
+                return DataType.UNKNOWN;
+            }
+        }
+
+        private Object readValue() throws DataSetException {
+            byte tag = in.get();
+            switch (tag) {
+            case NULL:
+                return null;
+            case NO_VALUE:
+                return ITable.NO_VALUE;
+            case STRING_REF:
+            case STRING_NEW:
+                return readString(tag);
+            case INT:
+                return Integer.valueOf(unZigZag(readVarInt()));
+            case LONG:
+                return Long.valueOf(unZigZag(readVarLong()));
+            case FLOAT:
+                return Float.valueOf(in.getFloat());
+            case DOUBLE:
+                return Double.valueOf(in.getDouble());
+            case DECIMAL:
+                int scale = unZigZag(readVarInt());
+                return new BigDecimal(new BigInteger(readBytes()), scale);
+            case BIG_INTEGER:
+                return new BigInteger(readBytes());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTES:
+                return readBytes();
+            case DATE:
+                return new java.sql.Date(in.getLong());
+            case TIME:
+                return new Time(in.getLong());
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.getLong());
+                timestamp.setNanos(readVarInt());
+                return timestamp;
+            case UTIL_DATE:
+                return new Date(in.getLong());
+            default:
+                throw new DataSetException("Corrupted binary dataset, unexpected value tag " + tag);
+            }
+        }
+
+        private String readString() throws DataSetException {
+            return readString(in.get());
+        }
+
+        private String readString(byte tag) throws DataSetException {
+            if (tag == STRING_REF) {
+                return strings.get(readVarInt());
+
+            } else if (tag == STRING_NEW) {
+                int length = readVarInt();
+                String value;
+                if (in.hasArray()) {
+                    value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+                    in.position(in.position() + length);
+                } else {
+                    if (scratch.length < length) {
+                        scratch = new byte[Math.max(length, scratch.length * 2)];
+                    }
+                    in.get(scratch, 0, length);
+                    value = new String(scratch, 0, length, UTF_8);
+                }
+                strings.add(value);
+                return value;
+            }
+            throw new DataSetException("Corrupted binary dataset, expected a string but got tag " + tag);
+        }
+
+        private byte[] readBytes() {
+            byte[] bytes = new byte[readVarInt()];
+            in.get(bytes);
+            return bytes;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.get();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.binary;
+
+import static com.excilys.ebi.spring.dbunit.dataset.binary.BinaryConstants.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.DataSetProducerAdapter;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+
+/**
+ * Writes a dataset in the binary format, see {@link BinaryDataSet}.
+ * <p>
+ * The stream is flushed but not closed at the end of the dataset.
+ */
+public class BinaryDataSetWriter implements IDataSetConsumer {
+
+    private final DataOutputStream out;
+
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    private Column[] activeColumns;
+
+    public BinaryDataSetWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    public void write(IDataSet dataSet) throws DataSetException {
+        DataSetProducerAdapter provider = new DataSetProducerAdapter(dataSet);
+        provider.setConsumer(this);
+        provider.produce();
+    }
+
+    public void startDataSet() throws DataSetException {
+        try {
+            strings.clear();
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    public void endDataSet() throws DataSetException {
+        try {
+            out.writeByte(END);
+            out.flush();
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    public void startTable(ITableMetaData metaData) throws DataSetException {
+        try {
+            activeColumns = metaData.getColumns();
+
+            out.writeByte(TABLE);
+            writeString(metaData.getTableName());
+            writeVarInt(activeColumns.length);
+            for (Column column : activeColumns) {
+                writeString(column.getColumnName());
+                out.writeByte(nullableIndex(column.getNullable()));
+                DataType dataType = column.getDataType();
+                if (dataType == null || dataType == DataType.UNKNOWN) {
+                    out.writeByte(UNKNOWN_TYPE);
+                } else {
+                    out.writeByte(KNOWN_TYPE);
+                    writeVarInt(zigZag(dataType.getSqlType()));
+                    writeString(column.getSqlTypeName());
+                }
+            }
+
+            Column[] primaryKeys = metaData.getPrimaryKeys();
+            writeVarInt(primaryKeys.length);
+            for (Column primaryKey : primaryKeys) {
+                writeVarInt(metaData.getColumnIndex(primaryKey.getColumnName()));
+            }
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    public void endTable() throws DataSetException {
+        try {
+            out.writeByte(END_TABLE);
+            activeColumns = null;
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    public void row(Object[] values) throws DataSetException {
+        try {
+            out.writeByte(ROW);
+            for (int i = 0; i < activeColumns.length; i++) {
+                writeValue(values[i]);
+            }
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    private void writeValue(Object value) throws IOException, DataSetException {
+
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value == ITable.NO_VALUE) {
+            out.writeByte(NO_VALUE);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            writeVarInt(zigZag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(zigZag(((Long) value).longValue()));
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat(((Float) value).floatValue());
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(DECIMAL);
+            writeVarInt(zigZag(decimal.scale()));
+            writeBytes(decimal.unscaledValue().toByteArray());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof Boolean) {
+            out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes((byte[]) value);
+        } else if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            out.writeByte(TIMESTAMP);
+            out.writeLong(timestamp.getTime());
+            writeVarInt(timestamp.getNanos());
+        } else if (value instanceof Time) {
+            out.writeByte(TIME);
+            out.writeLong(((Time) value).getTime());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        } else if (value instanceof Date) {
+            out.writeByte(UTIL_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else {
+            writeString(DataType.asString(value));
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            out.writeByte(STRING_REF);
+            writeVarInt(index.intValue());
+        } else {
+            strings.put(value, Integer.valueOf(strings.size()));
+            out.writeByte(STRING_NEW);
+            writeBytes(value.getBytes(UTF_8));
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int nullableIndex(Column.Nullable nullable) {
+        if (nullable == Column.NO_NULLS) {
+            return 0;
+        } else if (nullable == Column.NULLABLE) {
+            return 1;
+        }
+        return 2;
+    }
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.columnar;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * The values of a column, stored in a single array: primitives for numbers,
+ * dictionary codes for strings, references for anything else.
+ * <p>
+ * Values are returned with the type they were given, so that numbers read
+ * from text are returned as text again. They are only stored as numbers when
+ * printing them gives back the very same text.
+ */
+abstract class ColumnVector {
+
+    private static final int BYTE_CODES = 0xFF;
+
+    private static final int CHAR_CODES = 0xFFFF;
+
+    /**
+     * The kinds of boxed values a primitive vector gives back
+     */
+    enum Kind {
+        TEXT, LONG, INTEGER, SHORT, BYTE, DOUBLE, FLOAT
+    }
+
+    abstract Object get(int row);
+
+    /**
+     * @param dataType the declared type of the column, or
+     *            {@link DataType#UNKNOWN}
+     * @param values the values of the column, row by row
+     * @return the most compact vector holding the values
+     */
+    static ColumnVector encode(DataType dataType, Object[] values) {
+
+        Kind kind = null;
+        boolean allNull = true;
+        for (Object value : values) {
+            if (value != null) {
+                Kind valueKind = kindOf(value);
+                if (valueKind == null || (kind != null && kind != valueKind)) {
+                    return new ObjectVector(values);
+                }
+                kind = valueKind;
+                allNull = false;
+            }
+        }
+
+        if (allNull) {
+            return new ObjectVector(values);
+
+        } else if (kind != Kind.TEXT) {
+            return kind == Kind.DOUBLE || kind == Kind.FLOAT ? DoubleVector.encode(kind, values) : LongVector.encode(kind, values);
+        }
+
+        // declared text is never parsed, "007" would still print as 7
+        if (dataType == DataType.UNKNOWN || dataType.isNumber()) {
+            ColumnVector vector = LongVector.encodeText(values);
+            if (vector == null) {
+                vector = DoubleVector.encodeText(values);
+            }
+            if (vector != null) {
+                return vector;
+            }
+        }
+        return DictionaryVector.encode(values);
+    }
+
+    private static Kind kindOf(Object value) {
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            return Kind.TEXT;
+        } else if (type == Long.class) {
+            return Kind.LONG;
+        } else if (type == Integer.class) {
+            return Kind.INTEGER;
+        } else if (type == Short.class) {
+            return Kind.SHORT;
+        } else if (type == Byte.class) {
+            return Kind.BYTE;
+        } else if (type == Double.class) {
+            return Kind.DOUBLE;
+        } else if (type == Float.class) {
+            return Kind.FLOAT;
+        }
+        return null;
+    }
+
+    private static BitSet nulls(Object[] values) {
+        BitSet nulls = null;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                if (nulls == null) {
+                    nulls = new BitSet(values.length);
+                }
+                nulls.set(i);
+            }
+        }
+        return nulls;
+    }
+
+    static final class LongVector extends ColumnVector {
+
+        private final Kind kind;
+        private final long[] values;
+        private final BitSet nulls;
+
+        private LongVector(Kind kind, long[] values, BitSet nulls) {
+            this.kind = kind;
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        private static LongVector encode(Kind kind, Object[] values) {
+            long[] longs = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    longs[i] = ((Number) values[i]).longValue();
+                }
+            }
+            return new LongVector(kind, longs, nulls(values));
+        }
+
+        /**
+         * @return null if some text doesn't print back the same
+         */
+        private static LongVector encodeText(Object[] values) {
+            long[] longs = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                String text = (String) values[i];
+                if (text != null) {
+                    try {
+                        longs[i] = Long.parseLong(text);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    if (!Long.toString(longs[i]).equals(text)) {
+                        return null;
+                    }
+                }
+            }
+            return new LongVector(Kind.TEXT, longs, nulls(values));
+        }
+
+        @Override
+        Object get(int row) {
+            if (nulls != null && nulls.get(row)) {
+                return null;
+            }
+            long value = values[row];
+            switch (kind) {
+            case TEXT:
+                return Long.toString(value);
+            case INTEGER:
+                return Integer.valueOf((int) value);
+            case SHORT:
+                return Short.valueOf((short) value);
+            case BYTE:
+                return Byte.valueOf((byte) value);
+            default:
+                return Long.valueOf(value);
+            }
+        }
+    }
+
+    static final class DoubleVector extends ColumnVector {
+
+        private final Kind kind;
+        private final double[] values;
+        private final BitSet nulls;
+
+        private DoubleVector(Kind kind, double[] values, BitSet nulls) {
+            this.kind = kind;
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        private static DoubleVector encode(Kind kind, Object[] values) {
+            double[] doubles = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    doubles[i] = ((Number) values[i]).doubleValue();
+                }
+            }
+            return new DoubleVector(kind, doubles, nulls(values));
+        }
+
+        /**
+         * @return null if some text doesn't print back the same
+         */
+        private static DoubleVector encodeText(Object[] values) {
+            double[] doubles = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                String text = (String) values[i];
+                if (text != null) {
+                    try {
+                        doubles[i] = Double.parseDouble(text);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    if (!Double.toString(doubles[i]).equals(text)) {
+                        return null;
+                    }
+                }
+            }
+            return new DoubleVector(Kind.TEXT, doubles, nulls(values));
+        }
+
+        @Override
+        Object get(int row) {
+            if (nulls != null && nulls.get(row)) {
+                return null;
+            }
+            double value = values[row];
+            switch (kind) {
+            case TEXT:
+                return Double.toString(value);
+            case FLOAT:
+                return Float.valueOf((float) value);
+            default:
+                return Double.valueOf(value);
+            }
+        }
+    }
+
+    /**
+     * Distinct strings are stored once, rows only keep a one or two bytes code,
+     * 0 standing for null
+     */
+    static final class DictionaryVector extends ColumnVector {
+
+        private final String[] dictionary;
+        private final byte[] byteCodes;
+        private final char[] charCodes;
+
+        private DictionaryVector(String[] dictionary, byte[] byteCodes, char[] charCodes) {
+            this.dictionary = dictionary;
+            this.byteCodes = byteCodes;
+            this.charCodes = charCodes;
+        }
+
+        private static ColumnVector encode(Object[] values) {
+
+            Map<String, Integer> codes = new HashMap<String, Integer>();
+            int[] rowCodes = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                String value = (String) values[i];
+                if (value != null) {
+                    Integer code = codes.get(value);
+                    if (code == null) {
+                        if (codes.size() == CHAR_CODES) {
+                            // mostly distinct strings, codes would only add up
+                            return new ObjectVector(values);
+                        }
+                        code = codes.size() + 1;
+                        codes.put(value, code);
+                    }
+                    rowCodes[i] = code;
+                }
+            }
+
+            String[] dictionary = new String[codes.size() + 1];
+            for (Map.Entry<String, Integer> entry : codes.entrySet()) {
+                dictionary[entry.getValue()] = entry.getKey();
+            }
+
+            if (codes.size() <= BYTE_CODES) {
+                byte[] byteCodes = new byte[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    byteCodes[i] = (byte) rowCodes[i];
+                }
+                return new DictionaryVector(dictionary, byteCodes, null);
+            }
+
+            char[] charCodes = new char[values.length];
+            for (int i = 0; i < values.length; i++) {
+                charCodes[i] = (char) rowCodes[i];
+            }
+            return new DictionaryVector(dictionary, null, charCodes);
+        }
+
+        @Override
+        Object get(int row) {
+            return dictionary[byteCodes != null ? byteCodes[row] & BYTE_CODES : charCodes[row]];
+        }
+    }
+
+    static final class ObjectVector extends ColumnVector {
+
+        private final Object[] values;
+
+        private ObjectVector(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+    }
+}
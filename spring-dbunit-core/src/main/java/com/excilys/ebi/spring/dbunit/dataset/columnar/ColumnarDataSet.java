@@ -0,0 +1,154 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.DefaultTableIterator;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.OrderedTableNameMap;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * In-memory dataset made of {@link ColumnarTable}s, meant to replace
+ * {@link org.dbunit.dataset.CachedDataSet} for datasets that stay cached for
+ * the whole run. Rows of a table are only buffered until the end of that
+ * table.
+ */
+public class ColumnarDataSet extends AbstractDataSet implements IDataSetConsumer {
+
+    private OrderedTableNameMap tables;
+
+    private ITableMetaData activeMetaData;
+
+    private List<Object[]> activeRows;
+
+    public ColumnarDataSet(IDataSetProducer producer) throws DataSetException {
+        this(producer, false);
+    }
+
+    public ColumnarDataSet(IDataSetProducer producer, boolean caseSensitiveTableNames) throws DataSetException {
+        super(caseSensitiveTableNames);
+        producer.setConsumer(this);
+        producer.produce();
+    }
+
+    @Override
+    protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+        Collection<?> values = tables.orderedValues();
+        ITable[] tableArray = values.toArray(new ITable[values.size()]);
+        return new DefaultTableIterator(tableArray, reversed);
+    }
+
+    @Override
+    public void startDataSet() throws DataSetException {
+        tables = createTableNameMap();
+    }
+
+    @Override
+    public void endDataSet() throws DataSetException {
+    }
+
+    @Override
+    public void startTable(ITableMetaData metaData) throws DataSetException {
+        activeMetaData = metaData;
+        activeRows = new ArrayList<Object[]>();
+    }
+
+    @Override
+    public void row(Object[] values) throws DataSetException {
+        activeRows.add(values);
+    }
+
+    /**
+     * A table appearing once again gets the new rows appended, as with
+     * {@link org.dbunit.dataset.CachedDataSet}. Columns that only one of the
+     * blocks has are added to the table, and null in the rows of the other
+     * block.
+     */
+    @Override
+    public void endTable() throws DataSetException {
+
+        String tableName = activeMetaData.getTableName();
+        if (tables.containsTable(tableName)) {
+            ITable existingTable = (ITable) tables.get(tableName);
+            ITableMetaData existingMetaData = existingTable.getTableMetaData();
+            ITableMetaData metaData = mergeMetaData(existingMetaData, activeMetaData);
+            Column[] columns = metaData.getColumns();
+
+            List<Object[]> rows = new ArrayList<Object[]>(existingTable.getRowCount() + activeRows.size());
+            for (int row = 0; row < existingTable.getRowCount(); row++) {
+                Object[] values = new Object[columns.length];
+                for (int i = 0; i < existingMetaData.getColumns().length; i++) {
+                    // existing columns come first
+                    values[i] = existingTable.getValue(row, columns[i].getColumnName());
+                }
+                rows.add(values);
+            }
+
+            int[] activeIndexes = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                activeIndexes[i] = Columns.getColumn(columns[i].getColumnName(), activeMetaData.getColumns()) != null ? activeMetaData.getColumnIndex(columns[i]
+                        .getColumnName()) : -1;
+            }
+            for (Object[] activeRow : activeRows) {
+                Object[] values = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    values[i] = activeIndexes[i] >= 0 ? activeRow[activeIndexes[i]] : null;
+                }
+                rows.add(values);
+            }
+            tables.update(tableName, new ColumnarTable(metaData, rows));
+
+        } else {
+            tables.add(tableName, new ColumnarTable(activeMetaData, activeRows));
+        }
+
+        activeMetaData = null;
+        activeRows = null;
+    }
+
+    /**
+     * @return the existing metadata if it has all the columns of the new
+     *         block, or metadata with the missing columns appended
+     */
+    private ITableMetaData mergeMetaData(ITableMetaData existingMetaData, ITableMetaData metaData) throws DataSetException {
+
+        Column[] existingColumns = existingMetaData.getColumns();
+        List<Column> columns = new ArrayList<Column>(Arrays.asList(existingColumns));
+        for (Column column : metaData.getColumns()) {
+            if (Columns.getColumn(column.getColumnName(), existingColumns) == null) {
+                columns.add(column);
+            }
+        }
+
+        if (columns.size() == existingColumns.length) {
+            return existingMetaData;
+        }
+        return new DefaultTableMetaData(existingMetaData.getTableName(), columns.toArray(new Column[columns.size()]), existingMetaData.getPrimaryKeys());
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.columnar;
+
+import java.util.List;
+
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * In-memory table storing its values column by column, see
+ * {@link ColumnVector}. Unlike {@link org.dbunit.dataset.DefaultTable}, there
+ * is no array per row and no boxed number.
+ */
+public class ColumnarTable extends AbstractTable {
+
+    private final ITableMetaData metaData;
+
+    private final int rowCount;
+
+    private final ColumnVector[] columns;
+
+    /**
+     * @param metaData the metadata of the table
+     * @param rows the rows, that may be shorter than the columns when the
+     *            last values are null
+     */
+    public ColumnarTable(ITableMetaData metaData, List<Object[]> rows) throws DataSetException {
+
+        Column[] tableColumns = metaData.getColumns();
+        this.metaData = metaData;
+        this.rowCount = rows.size();
+        this.columns = new ColumnVector[tableColumns.length];
+
+        Object[] values = new Object[rowCount];
+        for (int i = 0; i < tableColumns.length; i++) {
+            for (int row = 0; row < rowCount; row++) {
+                Object[] rowValues = rows.get(row);
+                values[row] = i < rowValues.length ? rowValues[i] : null;
+            }
+            columns[i] = ColumnVector.encode(tableColumns[i].getDataType(), values);
+            // object vectors keep the array
+            if (columns[i] instanceof ColumnVector.ObjectVector) {
+                values = new Object[rowCount];
+            }
+        }
+    }
+
+    @Override
+    public ITableMetaData getTableMetaData() {
+        return metaData;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public Object getValue(int row, String column) throws DataSetException {
+        assertValidRowIndex(row);
+        return columns[getColumnIndex(column)].get(row);
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.stream;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Runs a {@link IDataSetProducer producer} on a background thread, and hands
+ * its events to the consumer on the calling thread through a bounded queue.
+ * <p>
+ * Parsing thus overlaps with consuming (typically JDBC work that must stay on
+ * the calling thread, as the connection may be bound to it), while memory
+ * stays bounded by the queue capacity.
+ */
+public class PipedDataSetProducer implements IDataSetProducer {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final IDataSetConsumer EMPTY_CONSUMER = new DefaultConsumer();
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    // events other than rows (Object[]) and table starts (ITableMetaData)
+    private static final Object START_DATASET = new Object();
+    private static final Object END_TABLE = new Object();
+    private static final Object END_DATASET = new Object();
+    private static final Object FINISHED = new Object();
+
+    private static final class Failure {
+
+        private final Throwable cause;
+
+        private Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    private final IDataSetProducer delegate;
+
+    private final int capacity;
+
+    private IDataSetConsumer consumer = EMPTY_CONSUMER;
+
+    public PipedDataSetProducer(IDataSetProducer delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    public PipedDataSetProducer(IDataSetProducer delegate, int capacity) {
+        this.delegate = delegate;
+        this.capacity = capacity;
+    }
+
+    public void setConsumer(IDataSetConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    public void produce() throws DataSetException {
+
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(capacity);
+        final QueueingConsumer queueingConsumer = new QueueingConsumer(queue);
+        delegate.setConsumer(queueingConsumer);
+
+        Thread producerThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    delegate.produce();
+                    queueingConsumer.put(FINISHED);
+                } catch (Throwable e) {
+                    try {
+                        queueingConsumer.put(new Failure(e));
+                    } catch (DataSetException cancelled) {
+                        // consumer side already gave up
+                    }
+                }
+            }
+        }, "spring-dbunit-producer-" + THREAD_COUNT.incrementAndGet());
+        producerThread.setDaemon(true);
+        producerThread.start();
+
+        boolean finished = false;
+        try {
+            while (!finished) {
+                finished = dispatch(queue.take());
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataSetException("Interrupted while consuming dataset", e);
+
+        } finally {
+            if (!finished) {
+                // unblock and stop the producer
+                queueingConsumer.cancelled = true;
+                queue.clear();
+            }
+        }
+    }
+
+    private boolean dispatch(Object event) throws DataSetException {
+        if (event instanceof Object[]) {
+            consumer.row((Object[]) event);
+        } else if (event instanceof ITableMetaData) {
+            consumer.startTable((ITableMetaData) event);
+        } else if (event == END_TABLE) {
+            consumer.endTable();
+        } else if (event == START_DATASET) {
+            consumer.startDataSet();
+        } else if (event == END_DATASET) {
+            consumer.endDataSet();
+        } else if (event == FINISHED) {
+            return true;
+        } else if (event instanceof Failure) {
+            Throwable cause = ((Failure) event).cause;
+            if (cause instanceof DataSetException) {
+                throw (DataSetException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DataSetException(cause);
+        }
+        return false;
+    }
+
+    private static class QueueingConsumer implements IDataSetConsumer {
+
+        private final BlockingQueue<Object> queue;
+
+        private volatile boolean cancelled;
+
+        private QueueingConsumer(BlockingQueue<Object> queue) {
+            this.queue = queue;
+        }
+
+        private void put(Object event) throws DataSetException {
+            try {
+                do {
+                    if (cancelled) {
+                        throw new DataSetException("Dataset consumer has been cancelled");
+                    }
+                } while (!queue.offer(event, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataSetException("Interrupted while producing dataset", e);
+            }
+        }
+
+        public void startDataSet() throws DataSetException {
+            put(START_DATASET);
+        }
+
+        public void endDataSet() throws DataSetException {
+            put(END_DATASET);
+        }
+
+        public void startTable(ITableMetaData metaData) throws DataSetException {
+            put(metaData);
+        }
+
+        public void endTable() throws DataSetException {
+            put(END_TABLE);
+        }
+
+        public void row(Object[] values) throws DataSetException {
+            put(values);
+        }
+    }
+}
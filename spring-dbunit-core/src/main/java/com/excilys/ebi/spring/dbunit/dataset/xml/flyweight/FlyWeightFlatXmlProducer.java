@@ -21,7 +21,11 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
@@ -31,7 +35,6 @@ import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.DefaultTableMetaData;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.ITableMetaData;
-import org.dbunit.dataset.NoSuchColumnException;
 import org.dbunit.dataset.OrderedTableNameMap;
 import org.dbunit.dataset.datatype.DataType;
 import org.dbunit.dataset.stream.BufferedConsumer;
@@ -50,6 +53,7 @@ import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.excilys.ebi.spring.dbunit.dataset.StringPool;
 import com.excilys.ebi.spring.dbunit.dataset.xml.LinkedHashMapFlatDtdProducer;
 
 /**
@@ -115,9 +119,28 @@ public class FlyWeightFlatXmlProducer extends DefaultHandler implements IDataSet
      */
     private OrderedTableNameMap _orderedTableNameMap;
 
-    private HashMap<String, String> attributeNameCache = new HashMap<String, String>();
+    /**
+     * Shared by all the producers, so that identical names and values of
+     * different files are only kept once
+     */
+    private final StringPool stringPool = StringPool.getInstance();
+
+    /**
+     * The metadata {@link #_columnIndexes} were resolved against
+     */
+    private ITableMetaData _indexedMetaData;
 
-    private HashMap<String, String> attributeValueCache = new HashMap<String, String>();
+    private Map<String, Integer> _columnIndexes;
+
+    /**
+     * The attribute names of the last row, most rows of a table having the same
+     */
+    private String[] _shapeNames = new String[0];
+
+    /**
+     * The column of each attribute of the last row, -1 for ignored ones
+     */
+    private int[] _shapeColumns = new int[0];
 
     public FlyWeightFlatXmlProducer(InputSource xmlSource) {
         this(xmlSource, true);
@@ -180,23 +203,11 @@ public class FlyWeightFlatXmlProducer extends DefaultHandler implements IDataSet
     }
 
     private String getAttributeNameFromCache(String qName) {
-        if (attributeNameCache.containsKey(qName)) {
-            return attributeNameCache.get(qName);
-        } else {
-            logger.debug("miss from name cache");
-            attributeNameCache.put(qName, qName);
-            return qName;
-        }
+        return stringPool.intern(qName);
     }
 
     private String getAttributeValueFromCache(String value) {
-        if (attributeValueCache.containsKey(value)) {
-            return attributeValueCache.get(value);
-        } else {
-            logger.debug("miss from value cache");
-            attributeValueCache.put(value, value);
-            return value;
-        }
+        return stringPool.intern(value);
     }
 
     private ITableMetaData createTableMetaData(String tableName, Attributes attributes) throws DataSetException {
@@ -278,20 +289,27 @@ public class FlyWeightFlatXmlProducer extends DefaultHandler implements IDataSet
      * @throws DataSetException
      */
     protected void handleMissingColumns(Attributes attributes) throws DataSetException {
-        List<Column> columnsToMerge = new ArrayList<Column>();
+        List<Column> columnsToMerge = null;
 
         ITableMetaData activeMetaData = getActiveMetaData();
+        // column names are case insensitive, as with ITableMetaData#getColumnIndex
+        Set<String> columnNames = new HashSet<String>();
+        for (Column column : activeMetaData.getColumns()) {
+            columnNames.add(column.getColumnName().toUpperCase(Locale.ENGLISH));
+        }
         // Search all columns that do not yet exist and collect them
         int attributeLength = attributes.getLength();
         for (int i = 0; i < attributeLength; i++) {
-            try {
-                activeMetaData.getColumnIndex(getAttributeNameFromCache(attributes.getQName(i)));
-            } catch (NoSuchColumnException e) {
-                columnsToMerge.add(new Column(getAttributeNameFromCache(attributes.getQName(i)), DataType.UNKNOWN));
+            String attributeName = getAttributeNameFromCache(attributes.getQName(i));
+            if (!columnNames.contains(attributeName.toUpperCase(Locale.ENGLISH))) {
+                if (columnsToMerge == null) {
+                    columnsToMerge = new ArrayList<Column>();
+                }
+                columnsToMerge.add(new Column(attributeName, DataType.UNKNOWN));
             }
         }
 
-        if (!columnsToMerge.isEmpty()) {
+        if (columnsToMerge != null) {
             if (_columnSensing) {
                 logger.debug("Column sensing enabled. Will create a new metaData with potentially new columns if needed");
                 activeMetaData = mergeTableMetaData(columnsToMerge, activeMetaData);
@@ -316,6 +334,53 @@ public class FlyWeightFlatXmlProducer extends DefaultHandler implements IDataSet
         }
     }
 
+    /**
+     * @return true if the row has the same attributes, in the same order, as
+     *         the previous one of the same table
+     */
+    private boolean isSameShape(ITableMetaData activeMetaData, Attributes attributes) {
+        if (activeMetaData != _indexedMetaData || attributes.getLength() != _shapeNames.length) {
+            return false;
+        }
+        for (int i = 0; i < _shapeNames.length; i++) {
+            if (!_shapeNames[i].equals(attributes.getQName(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the column of each attribute of the row once, so that rows of
+     * the same shape can be read by attribute index
+     * 
+     * @return false if some attributes have no column
+     */
+    private boolean resolveShape(ITableMetaData activeMetaData, Attributes attributes) throws DataSetException {
+        if (activeMetaData != _indexedMetaData) {
+            Column[] columns = activeMetaData.getColumns();
+            _columnIndexes = new HashMap<String, Integer>(columns.length * 2);
+            for (int i = 0; i < columns.length; i++) {
+                _columnIndexes.put(columns[i].getColumnName(), i);
+            }
+            _indexedMetaData = activeMetaData;
+        }
+
+        int attributeLength = attributes.getLength();
+        if (attributeLength != _shapeNames.length) {
+            _shapeNames = new String[attributeLength];
+            _shapeColumns = new int[attributeLength];
+        }
+        boolean complete = true;
+        for (int i = 0; i < attributeLength; i++) {
+            _shapeNames[i] = getAttributeNameFromCache(attributes.getQName(i));
+            Integer columnIndex = _columnIndexes.get(_shapeNames[i]);
+            _shapeColumns[i] = columnIndex != null ? columnIndex : -1;
+            complete &= columnIndex != null;
+        }
+        return complete;
+    }
+
     public void setColumnSensing(boolean columnSensing) {
         _columnSensing = columnSensing;
     }
@@ -356,6 +421,9 @@ public class FlyWeightFlatXmlProducer extends DefaultHandler implements IDataSet
             xmlReader.setErrorHandler(this);
             xmlReader.setEntityResolver(_resolver);
             xmlReader.parse(_inputSource);
+            if (logger.isDebugEnabled()) {
+                logger.debug("string pool: {} hits, {} misses, {} strings", new Object[] { stringPool.getHitCount(), stringPool.getMissCount(), stringPool.size() });
+            }
         } catch (ParserConfigurationException e) {
             throw new DataSetException(e);
         } catch (SAXException e) {
@@ -439,21 +507,26 @@ public class FlyWeightFlatXmlProducer extends DefaultHandler implements IDataSet
 
             // Row notification
             if (attributes.getLength() > 0) {
-                // If we do not have a _metaDataSet or DTD
-                if (_metaDataSet == null && (_dtdHandler == null || !_dtdHandler.isDtdPresent())) {
-                    handleMissingColumns(attributes);
-                    // Since a new MetaData object was created assign it to the
-                    // local variable
-                    activeMetaData = getActiveMetaData();
+                if (!isSameShape(activeMetaData, attributes)) {
+                    boolean complete = resolveShape(activeMetaData, attributes);
+                    // If we do not have a _metaDataSet or DTD
+                    if (!complete && _metaDataSet == null && (_dtdHandler == null || !_dtdHandler.isDtdPresent())) {
+                        handleMissingColumns(attributes);
+                        // Since a new MetaData object was created assign it to the
+                        // local variable
+                        activeMetaData = getActiveMetaData();
+                        resolveShape(activeMetaData, attributes);
+                    }
                 }
 
                 _lineNumber++;
                 _lineNumberGlobal++;
-                Column[] columns = activeMetaData.getColumns();
-                Object[] rowValues = new Object[columns.length];
-                for (int i = 0; i < columns.length; i++) {
-                    Column column = columns[i];
-                    rowValues[i] = getAttributeValueFromCache(attributes.getValue(column.getColumnName()));
+                // consumers keep the rows, so each one needs its own array
+                Object[] rowValues = new Object[activeMetaData.getColumns().length];
+                for (int i = 0; i < _shapeColumns.length; i++) {
+                    if (_shapeColumns[i] >= 0) {
+                        rowValues[_shapeColumns[i]] = getAttributeValueFromCache(attributes.getValue(i));
+                    }
                 }
                 _consumer.row(rowValues);
             }
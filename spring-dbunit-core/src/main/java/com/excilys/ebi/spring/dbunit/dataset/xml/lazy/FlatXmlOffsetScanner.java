@@ -0,0 +1,377 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.xml.lazy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.dbunit.dataset.DataSetException;
+
+/**
+ * Reads a flat XML document byte by byte, without parsing attributes, to
+ * find where the elements of each table are. Consecutive elements of the
+ * same table make a single segment.
+ * <p>
+ * Only encodings where markup is plain ASCII are supported, which excludes
+ * UTF-16 and UTF-32.
+ */
+final class FlatXmlOffsetScanner {
+
+    private static final String MARKUP = "<>/=\"'?!-[]";
+
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private final InputStream in;
+
+    private final byte[] buffer = new byte[8192];
+
+    private int position;
+
+    private int limit;
+
+    /**
+     * Offset of the start of the buffer in the document
+     */
+    private long bufferOffset;
+
+    /**
+     * Collects the bytes read while not null
+     */
+    private ByteArrayOutputStream captured;
+
+    /**
+     * The last name read, and the character following it
+     */
+    private byte[] name = new byte[64];
+
+    private int nameLength;
+
+    private int nameTerminator;
+
+    private Charset charset;
+
+    private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+    private String rootName;
+
+    private final List<Segment> segments = new ArrayList<Segment>();
+
+    /**
+     * @param in the document, left open
+     */
+    FlatXmlOffsetScanner(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the XML declaration if any, followed by the root start tag
+     */
+    byte[] getHeader() {
+        return header.toByteArray();
+    }
+
+    String getRootName() {
+        return rootName;
+    }
+
+    /**
+     * @return the segments, in document order
+     */
+    List<Segment> getSegments() {
+        return segments;
+    }
+
+    void scan() throws IOException, DataSetException {
+
+        charset = detectCharset();
+
+        int depth = 0;
+        Segment current = null;
+        int c;
+        while ((c = read()) != -1) {
+            if (c != '<') {
+                continue;
+            }
+            long start = offset() - 1;
+            boolean beforeRoot = rootName == null;
+            if (beforeRoot) {
+                captured = new ByteArrayOutputStream();
+                captured.write('<');
+            }
+
+            int next = read();
+            if (next == '?') {
+                skipTo("?>");
+                if (beforeRoot && isDeclaration(captured.toByteArray())) {
+                    header.write(captured.toByteArray());
+                    charset = declaredCharset(new String(captured.toByteArray(), "ISO-8859-1"));
+                }
+
+            } else if (next == '!') {
+                int markup = read();
+                if (markup == '-') {
+                    skipTo("-->");
+                } else if (markup == '[') {
+                    skipTo("]]>");
+                } else {
+                    skipDeclaration();
+                }
+
+            } else if (next == '/') {
+                skipTag(read());
+                depth--;
+                if (depth == 0) {
+                    return;
+                } else if (depth == 1) {
+                    current.end = offset();
+                }
+
+            } else {
+                readName(next);
+                boolean empty = skipTag(nameTerminator);
+                if (beforeRoot) {
+                    rootName = new String(name, 0, nameLength, charset);
+                    header.write(captured.toByteArray());
+                    if (empty) {
+                        // no tables
+                        return;
+                    }
+                } else if (depth == 1) {
+                    Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                    if (last != null && last.hasName(name, nameLength)) {
+                        current = last;
+                    } else {
+                        byte[] nameBytes = new byte[nameLength];
+                        System.arraycopy(name, 0, nameBytes, 0, nameLength);
+                        current = new Segment(new String(nameBytes, charset), nameBytes, start);
+                        segments.add(current);
+                    }
+                    current.end = offset();
+                }
+                if (!empty) {
+                    depth++;
+                }
+            }
+            captured = null;
+        }
+        throw new DataSetException("Unexpected end of flat XML document");
+    }
+
+    private long offset() {
+        return bufferOffset + position;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int c = buffer[position++] & 0xFF;
+        if (captured != null) {
+            captured.write(c);
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+        int count;
+        while ((count = in.read(buffer, limit, buffer.length - limit)) != -1) {
+            limit += count;
+            if (limit >= 4) {
+                break;
+            }
+        }
+        return limit > 0;
+    }
+
+    private Charset detectCharset() throws IOException, DataSetException {
+        fill();
+        int[] bom = new int[3];
+        for (int i = 0; i < bom.length; i++) {
+            bom[i] = i < limit ? buffer[i] & 0xFF : -1;
+        }
+
+        if (bom[0] == 0xEF && bom[1] == 0xBB && bom[2] == 0xBF) {
+            position = 3;
+        } else if (bom[0] == 0xFE || bom[0] == 0xFF || bom[0] == 0 || bom[1] == 0) {
+            throw new DataSetException("Flat XML documents encoded in UTF-16 or UTF-32 can't be indexed");
+        }
+        return Charset.forName("UTF-8");
+    }
+
+    private static boolean isDeclaration(byte[] instruction) {
+        return instruction.length > 5 && instruction[2] == 'x' && instruction[3] == 'm' && instruction[4] == 'l'
+                && (instruction[5] == ' ' || instruction[5] == '\t' || instruction[5] == '\r' || instruction[5] == '\n');
+    }
+
+    private static Charset declaredCharset(String declaration) throws DataSetException {
+        Matcher matcher = ENCODING.matcher(declaration);
+        if (!matcher.find()) {
+            return Charset.forName("UTF-8");
+        }
+
+        Charset declared;
+        try {
+            declared = Charset.forName(matcher.group(1));
+        } catch (IllegalCharsetNameException e) {
+            throw new DataSetException("Unknown encoding " + matcher.group(1), e);
+        } catch (UnsupportedCharsetException e) {
+            throw new DataSetException("Unsupported encoding " + matcher.group(1), e);
+        }
+
+        try {
+            if (!Arrays.equals(MARKUP.getBytes("US-ASCII"), MARKUP.getBytes(declared.name()))) {
+                throw new DataSetException("Flat XML documents encoded in " + declared + " can't be indexed");
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new DataSetException(e);
+        }
+        return declared;
+    }
+
+    private void readName(int first) throws IOException {
+        nameLength = 0;
+        int c = first;
+        while (c != -1 && c != '>' && c != '/' && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+            if (nameLength == name.length) {
+                byte[] grown = new byte[name.length * 2];
+                System.arraycopy(name, 0, grown, 0, nameLength);
+                name = grown;
+            }
+            name[nameLength++] = (byte) c;
+            c = read();
+        }
+        nameTerminator = c;
+    }
+
+    /**
+     * Skips the rest of a tag, quoted attribute values included
+     * 
+     * @param c the first character to skip
+     * @return true if the tag is an empty element tag
+     */
+    private boolean skipTag(int c) throws IOException, DataSetException {
+        int quote = 0;
+        int previous = 0;
+        while (c != -1) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return previous == '/';
+            }
+            previous = c;
+            c = read();
+        }
+        throw new DataSetException("Unexpected end of flat XML document");
+    }
+
+    /**
+     * Skips a DOCTYPE, internal subset included
+     */
+    private void skipDeclaration() throws IOException, DataSetException {
+        int quote = 0;
+        int brackets = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '>' && brackets == 0) {
+                return;
+            }
+        }
+        throw new DataSetException("Unexpected end of flat XML document");
+    }
+
+    private void skipTo(String terminator) throws IOException, DataSetException {
+        int length = terminator.length();
+        int[] window = new int[length];
+        int count = 0;
+        int c;
+        while ((c = read()) != -1) {
+            System.arraycopy(window, 1, window, 0, length - 1);
+            window[length - 1] = c;
+            if (++count >= length && matches(window, terminator)) {
+                return;
+            }
+        }
+        throw new DataSetException("Unexpected end of flat XML document");
+    }
+
+    private static boolean matches(int[] window, String terminator) {
+        for (int i = 0; i < window.length; i++) {
+            if (window[i] != terminator.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bytes of the document holding consecutive elements of a table
+     */
+    static final class Segment {
+
+        final String tableName;
+
+        private final byte[] nameBytes;
+
+        final long start;
+
+        long end;
+
+        Segment(String tableName, byte[] nameBytes, long start) {
+            this.tableName = tableName;
+            this.nameBytes = nameBytes;
+            this.start = start;
+        }
+
+        boolean hasName(byte[] name, int length) {
+            if (length != nameBytes.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name[i] != nameBytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.xml.lazy;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchTableException;
+import org.dbunit.dataset.OrderedTableNameMap;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions;
+import com.excilys.ebi.spring.dbunit.dataset.LazyTableIterator;
+import com.excilys.ebi.spring.dbunit.dataset.columnar.ColumnarDataSet;
+import com.excilys.ebi.spring.dbunit.dataset.xml.lazy.FlatXmlOffsetScanner.Segment;
+
+/**
+ * Flat XML dataset only parsing a table when it's first asked for. The
+ * document is scanned once to record where the elements of each table are,
+ * then each table is parsed from its own bytes only, with the producer of the
+ * given format.
+ * <p>
+ * Worth it for shared files with many tables, when each test only touches a
+ * few of them.
+ */
+public class LazyFlatXmlDataSet extends AbstractDataSet {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LazyFlatXmlDataSet.class);
+
+    private final Resource resource;
+
+    private final DataSetFormat format;
+
+    private final DataSetFormatOptions options;
+
+    private final byte[] header;
+
+    private final byte[] footer;
+
+    /**
+     * The segments of each table, in document order
+     */
+    private final OrderedTableNameMap segments;
+
+    private final OrderedTableNameMap tables;
+
+    /**
+     * @param resource the flat XML document
+     * @param format the format parsing each table
+     * @param options the options of the format, which must not be lazy
+     * @throws DataSetException if the document can't be indexed
+     * @throws IOException I/O failure
+     */
+    public LazyFlatXmlDataSet(Resource resource, DataSetFormat format, DataSetFormatOptions options) throws DataSetException, IOException {
+        super(options.isCaseSensitiveTableNames());
+        this.resource = resource;
+        this.format = format;
+        this.options = options;
+
+        FlatXmlOffsetScanner scanner;
+        InputStream in = resource.getInputStream();
+        try {
+            scanner = new FlatXmlOffsetScanner(in);
+            scanner.scan();
+        } finally {
+            in.close();
+        }
+
+        header = scanner.getHeader();
+        footer = ("</" + scanner.getRootName() + ">").getBytes("UTF-8");
+        segments = createTableNameMap();
+        tables = createTableNameMap();
+        for (Segment segment : scanner.getSegments()) {
+            if (!segments.containsTable(segment.tableName)) {
+                segments.add(segment.tableName, new ArrayList<Segment>());
+            }
+            getSegments(segment.tableName).add(segment);
+        }
+
+        LOGGER.debug("Indexed {} tables of {}", segments.getTableNames().length, resource);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Segment> getSegments(String tableName) {
+        return (List<Segment>) segments.get(tableName);
+    }
+
+    @Override
+    public String[] getTableNames() throws DataSetException {
+        return segments.getTableNames();
+    }
+
+    @Override
+    public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+        return getTable(tableName).getTableMetaData();
+    }
+
+    @Override
+    public synchronized ITable getTable(String tableName) throws DataSetException {
+
+        if (tables.containsTable(tableName)) {
+            return (ITable) tables.get(tableName);
+
+        } else if (!segments.containsTable(tableName)) {
+            throw new NoSuchTableException(tableName);
+        }
+
+        try {
+            ITable table = load(tableName);
+            tables.add(tableName, table);
+            return table;
+
+        } catch (IOException e) {
+            throw new DataSetException("Could not read table " + tableName + " from " + resource, e);
+        }
+    }
+
+    private ITable load(String tableName) throws DataSetException, IOException {
+
+        long start = System.nanoTime();
+
+        ByteArrayOutputStream document = new ByteArrayOutputStream();
+        document.write(header);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(resource.getInputStream()));
+        try {
+            long position = 0;
+            for (Segment segment : getSegments(tableName)) {
+                skipFully(in, segment.start - position);
+                byte[] bytes = new byte[(int) (segment.end - segment.start)];
+                in.readFully(bytes);
+                document.write(bytes);
+                position = segment.end;
+            }
+        } finally {
+            in.close();
+        }
+        document.write(footer);
+
+        IDataSetProducer producer = format.producer(new ByteArrayResource(document.toByteArray()), options);
+        IDataSet dataSet = options.isColumnar() ? new ColumnarDataSet(producer, isCaseSensitiveTableNames()) : new CachedDataSet(producer,
+                isCaseSensitiveTableNames());
+        ITable table = dataSet.getTable(tableName);
+
+        LOGGER.debug("Loaded table {} of {} in {} ms", new Object[] { tableName, resource, (System.nanoTime() - start) / 1000000 });
+        return table;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("Document is shorter than indexed");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Tables are only parsed as the iterator reaches them
+     */
+    @Override
+    protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+        return new LazyTableIterator(this, getTableNames(), reversed);
+    }
+}
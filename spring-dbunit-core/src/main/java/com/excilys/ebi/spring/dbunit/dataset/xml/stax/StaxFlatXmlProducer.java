@@ -0,0 +1,398 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dataset.xml.stax;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.OrderedTableNameMap;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.BufferedConsumer;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.excilys.ebi.spring.dbunit.dataset.StringPool;
+
+/**
+ * Flat XML producer pulling the document with StAX, instead of going through
+ * a new SAX parser per file. Aalto or Woodstox are used when on the
+ * classpath, the JDK parser otherwise.
+ * <p>
+ * Besides {@link #produce()}, rows can be pulled one at a time with
+ * {@link #produceNext()}, so that the consumer sets the pace and the document
+ * is never read further than needed.
+ * <p>
+ * DTDs are never read: metadata comes from the given metadata dataset, or
+ * from the first row of each table, possibly extended by column sensing.
+ */
+public class StaxFlatXmlProducer implements IDataSetProducer, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StaxFlatXmlProducer.class);
+
+    private static final IDataSetConsumer EMPTY_CONSUMER = new DefaultConsumer();
+
+    private static final String DATASET = "dataset";
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final InputStream in;
+
+    private final IDataSet metaDataSet;
+
+    private final boolean columnSensing;
+
+    private final boolean caseSensitiveTableNames;
+
+    private final StringPool stringPool = StringPool.getInstance();
+
+    private IDataSetConsumer consumer = EMPTY_CONSUMER;
+
+    private XMLStreamReader reader;
+
+    private OrderedTableNameMap tables;
+
+    private ITableMetaData activeMetaData;
+
+    private int depth;
+
+    private boolean finished;
+
+    /**
+     * The metadata {@link #columnIndexes} were resolved against
+     */
+    private ITableMetaData indexedMetaData;
+
+    private Map<String, Integer> columnIndexes;
+
+    /**
+     * The attribute names of the last row, and the column of each, -1 for
+     * ignored ones
+     */
+    private String[] shapeNames = new String[0];
+
+    private int[] shapeColumns = new int[0];
+
+    /**
+     * @param in the document, closed once read
+     * @param metaDataSet the dataset giving the metadata of the tables, or null
+     *            to take it from the rows
+     * @param columnSensing whether columns missing from the first row of a
+     *            table are added when found in the next ones
+     * @param caseSensitiveTableNames whether table names are case sensitive
+     */
+    public StaxFlatXmlProducer(InputStream in, IDataSet metaDataSet, boolean columnSensing, boolean caseSensitiveTableNames) throws DataSetException {
+        this.in = in;
+        this.metaDataSet = metaDataSet;
+        this.columnSensing = columnSensing && metaDataSet == null;
+        this.caseSensitiveTableNames = metaDataSet != null ? metaDataSet.isCaseSensitiveTableNames() : caseSensitiveTableNames;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        return factory;
+    }
+
+    public boolean isCaseSensitiveTableNames() {
+        return caseSensitiveTableNames;
+    }
+
+    @Override
+    public void setConsumer(IDataSetConsumer consumer) {
+        this.consumer = columnSensing ? new BufferedConsumer(consumer) : consumer;
+    }
+
+    @Override
+    public void produce() throws DataSetException {
+        while (produceNext()) {
+            // every event goes to the consumer
+        }
+    }
+
+    /**
+     * Reads the document up to the next event for the consumer: the start or
+     * end of the dataset, the start of a table, or a row, along with the end
+     * of the previous table if any.
+     * 
+     * @return false once the whole document has been produced
+     * @throws DataSetException DBUnit failure
+     */
+    public boolean produceNext() throws DataSetException {
+
+        if (finished) {
+            return false;
+        }
+
+        try {
+            if (reader == null) {
+                // creating readers doesn't modify the factory, but isn't documented as thread safe
+                synchronized (FACTORY) {
+                    reader = FACTORY.createXMLStreamReader(in);
+                }
+            }
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 1) {
+                        startDataSet();
+                        return true;
+                    } else if (depth == 2) {
+                        startElement();
+                        return true;
+                    }
+                    // nested elements mean nothing in flat XML
+
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (depth == 0) {
+                        endDataSet();
+                        return true;
+                    }
+                }
+            }
+            throw new DataSetException("Unexpected end of flat XML document");
+
+        } catch (XMLStreamException e) {
+            close();
+            throw new DataSetException(e);
+        } catch (DataSetException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the document, for consumers that stop pulling before the end
+     */
+    @Override
+    public void close() {
+        finished = true;
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            LOGGER.debug("Could not close XML reader", e);
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close XML document", e);
+        }
+    }
+
+    private void startDataSet() throws DataSetException {
+
+        if (!DATASET.equals(reader.getLocalName())) {
+            throw new DataSetException("Flat XML document should start with <" + DATASET + ">, not <" + reader.getLocalName() + ">");
+        }
+
+        consumer.startDataSet();
+        tables = new OrderedTableNameMap(caseSensitiveTableNames);
+
+        // register tables in the metadata order
+        if (metaDataSet != null) {
+            for (String tableName : metaDataSet.getTableNames()) {
+                consumer.startTable(metaDataSet.getTableMetaData(tableName));
+                consumer.endTable();
+            }
+        }
+    }
+
+    private void endDataSet() throws DataSetException {
+        if (activeMetaData != null) {
+            consumer.endTable();
+        }
+        consumer.endDataSet();
+        close();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("string pool: {} hits, {} misses, {} strings", new Object[] { stringPool.getHitCount(), stringPool.getMissCount(), stringPool.size() });
+        }
+    }
+
+    private void startElement() throws DataSetException {
+
+        String tableName = stringPool.intern(reader.getLocalName());
+        if (activeMetaData == null || !tables.isLastTable(tableName)) {
+            if (activeMetaData != null) {
+                consumer.endTable();
+            }
+
+            // in flat XML, a table may appear again later on
+            if (tables.containsTable(tableName)) {
+                activeMetaData = (ITableMetaData) tables.get(tableName);
+                tables.setLastTable(tableName);
+            } else {
+                activeMetaData = createTableMetaData(tableName);
+                tables.add(activeMetaData.getTableName(), activeMetaData);
+            }
+            consumer.startTable(activeMetaData);
+        }
+
+        if (reader.getAttributeCount() > 0) {
+            row();
+        }
+    }
+
+    private ITableMetaData createTableMetaData(String tableName) throws DataSetException {
+
+        if (metaDataSet != null) {
+            return metaDataSet.getTableMetaData(tableName);
+        }
+
+        Column[] columns = new Column[reader.getAttributeCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(stringPool.intern(reader.getAttributeLocalName(i)), DataType.UNKNOWN);
+        }
+        return new DefaultTableMetaData(tableName, columns);
+    }
+
+    private void row() throws DataSetException {
+
+        if (!isSameShape()) {
+            if (!resolveShape() && metaDataSet == null) {
+                addMissingColumns();
+                resolveShape();
+            }
+        }
+
+        // consumers keep the rows, so each one needs its own array
+        Object[] values = new Object[activeMetaData.getColumns().length];
+        for (int i = 0; i < shapeColumns.length; i++) {
+            if (shapeColumns[i] >= 0) {
+                values[shapeColumns[i]] = stringPool.intern(reader.getAttributeValue(i));
+            }
+        }
+        consumer.row(values);
+    }
+
+    /**
+     * @return true if the row has the same attributes, in the same order, as
+     *         the previous one of the same table
+     */
+    private boolean isSameShape() {
+        if (activeMetaData != indexedMetaData || reader.getAttributeCount() != shapeNames.length) {
+            return false;
+        }
+        for (int i = 0; i < shapeNames.length; i++) {
+            if (!shapeNames[i].equals(reader.getAttributeLocalName(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the column of each attribute of the row once, so that rows of
+     * the same shape can be read by attribute index
+     * 
+     * @return false if some attributes have no column
+     */
+    private boolean resolveShape() throws DataSetException {
+        if (activeMetaData != indexedMetaData) {
+            Column[] columns = activeMetaData.getColumns();
+            columnIndexes = new HashMap<String, Integer>(columns.length * 2);
+            for (int i = 0; i < columns.length; i++) {
+                columnIndexes.put(columns[i].getColumnName(), i);
+            }
+            indexedMetaData = activeMetaData;
+        }
+
+        int attributeCount = reader.getAttributeCount();
+        if (attributeCount != shapeNames.length) {
+            shapeNames = new String[attributeCount];
+            shapeColumns = new int[attributeCount];
+        }
+        boolean complete = true;
+        for (int i = 0; i < attributeCount; i++) {
+            shapeNames[i] = stringPool.intern(reader.getAttributeLocalName(i));
+            Integer columnIndex = columnIndexes.get(shapeNames[i]);
+            shapeColumns[i] = columnIndex != null ? columnIndex : -1;
+            complete &= columnIndex != null;
+        }
+        return complete;
+    }
+
+    /**
+     * Adds the attributes without column to the metadata with column sensing,
+     * ignores them otherwise
+     */
+    private void addMissingColumns() throws DataSetException {
+
+        Column[] columns = activeMetaData.getColumns();
+        // column names are case insensitive, as with ITableMetaData#getColumnIndex
+        Set<String> columnNames = new HashSet<String>();
+        for (Column column : columns) {
+            columnNames.add(column.getColumnName().toUpperCase(Locale.ENGLISH));
+        }
+
+        List<Column> missingColumns = new ArrayList<Column>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String attributeName = stringPool.intern(reader.getAttributeLocalName(i));
+            if (!columnNames.contains(attributeName.toUpperCase(Locale.ENGLISH))) {
+                missingColumns.add(new Column(attributeName, DataType.UNKNOWN));
+            }
+        }
+
+        if (missingColumns.isEmpty()) {
+            return;
+
+        } else if (!columnSensing) {
+            LOGGER.warn("Extra columns {} of table {} on line {} will be ignored, declare them in the first row or enable column sensing", new Object[] {
+                    missingColumns, activeMetaData.getTableName(), reader.getLocation().getLineNumber() });
+            return;
+        }
+
+        Column[] mergedColumns = new Column[columns.length + missingColumns.size()];
+        System.arraycopy(columns, 0, mergedColumns, 0, columns.length);
+        for (int i = 0; i < missingColumns.size(); i++) {
+            mergedColumns[columns.length + i] = missingColumns.get(i);
+        }
+        activeMetaData = new DefaultTableMetaData(activeMetaData.getTableName(), mergedColumns);
+        tables.update(activeMetaData.getTableName(), activeMetaData);
+        // the buffered consumer rebuilds the table with the new columns
+        consumer.startTable(activeMetaData);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dialect;
+
+import com.excilys.ebi.spring.dbunit.operation.bulk.BulkLoader;
+
+/**
+ * Database specific SQL, for the operations that go beyond what DBUnit
+ * provides. Names passed to the dialect are already qualified and escaped.
+ * 
+ * @see com.excilys.ebi.spring.dbunit.config.DBType#getDialect()
+ */
+public interface DatabaseDialect {
+
+    /**
+     * @param table the table to create
+     * @param sourceTable the table to copy
+     * @return the statement creating a table with the structure and the rows
+     *         of another one
+     */
+    String getCreateTableAsSelectSql(String table, String sourceTable);
+
+    /**
+     * @param table the table to drop
+     * @return the statement dropping a table
+     */
+    String getDropTableSql(String table);
+
+    /**
+     * @param table the table to fill
+     * @param sourceTable the table to copy
+     * @param columns the columns to copy
+     * @return the statement copying all the rows of a table into another one
+     */
+    String getInsertFromSelectSql(String table, String sourceTable, String[] columns);
+
+    /**
+     * @return the loader inserting rows with the fastest path of the database
+     */
+    BulkLoader getBulkLoader();
+
+    /**
+     * @return the statement disabling the foreign key checks, or null if the
+     *         database can't
+     */
+    String getDisableForeignKeyChecksSql();
+
+    /**
+     * @return the statement enabling the foreign key checks again
+     */
+    String getEnableForeignKeyChecksSql();
+
+    /**
+     * @return the query returning whether the session is allowed to disable
+     *         the foreign key checks, or null if it's assumed to be
+     */
+    String getForeignKeyChecksDisablingAllowedSql();
+
+    /**
+     * @return true if the foreign key checks are disabled for the current
+     *         session only, false if they are for the whole database
+     */
+    boolean isForeignKeyChecksPerSession();
+
+    /**
+     * @return true if the foreign key checks are disabled table by table,
+     *         with {@link #getDisableForeignKeyChecksSql(String)}, rather than
+     *         with {@link #getDisableForeignKeyChecksSql()}
+     */
+    boolean isForeignKeyChecksPerTable();
+
+    /**
+     * @param table the table
+     * @return the statement disabling the foreign key checks of a table
+     */
+    String getDisableForeignKeyChecksSql(String table);
+
+    /**
+     * @param table the table
+     * @return the statement enabling the foreign key checks of a table again
+     */
+    String getEnableForeignKeyChecksSql(String table);
+
+    /**
+     * @return the query returning whether the foreign key checks of the
+     *         session are enabled, or null if the database can't tell
+     */
+    String getForeignKeyChecksEnabledSql();
+
+    /**
+     * @param tables the tables to empty
+     * @return the statement emptying all the tables at once, whatever the
+     *         foreign keys, or null if the database has none
+     */
+    String getTruncateTablesSql(String[] tables);
+
+    /**
+     * @param table the table to empty
+     * @return the statement emptying a table without logging its rows
+     */
+    String getTruncateTableSql(String table);
+
+    /**
+     * @param table the table
+     * @param column the identity column of the table
+     * @param nextValue the next value the column has to generate
+     * @return the statement restarting the identity column, or the sequence
+     *         behind it, at the given value, or null if the database can't
+     */
+    String getRestartIdentitySql(String table, String column, long nextValue);
+
+    /**
+     * @param table the table
+     * @param columns the columns to include in the checksum
+     * @param sqlTypes the {@link java.sql.Types} of the columns
+     * @return the query returning the row count and the checksum of a table,
+     *         as defined by
+     *         {@link com.excilys.ebi.spring.dbunit.assertion.TableChecksum},
+     *         or null if the database can't
+     */
+    String getTableChecksumSql(String table, String[] columns, int[] sqlTypes);
+
+    /**
+     * @param fetchSize the configured fetch size
+     * @return the fetch size to set on a forward only, read only statement so
+     *         that the driver streams its rows instead of buffering the whole
+     *         result
+     */
+    int getCursorFetchSize(int fetchSize);
+}
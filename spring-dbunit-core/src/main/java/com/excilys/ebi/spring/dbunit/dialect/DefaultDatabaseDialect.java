@@ -0,0 +1,120 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dialect;
+
+import org.springframework.util.StringUtils;
+
+import com.excilys.ebi.spring.dbunit.operation.bulk.BulkLoader;
+import com.excilys.ebi.spring.dbunit.operation.bulk.JdbcBatchBulkLoader;
+
+/**
+ * SQL that most databases understand.
+ */
+public class DefaultDatabaseDialect implements DatabaseDialect {
+
+    @Override
+    public String getCreateTableAsSelectSql(String table, String sourceTable) {
+        return "CREATE TABLE " + table + " AS SELECT * FROM " + sourceTable;
+    }
+
+    @Override
+    public String getDropTableSql(String table) {
+        return "DROP TABLE " + table;
+    }
+
+    @Override
+    public String getInsertFromSelectSql(String table, String sourceTable, String[] columns) {
+        String columnList = StringUtils.arrayToDelimitedString(columns, ", ");
+        return "INSERT INTO " + table + " (" + columnList + ") SELECT " + columnList + " FROM " + sourceTable;
+    }
+
+    @Override
+    public BulkLoader getBulkLoader() {
+        return new JdbcBatchBulkLoader();
+    }
+
+    @Override
+    public String getDisableForeignKeyChecksSql() {
+        return null;
+    }
+
+    @Override
+    public String getEnableForeignKeyChecksSql() {
+        return null;
+    }
+
+    @Override
+    public String getForeignKeyChecksDisablingAllowedSql() {
+        return null;
+    }
+
+    @Override
+    public boolean isForeignKeyChecksPerSession() {
+        return false;
+    }
+
+    @Override
+    public boolean isForeignKeyChecksPerTable() {
+        return false;
+    }
+
+    @Override
+    public String getDisableForeignKeyChecksSql(String table) {
+        return null;
+    }
+
+    @Override
+    public String getEnableForeignKeyChecksSql(String table) {
+        return null;
+    }
+
+    @Override
+    public String getForeignKeyChecksEnabledSql() {
+        return null;
+    }
+
+    @Override
+    public String getTruncateTablesSql(String[] tables) {
+        return null;
+    }
+
+    @Override
+    public String getTruncateTableSql(String table) {
+        return "TRUNCATE TABLE " + table;
+    }
+
+    /**
+     * Oracle, Netezza and McKoi reject the SQL:2003 syntax, which is left to
+     * the dialects of the databases understanding it
+     */
+    @Override
+    public String getRestartIdentitySql(String table, String column, long nextValue) {
+        return null;
+    }
+
+    @Override
+    public String getTableChecksumSql(String table, String[] columns, int[] sqlTypes) {
+        return null;
+    }
+
+    /**
+     * Some drivers, like PostgreSQL's, only honor it outside of autocommit
+     */
+    @Override
+    public int getCursorFetchSize(int fetchSize) {
+        return fetchSize;
+    }
+}
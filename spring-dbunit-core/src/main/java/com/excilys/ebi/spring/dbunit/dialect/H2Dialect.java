@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dialect;
+
+import java.sql.Types;
+
+import com.excilys.ebi.spring.dbunit.operation.bulk.BulkLoader;
+import com.excilys.ebi.spring.dbunit.operation.bulk.CsvReadBulkLoader;
+
+public class H2Dialect extends DefaultDatabaseDialect {
+
+    @Override
+    public BulkLoader getBulkLoader() {
+        return new CsvReadBulkLoader();
+    }
+
+    @Override
+    public String getDisableForeignKeyChecksSql() {
+        return "SET REFERENTIAL_INTEGRITY FALSE";
+    }
+
+    @Override
+    public String getEnableForeignKeyChecksSql() {
+        return "SET REFERENTIAL_INTEGRITY TRUE";
+    }
+
+    /**
+     * Each row is hashed with SHA-256, whose first 8 bytes are cast to a
+     * BIGINT and summed as a DECIMAL so that the sum can't overflow
+     */
+    @Override
+    public String getTableChecksumSql(String table, String[] columns, int[] sqlTypes) {
+
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                row.append(" || CHAR(31) || ");
+            }
+            row.append("CASE WHEN ").append(columns[i]).append(" IS NULL THEN '0' ELSE '1' || ").append(getText(columns[i], sqlTypes[i])).append(" END");
+        }
+
+        String hash = "CAST(CAST(SUBSTRING(HASH('SHA256', STRINGTOUTF8(" + row + "), 1), 1, 16) AS BINARY) AS BIGINT)";
+        return "SELECT COUNT(*), SUM(CAST(" + hash + " AS DECIMAL(20))) FROM " + table;
+    }
+
+    private String getText(String column, int sqlType) {
+
+        String text = "CAST(" + column + " AS VARCHAR)";
+        if (sqlType == Types.DECIMAL || sqlType == Types.NUMERIC) {
+            // strip the trailing zeros of the scale, and the point if nothing's left after it
+            return "CASE WHEN " + column + " = 0 THEN '0' WHEN LOCATE('.', " + text + ") > 0 THEN TRIM(TRAILING '.' FROM TRIM(TRAILING '0' FROM " + text
+                    + ")) ELSE " + text + " END";
+        }
+        return text;
+    }
+
+    /**
+     * SQL:2003 syntax
+     */
+    @Override
+    public String getRestartIdentitySql(String table, String column, long nextValue) {
+        return "ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + nextValue;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dialect;
+
+import com.excilys.ebi.spring.dbunit.operation.bulk.BulkLoader;
+import com.excilys.ebi.spring.dbunit.operation.bulk.MultiRowValuesBulkLoader;
+
+public class HsqldbDialect extends DefaultDatabaseDialect {
+
+    @Override
+    public String getCreateTableAsSelectSql(String table, String sourceTable) {
+        return "CREATE TABLE " + table + " AS (SELECT * FROM " + sourceTable + ") WITH DATA";
+    }
+
+    @Override
+    public BulkLoader getBulkLoader() {
+        return new MultiRowValuesBulkLoader();
+    }
+
+    @Override
+    public String getDisableForeignKeyChecksSql() {
+        return "SET DATABASE REFERENTIAL INTEGRITY FALSE";
+    }
+
+    @Override
+    public String getEnableForeignKeyChecksSql() {
+        return "SET DATABASE REFERENTIAL INTEGRITY TRUE";
+    }
+
+    /**
+     * SQL:2003 syntax
+     */
+    @Override
+    public String getRestartIdentitySql(String table, String column, long nextValue) {
+        return "ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + nextValue;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dialect;
+
+import java.sql.Types;
+
+public class MsSqlDialect extends DefaultDatabaseDialect {
+
+    @Override
+    public String getCreateTableAsSelectSql(String table, String sourceTable) {
+        return "SELECT * INTO " + table + " FROM " + sourceTable;
+    }
+
+    @Override
+    public boolean isForeignKeyChecksPerTable() {
+        return true;
+    }
+
+    /**
+     * Disables the foreign keys declared by the table, so the ones referencing
+     * it still prevent deleting rows that are used elsewhere
+     */
+    @Override
+    public String getDisableForeignKeyChecksSql(String table) {
+        return "ALTER TABLE " + table + " NOCHECK CONSTRAINT ALL";
+    }
+
+    /**
+     * The rows written in between are not validated, so the foreign keys are
+     * left untrusted, which only deprives the optimizer of them
+     */
+    @Override
+    public String getEnableForeignKeyChecksSql(String table) {
+        return "ALTER TABLE " + table + " CHECK CONSTRAINT ALL";
+    }
+
+    /**
+     * <code>DBCC CHECKIDENT</code> behaves differently whether the identity
+     * has already been used: once it has, the next row gets the reseed value
+     * plus the increment, but the first row inserted in a new or truncated
+     * table gets the reseed value itself. Such tables are told by the
+     * <code>last_value</code> of the identity, which is still null.
+     */
+    @Override
+    public String getRestartIdentitySql(String table, String column, long nextValue) {
+        String literal = "'" + table.replace("'", "''") + "'";
+        return "IF (SELECT last_value FROM sys.identity_columns WHERE object_id = OBJECT_ID(" + literal + ")) IS NULL DBCC CHECKIDENT (" + literal
+                + ", RESEED, " + nextValue + ") ELSE DBCC CHECKIDENT (" + literal + ", RESEED, " + (nextValue - 1) + ")";
+    }
+
+    /**
+     * Each row is hashed with <code>HASHBYTES('SHA2_256')</code> over its UTF-8
+     * bytes, obtained through a UTF-8 collation, which requires SQL Server
+     * 2019. The first 8 bytes are cast to a BIGINT and summed as a DECIMAL.
+     */
+    @Override
+    public String getTableChecksumSql(String table, String[] columns, int[] sqlTypes) {
+
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                row.append(" + NCHAR(31) + ");
+            }
+            row.append("CASE WHEN ").append(columns[i]).append(" IS NULL THEN N'0' ELSE N'1' + ").append(getText(columns[i], sqlTypes[i])).append(" END");
+        }
+
+        String utf8 = "CONVERT(VARBINARY(MAX), CONVERT(VARCHAR(MAX), (" + row + ") COLLATE Latin1_General_100_CI_AS_SC_UTF8))";
+        String hash = "CAST(SUBSTRING(HASHBYTES('SHA2_256', " + utf8 + "), 1, 8) AS BIGINT)";
+        return "SELECT COUNT_BIG(*), SUM(CAST(" + hash + " AS DECIMAL(20))) FROM " + table;
+    }
+
+    private String getText(String column, int sqlType) {
+
+        switch (sqlType) {
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            // strip the trailing zeros of the scale, and the point if nothing's left after it
+            String text = "CAST(" + column + " AS NVARCHAR(50))";
+            String stripped = stripTrailingZeros(text);
+            return "CASE WHEN " + column + " = 0 THEN N'0' WHEN CHARINDEX('.', " + text + ") > 0 THEN CASE WHEN RIGHT(" + stripped + ", 1) = '.' THEN LEFT("
+                    + stripped + ", LEN(" + stripped + ") - 1) ELSE " + stripped + " END ELSE " + text + " END";
+        case Types.BOOLEAN:
+            return "CASE " + column + " WHEN 1 THEN N'TRUE' WHEN 0 THEN N'FALSE' END";
+        case Types.DATE:
+            return "CONVERT(NVARCHAR(10), " + column + ", 23)";
+        case Types.TIME:
+            return "CONVERT(NVARCHAR(8), " + column + ", 108)";
+        case Types.TIMESTAMP:
+            // like java.sql.Timestamp, with at least one fractional digit
+            String nanos = "DATEPART(NANOSECOND, " + column + ")";
+            String fraction = "RIGHT('000000000' + CAST(" + nanos + " AS NVARCHAR(9)), 9)";
+            return "CONVERT(NVARCHAR(19), " + column + ", 120) + N'.' + CASE WHEN " + nanos + " = 0 THEN N'0' ELSE " + stripTrailingZeros(fraction) + " END";
+        default:
+            return "CAST(" + column + " AS NVARCHAR(MAX))";
+        }
+    }
+
+    /**
+     * SQL Server has no <code>TRIM(TRAILING ...)</code> before 2022
+     */
+    private String stripTrailingZeros(String text) {
+        return "LEFT(" + text + ", LEN(" + text + ") - PATINDEX('%[^0]%', REVERSE(" + text + ")) + 1)";
+    }
+}
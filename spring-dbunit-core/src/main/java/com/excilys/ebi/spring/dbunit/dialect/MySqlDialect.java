@@ -0,0 +1,109 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dialect;
+
+import java.sql.Types;
+
+import com.excilys.ebi.spring.dbunit.operation.bulk.BulkLoader;
+import com.excilys.ebi.spring.dbunit.operation.bulk.LoadDataBulkLoader;
+
+public class MySqlDialect extends DefaultDatabaseDialect {
+
+    @Override
+    public BulkLoader getBulkLoader() {
+        return new LoadDataBulkLoader();
+    }
+
+    @Override
+    public String getDisableForeignKeyChecksSql() {
+        return "SET FOREIGN_KEY_CHECKS = 0";
+    }
+
+    @Override
+    public String getEnableForeignKeyChecksSql() {
+        return "SET FOREIGN_KEY_CHECKS = 1";
+    }
+
+    @Override
+    public boolean isForeignKeyChecksPerSession() {
+        return true;
+    }
+
+    @Override
+    public String getForeignKeyChecksEnabledSql() {
+        return "SELECT @@FOREIGN_KEY_CHECKS";
+    }
+
+    @Override
+    public String getRestartIdentitySql(String table, String column, long nextValue) {
+        return "ALTER TABLE " + table + " AUTO_INCREMENT = " + nextValue;
+    }
+
+    /**
+     * Connector/J buffers the whole result unless the fetch size is
+     * {@link Integer#MIN_VALUE}, and then streams it row by row
+     */
+    @Override
+    public int getCursorFetchSize(int fetchSize) {
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Each row is hashed with <code>SHA2</code> over its utf8mb4 text, and the
+     * first 16 hexadecimal digits are read as a signed BIGINT by
+     * <code>CONV</code> with a negative base, and summed as a DECIMAL
+     */
+    @Override
+    public String getTableChecksumSql(String table, String[] columns, int[] sqlTypes) {
+
+        StringBuilder row = new StringBuilder("CONCAT(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                row.append(", CHAR(31 USING utf8mb4), ");
+            }
+            row.append("CONVERT(CASE WHEN ").append(columns[i]).append(" IS NULL THEN '0' ELSE CONCAT('1', ").append(getText(columns[i], sqlTypes[i]))
+                    .append(") END USING utf8mb4)");
+        }
+        row.append(")");
+
+        String hash = "CAST(CONV(LEFT(SHA2(" + row + ", 256), 16), 16, -10) AS SIGNED)";
+        return "SELECT COUNT(*), SUM(CAST(" + hash + " AS DECIMAL(20))) FROM " + table;
+    }
+
+    private String getText(String column, int sqlType) {
+
+        String text = "CAST(" + column + " AS CHAR)";
+        switch (sqlType) {
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            // strip the trailing zeros of the scale, and the point if nothing's left after it
+            return "CASE WHEN " + column + " = 0 THEN '0' WHEN LOCATE('.', " + text + ") > 0 THEN TRIM(TRAILING '.' FROM TRIM(TRAILING '0' FROM " + text
+                    + ")) ELSE " + text + " END";
+        case Types.BOOLEAN:
+            return "CASE WHEN " + column + " IS NULL THEN NULL WHEN " + column + " THEN 'TRUE' ELSE 'FALSE' END";
+        case Types.DATE:
+            return "DATE_FORMAT(" + column + ", '%Y-%m-%d')";
+        case Types.TIME:
+            return "TIME_FORMAT(" + column + ", '%H:%i:%s')";
+        case Types.TIMESTAMP:
+            // like java.sql.Timestamp, with at least one fractional digit
+            return "CONCAT(DATE_FORMAT(" + column + ", '%Y-%m-%d %H:%i:%s'), '.', IF(MICROSECOND(" + column + ") = 0, '0', TRIM(TRAILING '0' FROM LPAD(MICROSECOND("
+                    + column + "), 6, '0'))))";
+        default:
+            return text;
+        }
+    }
+}
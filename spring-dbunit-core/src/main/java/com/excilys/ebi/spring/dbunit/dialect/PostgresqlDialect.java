@@ -0,0 +1,134 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.dialect;
+
+import java.sql.Types;
+
+import org.springframework.util.StringUtils;
+
+import com.excilys.ebi.spring.dbunit.operation.bulk.BulkLoader;
+import com.excilys.ebi.spring.dbunit.operation.bulk.CopyBulkLoader;
+
+public class PostgresqlDialect extends DefaultDatabaseDialect {
+
+    @Override
+    public BulkLoader getBulkLoader() {
+        return new CopyBulkLoader();
+    }
+
+    /**
+     * Foreign keys are triggers, that don't fire for replicas. Unlike
+     * <code>SET CONSTRAINTS ALL DEFERRED</code>, this also works for non
+     * deferrable constraints and outside of transactions, but requires
+     * superuser rights.
+     */
+    @Override
+    public String getDisableForeignKeyChecksSql() {
+        return "SET session_replication_role = replica";
+    }
+
+    @Override
+    public String getEnableForeignKeyChecksSql() {
+        return "SET session_replication_role = DEFAULT";
+    }
+
+    /**
+     * Only superusers may set the replication role, unless granted the
+     * <code>SET</code> privilege on it from PostgreSQL 15, which this query
+     * doesn't tell.
+     */
+    @Override
+    public String getForeignKeyChecksDisablingAllowedSql() {
+        return "SELECT current_setting('is_superuser') = 'on'";
+    }
+
+    @Override
+    public boolean isForeignKeyChecksPerSession() {
+        return true;
+    }
+
+    @Override
+    public String getForeignKeyChecksEnabledSql() {
+        return "SELECT current_setting('session_replication_role') <> 'replica'";
+    }
+
+    /**
+     * Also empties the tables referencing the given ones, and restarts the
+     * sequences they own.
+     */
+    @Override
+    public String getTruncateTablesSql(String[] tables) {
+        return "TRUNCATE TABLE " + StringUtils.arrayToDelimitedString(tables, ", ") + " RESTART IDENTITY CASCADE";
+    }
+
+    /**
+     * Serial and identity columns both own a sequence. The anonymous block
+     * keeps the statement free of results, so that it can be batched, and
+     * <code>pg_get_serial_sequence</code> takes the column name unquoted.
+     */
+    @Override
+    public String getRestartIdentitySql(String table, String column, long nextValue) {
+        return "DO $$BEGIN PERFORM setval(pg_get_serial_sequence('" + table.replace("'", "''") + "', '" + column.replace("\"", "").replace("'", "''") + "'), "
+                + nextValue + ", false); END$$";
+    }
+
+    /**
+     * Each row is hashed with <code>sha256</code>, from PostgreSQL 11, over
+     * its UTF-8 bytes. The first 8 bytes are read as a BIGINT through a bit
+     * string, and summed as a NUMERIC.
+     * Timestamps are written in the session time zone, which the driver sets
+     * to the JVM one.
+     */
+    @Override
+    public String getTableChecksumSql(String table, String[] columns, int[] sqlTypes) {
+
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                row.append(" || '\\x1f'::bytea || ");
+            }
+            row.append("convert_to(CASE WHEN ").append(columns[i]).append(" IS NULL THEN '0' ELSE '1' || ").append(getText(columns[i], sqlTypes[i]))
+                    .append(" END, 'UTF8')");
+        }
+
+        String hash = "('x' || encode(substring(sha256(" + row + ") from 1 for 8), 'hex'))::bit(64)::bigint";
+        return "SELECT COUNT(*), SUM(" + hash + "::numeric) FROM " + table;
+    }
+
+    private String getText(String column, int sqlType) {
+
+        String text = "CAST(" + column + " AS text)";
+        switch (sqlType) {
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            // strip the trailing zeros of the scale, and the point if nothing's left after it
+            return "CASE WHEN " + column + " = 0 THEN '0' WHEN strpos(" + text + ", '.') > 0 THEN rtrim(rtrim(" + text + ", '0'), '.') ELSE " + text + " END";
+        case Types.BOOLEAN:
+            return "CASE " + column + " WHEN TRUE THEN 'TRUE' WHEN FALSE THEN 'FALSE' END";
+        case Types.DATE:
+            return "to_char(" + column + ", 'YYYY-MM-DD')";
+        case Types.TIME:
+            return "substring(" + text + " from 1 for 8)";
+        case Types.TIMESTAMP:
+            // like java.sql.Timestamp, with at least one fractional digit
+            String micros = "to_char(" + column + ", 'US')";
+            return "to_char(" + column + ", 'YYYY-MM-DD HH24:MI:SS') || '.' || CASE WHEN " + micros + " = '000000' THEN '0' ELSE rtrim(" + micros
+                    + ", '0') END";
+        default:
+            return text;
+        }
+    }
+}
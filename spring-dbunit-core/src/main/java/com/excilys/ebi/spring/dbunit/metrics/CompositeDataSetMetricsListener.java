@@ -0,0 +1,38 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dispatches the events to several listeners
+ */
+public class CompositeDataSetMetricsListener implements DataSetMetricsListener {
+
+    private final List<DataSetMetricsListener> listeners;
+
+    public CompositeDataSetMetricsListener(List<DataSetMetricsListener> listeners) {
+        this.listeners = new ArrayList<DataSetMetricsListener>(listeners);
+    }
+
+    @Override
+    public void onEvent(DataSetMetricsEvent event) {
+        for (DataSetMetricsListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+}
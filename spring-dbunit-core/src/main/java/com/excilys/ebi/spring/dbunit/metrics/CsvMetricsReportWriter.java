@@ -0,0 +1,53 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+import java.io.Writer;
+
+/**
+ * Writes the events as CSV, with a header line
+ */
+public class CsvMetricsReportWriter extends MetricsReportWriter {
+
+    public CsvMetricsReportWriter(Writer writer) {
+        super(writer);
+    }
+
+    @Override
+    protected String formatHeader() {
+        return "test,phase,step,table,elapsedNanos,rowCount";
+    }
+
+    @Override
+    protected String format(DataSetMetricsEvent event) {
+        return new StringBuilder()/**/
+        .append(escape(event.getTestName())).append(',')/**/
+        .append(event.getPhase() != null ? event.getPhase() : "").append(',')/**/
+        .append(event.getStep()).append(',')/**/
+        .append(escape(event.getTableName())).append(',')/**/
+        .append(event.getElapsedNanos()).append(',')/**/
+        .append(event.getRowCount()).toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        } else if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.springframework.context.ApplicationContext;
+
+import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
+
+/**
+ * Entry point of the metrics SPI: finds the {@link DataSetMetricsListener
+ * listeners} and keeps track of the running test.
+ * <p>
+ * Besides the listeners of the application context and of the
+ * {@link ServiceLoader}, a report of every event is written to the file
+ * given by the <code>spring.dbunit.metrics.report</code> system property, as
+ * JSON lines if its name ends with <code>.json</code>, as CSV otherwise.
+ */
+public final class DataSetMetrics {
+
+    private static final Logger LOGGER = getLogger(DataSetMetrics.class);
+
+    private static final ThreadLocal<String> CURRENT_TEST = new ThreadLocal<String>();
+
+    private static List<DataSetMetricsListener> globalListeners;
+
+    private DataSetMetrics() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param testName the name of the test running on the current thread,
+     *            attached to the events until {@link #clearCurrentTest()}
+     */
+    public static void setCurrentTest(String testName) {
+        CURRENT_TEST.set(testName);
+    }
+
+    public static void clearCurrentTest() {
+        CURRENT_TEST.remove();
+    }
+
+    public static String getCurrentTest() {
+        return CURRENT_TEST.get();
+    }
+
+    /**
+     * @param applicationContext the context to look listener beans up in,
+     *            possibly null
+     * @return a listener dispatching to all the registered ones, or null if
+     *         there's none
+     */
+    public static DataSetMetricsListener getListener(ApplicationContext applicationContext) {
+
+        List<DataSetMetricsListener> listeners = new ArrayList<DataSetMetricsListener>(getGlobalListeners());
+        if (applicationContext != null) {
+            listeners.addAll(applicationContext.getBeansOfType(DataSetMetricsListener.class).values());
+        }
+
+        switch (listeners.size()) {
+        case 0:
+            return null;
+        case 1:
+            return listeners.get(0);
+        default:
+            return new CompositeDataSetMetricsListener(listeners);
+        }
+    }
+
+    private static synchronized List<DataSetMetricsListener> getGlobalListeners() {
+
+        if (globalListeners == null) {
+            List<DataSetMetricsListener> listeners = new ArrayList<DataSetMetricsListener>();
+            for (DataSetMetricsListener listener : ServiceLoader.load(DataSetMetricsListener.class)) {
+                listeners.add(listener);
+            }
+
+            if (ConfigurationDefaults.DEFAULT_METRICS_REPORT != null) {
+                try {
+                    final MetricsReportWriter writer = MetricsReportWriter.forFile(new File(ConfigurationDefaults.DEFAULT_METRICS_REPORT));
+                    Runtime.getRuntime().addShutdownHook(new Thread("spring-dbunit-metrics-report") {
+                        @Override
+                        public void run() {
+                            writer.close();
+                        }
+                    });
+                    listeners.add(writer);
+                } catch (IOException e) {
+                    LOGGER.error("Could not open metrics report " + ConfigurationDefaults.DEFAULT_METRICS_REPORT, e);
+                }
+            }
+
+            globalListeners = Collections.unmodifiableList(listeners);
+        }
+        return globalListeners;
+    }
+}
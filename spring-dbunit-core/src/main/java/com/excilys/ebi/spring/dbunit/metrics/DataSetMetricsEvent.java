@@ -0,0 +1,91 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import com.excilys.ebi.spring.dbunit.config.Phase;
+
+/**
+ * A measure of a {@link Step}, either for a whole dataset or for one of its
+ * tables.
+ */
+public class DataSetMetricsEvent {
+
+    private final String testName;
+
+    private final Phase phase;
+
+    private final Step step;
+
+    private final String tableName;
+
+    private final long elapsedNanos;
+
+    private final long rowCount;
+
+    /**
+     * @param testName the running test, or null outside of tests
+     * @param phase the phase, null for {@link Step#ASSERT}
+     * @param step the step
+     * @param tableName the table, or null if the event covers the whole
+     *            dataset
+     * @param elapsedNanos the duration
+     * @param rowCount the number of rows, or -1 when unknown
+     */
+    public DataSetMetricsEvent(String testName, Phase phase, Step step, String tableName, long elapsedNanos, long rowCount) {
+        this.testName = testName;
+        this.phase = phase;
+        this.step = step;
+        this.tableName = tableName;
+        this.elapsedNanos = elapsedNanos;
+        this.rowCount = rowCount;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public Step getStep() {
+        return step;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DataSetMetricsEvent[testName=" + testName + ", phase=" + phase + ", step=" + step + ", tableName=" + tableName + ", elapsedNanos="
+                + elapsedNanos + ", rowCount=" + rowCount + "]";
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+/**
+ * Receives the timings and row counts of dataset loads and checks.
+ * <p>
+ * Listeners are looked up in the application context, and through the
+ * {@link java.util.ServiceLoader} mechanism with a
+ * <code>META-INF/services/com.excilys.ebi.spring.dbunit.metrics.DataSetMetricsListener</code>
+ * file. They may be called from several threads.
+ * 
+ * @see DataSetMetrics
+ */
+public interface DataSetMetricsListener {
+
+    void onEvent(DataSetMetricsEvent event);
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import org.dbunit.dataset.IDataSet;
+import org.slf4j.Logger;
+
+import com.excilys.ebi.spring.dbunit.config.Phase;
+
+/**
+ * Builds the events of a phase and hands them to a listener. A recorder
+ * without listener does nothing.
+ * <p>
+ * Listener failures are logged and never fail the load.
+ */
+public class DataSetMetricsRecorder {
+
+    private static final Logger LOGGER = getLogger(DataSetMetricsRecorder.class);
+
+    private final DataSetMetricsListener listener;
+
+    private final String testName;
+
+    private final Phase phase;
+
+    /**
+     * @param listener the listener, possibly null
+     * @param phase the phase, null for {@link Step#ASSERT}
+     */
+    public DataSetMetricsRecorder(DataSetMetricsListener listener, Phase phase) {
+        this.listener = listener;
+        this.testName = DataSetMetrics.getCurrentTest();
+        this.phase = phase;
+    }
+
+    public boolean isEnabled() {
+        return listener != null;
+    }
+
+    /**
+     * @param step the step
+     * @param tableName the table, or null for the whole dataset
+     * @param startNanos the {@link System#nanoTime()} at the start of the step
+     * @param rowCount the number of rows, or -1 when unknown
+     */
+    public void record(Step step, String tableName, long startNanos, long rowCount) {
+        if (listener != null) {
+            DataSetMetricsEvent event = new DataSetMetricsEvent(testName, phase, step, tableName, System.nanoTime() - startNanos, rowCount);
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                LOGGER.warn("DataSetMetricsListener failed on " + event, e);
+            }
+        }
+    }
+
+    /**
+     * @param dataSet a dataset
+     * @param step the step the dataset is iterated for
+     * @return a dataset recording an event per table it iterates over, or the
+     *         dataset itself if there's no listener
+     */
+    public IDataSet meter(IDataSet dataSet, Step step) {
+        return listener != null ? new MeteredDataSet(dataSet, this, step) : dataSet;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+import java.io.Writer;
+
+/**
+ * Writes the events as JSON lines: one JSON object per line, null values
+ * omitted
+ */
+public class JsonMetricsReportWriter extends MetricsReportWriter {
+
+    public JsonMetricsReportWriter(Writer writer) {
+        super(writer);
+    }
+
+    @Override
+    protected String formatHeader() {
+        return null;
+    }
+
+    @Override
+    protected String format(DataSetMetricsEvent event) {
+        StringBuilder json = new StringBuilder("{");
+        appendString(json, "test", event.getTestName());
+        appendString(json, "phase", event.getPhase() != null ? event.getPhase().name() : null);
+        appendString(json, "step", event.getStep().name());
+        appendString(json, "table", event.getTableName());
+        json.append("\"elapsedNanos\":").append(event.getElapsedNanos());
+        json.append(",\"rowCount\":").append(event.getRowCount());
+        return json.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder json, String name, String value) {
+        if (value == null) {
+            return;
+        }
+
+        json.append('"').append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        json.append("\",");
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * {@link IDataSet} decorator recording the time spent on each table while it's
+ * iterated over, that is to say the time an operation takes per table.
+ */
+class MeteredDataSet implements IDataSet {
+
+    private final IDataSet dataSet;
+
+    private final DataSetMetricsRecorder recorder;
+
+    private final Step step;
+
+    MeteredDataSet(IDataSet dataSet, DataSetMetricsRecorder recorder, Step step) {
+        this.dataSet = dataSet;
+        this.recorder = recorder;
+        this.step = step;
+    }
+
+    @Override
+    public String[] getTableNames() throws DataSetException {
+        return dataSet.getTableNames();
+    }
+
+    @Override
+    public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+        return dataSet.getTableMetaData(tableName);
+    }
+
+    @Override
+    public ITable getTable(String tableName) throws DataSetException {
+        return dataSet.getTable(tableName);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ITable[] getTables() throws DataSetException {
+        return dataSet.getTables();
+    }
+
+    @Override
+    public ITableIterator iterator() throws DataSetException {
+        return new MeteredTableIterator(dataSet.iterator());
+    }
+
+    @Override
+    public ITableIterator reverseIterator() throws DataSetException {
+        return new MeteredTableIterator(dataSet.reverseIterator());
+    }
+
+    @Override
+    public boolean isCaseSensitiveTableNames() {
+        return dataSet.isCaseSensitiveTableNames();
+    }
+
+    private class MeteredTableIterator implements ITableIterator {
+
+        private final ITableIterator iterator;
+
+        private ITable current;
+
+        private long start;
+
+        private MeteredTableIterator(ITableIterator iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean next() throws DataSetException {
+
+            if (current != null) {
+                recordCurrent();
+            }
+
+            boolean next = iterator.next();
+            if (next) {
+                current = iterator.getTable();
+                start = System.nanoTime();
+            }
+            return next;
+        }
+
+        private void recordCurrent() throws DataSetException {
+            long rowCount;
+            try {
+                rowCount = current.getRowCount();
+            } catch (UnsupportedOperationException e) {
+                // streamed table
+                rowCount = -1;
+            }
+            recorder.record(step, current.getTableMetaData().getTableName(), start, rowCount);
+            current = null;
+        }
+
+        @Override
+        public ITableMetaData getTableMetaData() throws DataSetException {
+            return iterator.getTableMetaData();
+        }
+
+        @Override
+        public ITable getTable() throws DataSetException {
+            return current != null ? current : iterator.getTable();
+        }
+    }
+}
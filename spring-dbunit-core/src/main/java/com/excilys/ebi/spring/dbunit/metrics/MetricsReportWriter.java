@@ -0,0 +1,115 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.slf4j.Logger;
+
+/**
+ * {@link DataSetMetricsListener} writing a line per event, so that slow
+ * fixtures can be spotted and compared across builds.
+ * 
+ * @see CsvMetricsReportWriter
+ * @see JsonMetricsReportWriter
+ */
+public abstract class MetricsReportWriter implements DataSetMetricsListener {
+
+    private static final Logger LOGGER = getLogger(MetricsReportWriter.class);
+
+    private final Writer writer;
+
+    private boolean failed;
+
+    protected MetricsReportWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @param file the report file, JSON lines if its name ends with
+     *            <code>.json</code>, CSV otherwise
+     * @return a writer appending to the file
+     * @throws IOException I/O failure
+     */
+    public static MetricsReportWriter forFile(File file) throws IOException {
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        boolean header = !file.exists() || file.length() == 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+
+        MetricsReportWriter reportWriter = file.getName().endsWith(".json") ? new JsonMetricsReportWriter(writer) : new CsvMetricsReportWriter(writer);
+        if (header) {
+            reportWriter.writeHeader();
+        }
+        return reportWriter;
+    }
+
+    /**
+     * Writes the header, if the format has one
+     */
+    public synchronized void writeHeader() {
+        String header = formatHeader();
+        if (header != null) {
+            writeLine(header);
+        }
+    }
+
+    @Override
+    public synchronized void onEvent(DataSetMetricsEvent event) {
+        writeLine(format(event));
+    }
+
+    private void writeLine(String line) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.write('\n');
+            // a report must survive a crashed build
+            writer.flush();
+        } catch (IOException e) {
+            failed = true;
+            LOGGER.error("Could not write metrics report, disabling it", e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close metrics report", e);
+        }
+    }
+
+    /**
+     * @return the first line of the report, or null
+     */
+    protected abstract String formatHeader();
+
+    protected abstract String format(DataSetMetricsEvent event);
+}
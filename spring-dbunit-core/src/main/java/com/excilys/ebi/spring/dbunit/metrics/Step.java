@@ -0,0 +1,53 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.metrics;
+
+/**
+ * The measured steps of loading and checking a dataset
+ */
+public enum Step {
+
+    /**
+     * Reading the dataset files, possibly served by the dataset cache
+     */
+    PARSE,
+
+    /**
+     * Applying the {@link com.excilys.ebi.spring.dbunit.dataset.DataSetDecorator
+     * decorators}
+     */
+    DECORATE,
+
+    /**
+     * Opening the DBUnit connection, which reads the database metadata
+     */
+    CONNECT,
+
+    /**
+     * Running the operations against the database
+     */
+    EXECUTE,
+
+    /**
+     * Reading the tables of an expected dataset from the database
+     */
+    READ,
+
+    /**
+     * Comparing the database with an expected dataset
+     */
+    ASSERT;
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation;
+
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getQualifiedName;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+/**
+ * Inserts rows as they're produced, with JDBC batches of
+ * <code>batchSize</code> rows, so that a dataset never has to be held in
+ * memory.
+ * <p>
+ * Values are typed with the database metadata, and string values go through
+ * the decorators' substring replacements.
+ */
+public class BatchInsertConsumer implements IDataSetConsumer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchInsertConsumer.class);
+
+    private final IDatabaseConnection connection;
+
+    private final int batchSize;
+
+    private final Map<String, String> replacements;
+
+    private IDataSet databaseDataSet;
+
+    private String tableName;
+
+    private DataType[] dataTypes;
+
+    private PreparedStatement statement;
+
+    private int pendingRows;
+
+    private int tableRows;
+
+    public BatchInsertConsumer(IDatabaseConnection connection, int batchSize) {
+        this(connection, batchSize, Collections.<String, String> emptyMap());
+    }
+
+    public BatchInsertConsumer(IDatabaseConnection connection, int batchSize, Map<String, String> replacements) {
+        this.connection = connection;
+        this.batchSize = Math.max(batchSize, 1);
+        this.replacements = replacements;
+    }
+
+    public void startDataSet() throws DataSetException {
+        try {
+            databaseDataSet = connection.createDataSet();
+        } catch (SQLException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    public void endDataSet() throws DataSetException {
+        databaseDataSet = null;
+    }
+
+    public void startTable(ITableMetaData metaData) throws DataSetException {
+
+        ITableMetaData databaseMetaData = databaseDataSet.getTableMetaData(metaData.getTableName());
+        Column[] databaseColumns = databaseMetaData.getColumns();
+        Column[] columns = metaData.getColumns();
+
+        tableName = databaseMetaData.getTableName();
+        tableRows = 0;
+        pendingRows = 0;
+        dataTypes = new DataType[columns.length];
+
+        if (columns.length == 0) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("insert into ").append(getQualifiedName(connection.getSchema(), tableName, connection)).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            Column databaseColumn = databaseColumns[databaseMetaData.getColumnIndex(columns[i].getColumnName())];
+            dataTypes[i] = databaseColumn.getDataType();
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(getQualifiedName(null, databaseColumn.getColumnName(), connection));
+        }
+        sql.append(") values (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        try {
+            statement = connection.getConnection().prepareStatement(sql.toString());
+        } catch (SQLException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    public void row(Object[] values) throws DataSetException {
+        if (statement == null) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < dataTypes.length; i++) {
+                dataTypes[i].setSqlValue(decorate(values[i]), i + 1, statement);
+            }
+            statement.addBatch();
+            tableRows++;
+            if (++pendingRows == batchSize) {
+                flush();
+            }
+        } catch (SQLException e) {
+            throw new DataSetException("Failed to insert row " + tableRows + " into " + tableName, e);
+        }
+    }
+
+    public void endTable() throws DataSetException {
+        if (statement == null) {
+            return;
+        }
+
+        try {
+            flush();
+            LOGGER.debug("inserted {} rows into {}", tableRows, tableName);
+        } catch (SQLException e) {
+            throw new DataSetException("Failed to insert rows into " + tableName, e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Releases the current statement, when consuming has been interrupted
+     */
+    public void close() {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOGGER.debug("Could not close statement", e);
+            }
+            statement = null;
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (pendingRows > 0) {
+            statement.executeBatch();
+            pendingRows = 0;
+        }
+    }
+
+    private Object decorate(Object value) {
+        if (value == ITable.NO_VALUE) {
+            return null;
+        }
+        if (value instanceof String && !replacements.isEmpty()) {
+            String string = (String) value;
+            for (Map.Entry<String, String> replacement : replacements.entrySet()) {
+                string = StringUtils.replace(string, replacement.getKey(), replacement.getValue());
+            }
+            return string;
+        }
+        return value;
+    }
+}
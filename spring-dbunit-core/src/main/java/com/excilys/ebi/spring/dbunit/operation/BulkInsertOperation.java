@@ -0,0 +1,59 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation;
+
+import java.sql.SQLException;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.operation.DatabaseOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.excilys.ebi.spring.dbunit.operation.bulk.BulkLoader;
+import com.excilys.ebi.spring.dbunit.operation.bulk.BulkTable;
+
+/**
+ * Inserts the tables of the dataset, in order, with the
+ * {@link BulkLoader bulk load path} of the database dialect instead of one
+ * statement per row.
+ */
+public class BulkInsertOperation extends DatabaseOperation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkInsertOperation.class);
+
+    private final BulkLoader bulkLoader;
+
+    public BulkInsertOperation(BulkLoader bulkLoader) {
+        this.bulkLoader = bulkLoader;
+    }
+
+    @Override
+    public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+
+        IDataSet databaseDataSet = connection.createDataSet();
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next()) {
+            ITable table = iterator.getTable();
+            BulkTable bulkTable = new BulkTable(connection, table, databaseDataSet.getTableMetaData(table.getTableMetaData().getTableName()));
+            int rows = bulkLoader.load(connection, bulkTable);
+            LOGGER.debug("bulk loaded {} rows into {}", rows, bulkTable.getName());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect;
+
+/**
+ * Disables the foreign key checks of the database, the session or the given
+ * tables with the dialect SQL, and enables them again.
+ */
+public class ForeignKeyChecks {
+
+    private final DatabaseDialect dialect;
+
+    private ForeignKeyChecks(DatabaseDialect dialect) {
+        this.dialect = dialect;
+    }
+
+    /**
+     * @param configuration the configuration
+     * @return the checks to disable, or null if the configuration doesn't ask
+     *         for it or the database can't
+     */
+    public static ForeignKeyChecks forConfiguration(DataSetConfiguration configuration) {
+        DatabaseDialect dialect = configuration.getDbType().getDialect();
+        if (!configuration.isDisableForeignKeyChecks() || !dialect.isForeignKeyChecksPerTable() && dialect.getDisableForeignKeyChecksSql() == null) {
+            return null;
+        }
+        return new ForeignKeyChecks(dialect);
+    }
+
+    /**
+     * @return true if the checks are disabled for a connection only, false if
+     *         they are for all of them
+     */
+    public boolean isPerSession() {
+        return dialect.isForeignKeyChecksPerSession();
+    }
+
+    /**
+     * @param connection the connection
+     * @return true if the session has the rights to disable the checks
+     */
+    public boolean isAllowed(Connection connection) throws SQLException {
+        String sql = dialect.getForeignKeyChecksDisablingAllowedSql();
+        if (sql == null) {
+            return true;
+        }
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery(sql);
+            try {
+                return resultSet.next() && resultSet.getBoolean(1);
+            } finally {
+                resultSet.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return true if the checks are disabled for the given tables only
+     */
+    public boolean isPerTable() {
+        return dialect.isForeignKeyChecksPerTable();
+    }
+
+    /**
+     * @param connection the connection
+     * @param tables the qualified tables, only used if {@link #isPerTable()}
+     */
+    public void disable(Connection connection, String[] tables) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            if (isPerTable()) {
+                for (String table : tables) {
+                    statement.execute(dialect.getDisableForeignKeyChecksSql(table));
+                }
+            } else {
+                statement.execute(dialect.getDisableForeignKeyChecksSql());
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @param connection the connection
+     * @param tables the qualified tables, only used if {@link #isPerTable()}
+     */
+    public void enable(Connection connection, String[] tables) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            if (isPerTable()) {
+                for (String table : tables) {
+                    statement.execute(dialect.getEnableForeignKeyChecksSql(table));
+                }
+            } else {
+                statement.execute(dialect.getEnableForeignKeyChecksSql());
+            }
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation;
+
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getDatabaseConnection;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.releaseDatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.FilteredDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.operation.DatabaseOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
+import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.database.ForeignKeyGraph;
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetricsRecorder;
+import com.excilys.ebi.spring.dbunit.metrics.Step;
+import com.excilys.ebi.spring.dbunit.tracking.DirtyTableTracker;
+
+/**
+ * Executes operations table by table on several connections. The tables are
+ * grouped in waves after their {@link ForeignKeyGraph foreign keys}: a
+ * table only references tables of the previous waves, so the tables of a
+ * wave are processed at the same time. Inserting operations go through the
+ * waves in order, deleting ones in reverse order.
+ * <p>
+ * Each worker borrows its own connection from the DataSource, that has to
+ * provide <code>parallelism</code> connections besides the test one. As the
+ * workers commit their own work, this only applies to setups that don't run
+ * inside a transaction.
+ * <p>
+ * When the foreign key checks are disabled, all the tables are processed at
+ * the same time, and the workers disable the checks of their own connection if
+ * the database does it per session.
+ */
+public class ParallelOperation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelOperation.class);
+
+    private final DataSource dataSource;
+
+    private final DataSetConfiguration configuration;
+
+    private final DataSetMetricsRecorder metrics;
+
+    private ForeignKeyChecks foreignKeyChecks;
+
+    /**
+     * The tracker suspended by the calling thread, if any
+     */
+    private DirtyTableTracker suspendedTracker;
+
+    public ParallelOperation(DataSource dataSource, DataSetConfiguration configuration, DataSetMetricsRecorder metrics) {
+        this.dataSource = dataSource;
+        this.configuration = configuration;
+        this.metrics = metrics;
+        this.foreignKeyChecks = ForeignKeyChecks.forConfiguration(configuration);
+    }
+
+    /**
+     * @param connection the connection used for reading the metadata
+     * @param operations the operations
+     * @param dataSet the dataset
+     * @return the table names in insertion order, or null if nothing has been
+     *         executed because the tables have cyclic dependencies, and have to
+     *         be populated on a single connection
+     */
+    public String[] execute(IDatabaseConnection connection, DBOperation[] operations, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+
+        DirtyTableTracker tracker = DirtyTableTracker.getTracker(connection.getConnection());
+        // the workers' threads have to skip the recording as well
+        suspendedTracker = tracker != null && tracker.isSuspended() ? tracker : null;
+
+        if (foreignKeyChecks != null && !foreignKeyChecks.isAllowed(connection.getConnection())) {
+            // the populator has kept them too
+            foreignKeyChecks = null;
+        }
+
+        List<List<String>> waves;
+        if (foreignKeyChecks != null) {
+            // without checks, any order will do
+            waves = Collections.singletonList(Arrays.asList(dataSet.getTableNames()));
+        } else {
+            waves = ForeignKeyGraph.getInstance(connection).getWaves(connection, dataSet.getTableNames());
+        }
+        if (waves == null) {
+            LOGGER.info("Tables have cyclic foreign keys, populating them on a single connection");
+            return null;
+        }
+        LOGGER.debug("populating {} tables in {} waves", dataSet.getTableNames().length, waves.size());
+
+        for (DBOperation operation : operations) {
+            switch (operation) {
+            case NONE:
+                break;
+            case DELETE:
+            case DELETE_ALL:
+            case TRUNCATE_TABLE:
+                execute(operation, waves, true, dataSet);
+                break;
+            case CLEAN_INSERT:
+                execute(DBOperation.DELETE_ALL, waves, true, dataSet);
+                execute(DBOperation.INSERT, waves, false, dataSet);
+                break;
+            case BULK_CLEAN_INSERT:
+                execute(DBOperation.DELETE_ALL, waves, true, dataSet);
+                execute(DBOperation.BULK_INSERT, waves, false, dataSet);
+                break;
+            case TRUNCATE_ALL:
+                // already a single statement or batch
+                operation.getDatabaseOperation(configuration.getDbType()).execute(connection, dataSet);
+                break;
+            default:
+                execute(operation, waves, false, dataSet);
+            }
+        }
+
+        List<String> tableNames = new ArrayList<String>();
+        for (List<String> wave : waves) {
+            tableNames.addAll(wave);
+        }
+        return tableNames.toArray(new String[tableNames.size()]);
+    }
+
+    private void execute(DBOperation operation, List<List<String>> waves, boolean reverse, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+        List<List<String>> orderedWaves = new ArrayList<List<String>>(waves);
+        if (reverse) {
+            Collections.reverse(orderedWaves);
+        }
+        for (List<String> wave : orderedWaves) {
+            executeWave(operation, wave, dataSet);
+        }
+    }
+
+    private void executeWave(final DBOperation operation, List<String> wave, final IDataSet dataSet) throws DatabaseUnitException, SQLException {
+
+        final Queue<String> tables = new ConcurrentLinkedQueue<String>(wave);
+        int workers = Math.min(configuration.getParallelism(), wave.size());
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                futures.add(PopulatorExecutorHolder.EXECUTOR.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        populate(operation, tables, dataSet);
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseUnitException("Interrupted while populating tables", e);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DatabaseUnitException) {
+                throw (DatabaseUnitException) cause;
+            } else if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DatabaseUnitException(cause);
+
+        } finally {
+            // stops the other workers after the first failure
+            tables.clear();
+            for (Future<Void> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Worker: takes tables from the queue until it's empty
+     */
+    private void populate(DBOperation operation, Queue<String> tables, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+
+        if (suspendedTracker == null) {
+            populateTables(operation, tables, dataSet);
+            return;
+        }
+        suspendedTracker.suspend();
+        try {
+            populateTables(operation, tables, dataSet);
+        } finally {
+            suspendedTracker.resume();
+        }
+    }
+
+    private void populateTables(DBOperation operation, Queue<String> tables, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+
+        Connection jdbcConnection = dataSource.getConnection();
+        boolean populated = false;
+        boolean checksDisabled = false;
+        try {
+            if (foreignKeyChecks != null && foreignKeyChecks.isPerSession()) {
+                foreignKeyChecks.disable(jdbcConnection, null);
+                checksDisabled = true;
+            }
+            IDatabaseConnection connection = getDatabaseConnection(dataSource, jdbcConnection, configuration.getSchema(), configuration);
+            try {
+                DatabaseOperation databaseOperation = operation.getDatabaseOperation(configuration.getDbType());
+                for (String table = tables.poll(); table != null; table = tables.poll()) {
+                    long start = System.nanoTime();
+                    databaseOperation.execute(connection, new FilteredDataSet(new String[] { table }, dataSet));
+                    metrics.record(Step.EXECUTE, table, start, -1);
+                }
+            } finally {
+                releaseDatabaseConnection(connection);
+            }
+            if (!jdbcConnection.getAutoCommit()) {
+                jdbcConnection.commit();
+            }
+            populated = true;
+
+        } finally {
+            if (!populated) {
+                rollbackQuietly(jdbcConnection);
+            }
+            try {
+                if (checksDisabled) {
+                    // pooled connections must not keep the session setting
+                    foreignKeyChecks.enable(jdbcConnection, null);
+                }
+            } finally {
+                jdbcConnection.close();
+            }
+        }
+    }
+
+    private void rollbackQuietly(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            LOGGER.debug("Could not roll back", e);
+        }
+    }
+
+    /**
+     * Shared pool for the workers, threads are created on demand and are
+     * daemons so they never prevent the JVM from exiting.
+     */
+    private static class PopulatorExecutorHolder {
+
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "spring-dbunit-populator-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
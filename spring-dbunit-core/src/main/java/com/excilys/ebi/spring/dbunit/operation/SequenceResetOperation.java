@@ -0,0 +1,131 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation;
+
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getQualifiedName;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableMetaData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect;
+
+/**
+ * Restarts the identity columns of the loaded tables after their greatest
+ * value. Identity columns are found in the table metadata, that is cached
+ * along with the connection when <code>cacheMetadata</code> is set. The
+ * greatest values of all the tables are read with a single query, and the
+ * identities restarted with a single JDBC batch. Sequences that no identity
+ * column is bound to are left as they are.
+ */
+public class SequenceResetOperation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SequenceResetOperation.class);
+
+    private final DatabaseDialect dialect;
+
+    public SequenceResetOperation(DatabaseDialect dialect) {
+        this.dialect = dialect;
+    }
+
+    /**
+     * @param connection the connection
+     * @param tableNames the loaded tables
+     */
+    public void execute(IDatabaseConnection connection, String[] tableNames) throws DataSetException, SQLException {
+
+        List<String> tables = new ArrayList<String>();
+        List<String> columns = new ArrayList<String>();
+        IDataSet databaseDataSet = connection.createDataSet();
+        // a table may be declared by several files
+        for (String tableName : new LinkedHashSet<String>(Arrays.asList(tableNames))) {
+            ITableMetaData metaData = databaseDataSet.getTableMetaData(tableName);
+            for (Column column : metaData.getColumns()) {
+                if (column.getAutoIncrement() == Column.AutoIncrement.YES) {
+                    tables.add(getQualifiedName(connection.getSchema(), metaData.getTableName(), connection));
+                    columns.add(getQualifiedName(null, column.getColumnName(), connection));
+                }
+            }
+        }
+
+        if (tables.isEmpty()) {
+            LOGGER.debug("no identity column to reset");
+            return;
+        }
+
+        long[] nextValues = getNextValues(connection, tables, columns);
+
+        Statement statement = connection.getConnection().createStatement();
+        try {
+            for (int i = 0; i < tables.size(); i++) {
+                String restartIdentitySql = dialect.getRestartIdentitySql(tables.get(i), columns.get(i), nextValues[i]);
+                if (restartIdentitySql == null) {
+                    LOGGER.warn("Identity columns can't be reset on this database");
+                    return;
+                }
+                statement.addBatch(restartIdentitySql);
+            }
+            statement.executeBatch();
+            LOGGER.debug("reset {} identity columns", tables.size());
+
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Each row of the union is numbered, as its order is not guaranteed
+     */
+    private long[] getNextValues(IDatabaseConnection connection, List<String> tables, List<String> columns) throws SQLException {
+
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < tables.size(); i++) {
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT ").append(i).append(", MAX(").append(columns.get(i)).append(") FROM ").append(tables.get(i));
+        }
+
+        long[] nextValues = new long[tables.size()];
+        Statement statement = connection.getConnection().createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery(sql.toString());
+            try {
+                while (resultSet.next()) {
+                    // an empty table has a null max, and restarts at 1
+                    nextValues[resultSet.getInt(1)] = resultSet.getLong(2) + 1;
+                }
+            } finally {
+                resultSet.close();
+            }
+        } finally {
+            statement.close();
+        }
+        return nextValues;
+    }
+}
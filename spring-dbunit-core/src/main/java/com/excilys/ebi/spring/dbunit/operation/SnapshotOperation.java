@@ -0,0 +1,314 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation;
+
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getDataSetFingerprint;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getDataSetKey;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getQualifiedName;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableMetaData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
+import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect;
+
+/**
+ * Setup fast path: the first time a dataset is loaded, the content of its
+ * tables is copied into snapshot tables, and the following setups restore the
+ * tables from these copies with plain SQL, instead of parsing and inserting the
+ * dataset again.
+ * <p>
+ * Snapshots are shared process-wide and keyed by database URL, user, schema
+ * and everything in the configuration that drives the loaded content. A
+ * snapshot is taken again when the data files have been modified since. A
+ * dataset whose snapshot fails to be taken or restored, for example because
+ * of identity columns that can't be inserted into, is loaded normally from
+ * then on. Snapshot tables are named after a number given to each key, so
+ * that a new snapshot of the same dataset replaces them, and they are
+ * dropped by {@link #clear()} and when the JVM exits.
+ * <p>
+ * Only setups whose result doesn't depend on the existing rows can be
+ * snapshotted, i.e. the ones starting with {@link DBOperation#CLEAN_INSERT},
+ * {@link DBOperation#BULK_CLEAN_INSERT}, {@link DBOperation#DELETE_ALL},
+ * {@link DBOperation#TRUNCATE_TABLE} or {@link DBOperation#TRUNCATE_ALL}.
+ */
+public class SnapshotOperation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotOperation.class);
+
+    private static final ConcurrentMap<String, Snapshot> SNAPSHOTS = new ConcurrentHashMap<String, Snapshot>();
+
+    private static final ConcurrentMap<String, Integer> SNAPSHOT_NUMBERS = new ConcurrentHashMap<String, Integer>();
+
+    private static final AtomicInteger NEXT_SNAPSHOT_NUMBER = new AtomicInteger();
+
+    /**
+     * The keys of the datasets that can't be snapshotted
+     */
+    private static final Set<String> UNUSABLE = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("spring-dbunit-snapshots-cleaner") {
+            @Override
+            public void run() {
+                clear();
+            }
+        });
+    }
+
+    private static final class Snapshot {
+
+        private final String fingerprint;
+        private final DataSource dataSource;
+        private final DatabaseDialect dialect;
+        private final String[] tableNames;
+        private final String[] tables;
+        private final String[] snapshotTables;
+        private final String[][] columns;
+
+        private Snapshot(String fingerprint, DataSource dataSource, DatabaseDialect dialect, String[] tableNames, String[] tables, String[] snapshotTables,
+                String[][] columns) {
+            this.fingerprint = fingerprint;
+            this.dataSource = dataSource;
+            this.dialect = dialect;
+            this.tableNames = tableNames;
+            this.tables = tables;
+            this.snapshotTables = snapshotTables;
+            this.columns = columns;
+        }
+    }
+
+    private final DatabaseDialect dialect;
+
+    private final DataSource dataSource;
+
+    private final String key;
+
+    private final String fingerprint;
+
+    /**
+     * @param configuration the configuration
+     * @param dataSource the DataSource the connection comes from, used to drop
+     *            the snapshot tables later on
+     * @param connection the connection
+     */
+    public SnapshotOperation(DataSetConfiguration configuration, DataSource dataSource, IDatabaseConnection connection) throws SQLException, IOException {
+        this.dialect = configuration.getDbType().getDialect();
+        this.dataSource = dataSource;
+        this.key = getDataSetKey(configuration, connection);
+        this.fingerprint = getDataSetFingerprint(configuration, connection);
+    }
+
+    public static boolean supports(DBOperation[] operations) {
+        boolean cleaned = false;
+        for (DBOperation operation : operations) {
+            switch (operation) {
+            case NONE:
+                break;
+            case CLEAN_INSERT:
+            case BULK_CLEAN_INSERT:
+            case DELETE_ALL:
+            case TRUNCATE_TABLE:
+            case TRUNCATE_ALL:
+                cleaned = true;
+                break;
+            case INSERT:
+            case BULK_INSERT:
+                if (!cleaned) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+            }
+        }
+        return cleaned;
+    }
+
+    /**
+     * Forgets all the snapshots and drops their tables, so that the next
+     * setups load their dataset again, and try to snapshot it
+     */
+    public static void clear() {
+        UNUSABLE.clear();
+        for (Iterator<Snapshot> it = SNAPSHOTS.values().iterator(); it.hasNext();) {
+            Snapshot snapshot = it.next();
+            it.remove();
+            drop(snapshot);
+        }
+    }
+
+    private static void drop(Snapshot snapshot) {
+        try {
+            Connection connection = snapshot.dataSource.getConnection();
+            try {
+                dropQuietly(connection, snapshot.dialect, snapshot.snapshotTables);
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            // typically the database has already been shut down
+            LOGGER.debug("Could not drop snapshot tables " + Arrays.toString(snapshot.snapshotTables), e);
+        }
+    }
+
+    /**
+     * @param connection the connection
+     * @return the names of the dataset tables if they could be restored from a
+     *         snapshot, null if the dataset has to be loaded
+     */
+    public String[] restore(IDatabaseConnection connection) throws SQLException {
+
+        Snapshot snapshot = SNAPSHOTS.get(key);
+        if (snapshot == null) {
+            return null;
+        } else if (!snapshot.fingerprint.equals(fingerprint)) {
+            LOGGER.debug("Data files have changed since the snapshot was taken, dataset will be loaded again");
+            return null;
+        }
+
+        Statement statement = connection.getConnection().createStatement();
+        try {
+            for (int i = snapshot.tables.length - 1; i >= 0; i--) {
+                statement.addBatch("DELETE FROM " + snapshot.tables[i]);
+            }
+            for (int i = 0; i < snapshot.tables.length; i++) {
+                statement.addBatch(dialect.getInsertFromSelectSql(snapshot.tables[i], snapshot.snapshotTables[i], snapshot.columns[i]));
+            }
+            statement.executeBatch();
+            LOGGER.debug("restored {} tables from snapshot", snapshot.tables.length);
+            return snapshot.tableNames;
+
+        } catch (SQLException e) {
+            LOGGER.warn("Could not restore snapshot, dataset will be loaded without snapshots from now on", e);
+            UNUSABLE.add(key);
+            if (SNAPSHOTS.remove(key, snapshot)) {
+                dropQuietly(connection.getConnection(), dialect, snapshot.snapshotTables);
+            }
+            return null;
+
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Copies the given tables, that have just been loaded, into snapshot
+     * tables. If that fails, the tables created so far are dropped and the
+     * dataset isn't snapshotted anymore.
+     * 
+     * @param connection the connection
+     * @param tableNames the dataset tables, in insertion order
+     */
+    public void take(IDatabaseConnection connection, String[] tableNames) throws SQLException, DataSetException {
+
+        if (UNUSABLE.contains(key)) {
+            return;
+        }
+
+        IDataSet databaseDataSet = connection.createDataSet();
+        String schema = connection.getSchema();
+        // same names for the same key, so that a new snapshot replaces the tables of the previous one
+        String prefix = "SDBU" + getSnapshotNumber(key) + "_";
+
+        String[] tables = new String[tableNames.length];
+        String[] snapshotTables = new String[tableNames.length];
+        String[][] columns = new String[tableNames.length][];
+
+        Connection jdbcConnection = connection.getConnection();
+        for (int i = 0; i < tableNames.length; i++) {
+            ITableMetaData metaData = databaseDataSet.getTableMetaData(tableNames[i]);
+            tables[i] = getQualifiedName(schema, metaData.getTableName(), connection);
+            snapshotTables[i] = getQualifiedName(schema, prefix + i, connection);
+            Column[] tableColumns = metaData.getColumns();
+            columns[i] = new String[tableColumns.length];
+            for (int j = 0; j < tableColumns.length; j++) {
+                columns[i][j] = getQualifiedName(null, tableColumns[j].getColumnName(), connection);
+            }
+
+            dropQuietly(jdbcConnection, dialect, snapshotTables[i]);
+            Statement statement = jdbcConnection.createStatement();
+            boolean created = false;
+            try {
+                statement.execute(dialect.getCreateTableAsSelectSql(snapshotTables[i], tables[i]));
+                created = true;
+            } finally {
+                statement.close();
+                if (!created) {
+                    UNUSABLE.add(key);
+                    dropQuietly(jdbcConnection, dialect, Arrays.copyOf(snapshotTables, i));
+                }
+            }
+        }
+
+        Snapshot previous = SNAPSHOTS.put(key, new Snapshot(fingerprint, dataSource, dialect, tableNames, tables, snapshotTables, columns));
+        if (previous != null) {
+            // the tables of the new snapshot have already replaced the old ones
+            Set<String> orphans = new HashSet<String>(Arrays.asList(previous.snapshotTables));
+            orphans.removeAll(Arrays.asList(snapshotTables));
+            dropQuietly(jdbcConnection, dialect, orphans.toArray(new String[orphans.size()]));
+        }
+        LOGGER.debug("took snapshot of {} tables", tableNames.length);
+    }
+
+    private static int getSnapshotNumber(String key) {
+        Integer number = SNAPSHOT_NUMBERS.get(key);
+        if (number == null) {
+            Integer newNumber = NEXT_SNAPSHOT_NUMBER.getAndIncrement();
+            number = SNAPSHOT_NUMBERS.putIfAbsent(key, newNumber);
+            if (number == null) {
+                number = newNumber;
+            }
+        }
+        return number;
+    }
+
+    private static void dropQuietly(Connection connection, DatabaseDialect dialect, String... tables) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            for (String table : tables) {
+                try {
+                    statement.execute(dialect.getDropTableSql(table));
+                } catch (SQLException e) {
+                    // most likely doesn't exist
+                }
+            }
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.springframework.core.io.Resource;
+
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
+import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.dataset.stream.PipedDataSetProducer;
+
+/**
+ * Executes operations by streaming the dataset files: rows are inserted while
+ * they're being parsed and the whole dataset is never held in memory.
+ * <p>
+ * Only the operations that don't need to look up existing rows are supported:
+ * {@link DBOperation#INSERT}, {@link DBOperation#CLEAN_INSERT},
+ * {@link DBOperation#DELETE_ALL}, {@link DBOperation#TRUNCATE_TABLE},
+ * {@link DBOperation#TRUNCATE_ALL} and {@link DBOperation#NONE}. The deleting
+ * ones first go through the files once to collect the table names.
+ */
+public class StreamingOperation {
+
+    private final DataSetConfiguration configuration;
+
+    private final Map<String, String> replacements;
+
+    private List<Resource> resources;
+
+    private IDataSet tables;
+
+    public StreamingOperation(DataSetConfiguration configuration, Map<String, String> replacements) {
+        this.configuration = configuration;
+        this.replacements = replacements;
+    }
+
+    public static boolean supports(DBOperation[] operations) {
+        for (DBOperation operation : operations) {
+            switch (operation) {
+            case NONE:
+            case INSERT:
+            case CLEAN_INSERT:
+            case DELETE_ALL:
+            case TRUNCATE_TABLE:
+            case TRUNCATE_ALL:
+                break;
+            default:
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param connection the connection
+     * @param operations operations that {@link #supports(DBOperation[])}
+     */
+    public void execute(IDatabaseConnection connection, DBOperation[] operations) throws DatabaseUnitException, SQLException, IOException {
+
+        for (DBOperation operation : operations) {
+            switch (operation) {
+            case NONE:
+                break;
+            case DELETE_ALL:
+            case TRUNCATE_TABLE:
+            case TRUNCATE_ALL:
+                operation.getDatabaseOperation(configuration.getDbType()).execute(connection, getTables());
+                break;
+            case CLEAN_INSERT:
+                DBOperation.DELETE_ALL.getDatabaseOperation().execute(connection, getTables());
+                insert(connection);
+                break;
+            case INSERT:
+                insert(connection);
+                break;
+            default:
+                // the populator only streams the operations accepted by supports()
+                throw new DatabaseUnitException("Streaming was requested for operation " + operation + ", which can't be streamed");
+            }
+        }
+    }
+
+    /**
+     * @return the names of the tables of all the files, in declaration order
+     */
+    public String[] getTableNames() throws DataSetException, IOException {
+        return getTables().getTableNames();
+    }
+
+    private List<Resource> getResources() throws IOException {
+        if (resources == null) {
+            resources = DataSetFormat.resolveResources(configuration.getDataSetResourceLocations());
+        }
+        return resources;
+    }
+
+    private void insert(IDatabaseConnection connection) throws DataSetException, IOException {
+        for (Resource resource : getResources()) {
+            BatchInsertConsumer consumer = new BatchInsertConsumer(connection, configuration.getBatchSize(), replacements);
+            IDataSetProducer producer = new PipedDataSetProducer(configuration.getFormat().producer(resource, configuration.getFormatOptions()));
+            producer.setConsumer(consumer);
+            try {
+                producer.produce();
+            } finally {
+                consumer.close();
+            }
+        }
+    }
+
+    /**
+     * @return a dataset with the tables of all the files, without any row
+     */
+    private IDataSet getTables() throws DataSetException, IOException {
+        if (tables == null) {
+            TableNameCollector collector = new TableNameCollector(configuration.getFormatOptions().isCaseSensitiveTableNames());
+            for (Resource resource : getResources()) {
+                IDataSetProducer producer = configuration.getFormat().producer(resource, configuration.getFormatOptions());
+                producer.setConsumer(collector);
+                producer.produce();
+            }
+
+            DefaultDataSet dataSet = new DefaultDataSet(configuration.getFormatOptions().isCaseSensitiveTableNames());
+            for (String tableName : collector.tableNames.values()) {
+                dataSet.addTable(new DefaultTable(tableName));
+            }
+            tables = dataSet;
+        }
+        return tables;
+    }
+
+    private static class TableNameCollector extends DefaultConsumer {
+
+        private final boolean caseSensitiveTableNames;
+
+        private final Map<String, String> tableNames = new LinkedHashMap<String, String>();
+
+        private TableNameCollector(boolean caseSensitiveTableNames) {
+            this.caseSensitiveTableNames = caseSensitiveTableNames;
+        }
+
+        @Override
+        public void startTable(ITableMetaData metaData) throws DataSetException {
+            String tableName = metaData.getTableName();
+            String key = caseSensitiveTableNames ? tableName : tableName.toUpperCase(Locale.ENGLISH);
+            if (!tableNames.containsKey(key)) {
+                tableNames.put(key, tableName);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation;
+
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getQualifiedName;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.operation.DatabaseOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect;
+
+/**
+ * Empties all the tables of the dataset with the cheapest statements of the
+ * database, in that order of preference:
+ * <ul>
+ * <li>a single multi-table <code>TRUNCATE</code>, for PostgreSQL</li>
+ * <li>a <code>TRUNCATE</code> per table with the foreign key checks of the
+ * session disabled, and then restored to their previous state, for MySQL</li>
+ * <li>a single JDBC batch of <code>DELETE</code>s, referencing tables first,
+ * elsewhere</li>
+ * </ul>
+ */
+public class TruncateAllOperation extends DatabaseOperation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TruncateAllOperation.class);
+
+    private final DatabaseDialect dialect;
+
+    public TruncateAllOperation(DatabaseDialect dialect) {
+        this.dialect = dialect;
+    }
+
+    @Override
+    public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+
+        List<String> tables = getTables(connection, dataSet);
+        if (tables.isEmpty()) {
+            return;
+        }
+
+        String[] tableArray = tables.toArray(new String[tables.size()]);
+        String truncateTablesSql = dialect.getTruncateTablesSql(tableArray);
+        Connection jdbcConnection = connection.getConnection();
+        Statement statement = jdbcConnection.createStatement();
+        try {
+            if (truncateTablesSql != null) {
+                statement.execute(truncateTablesSql);
+
+            } else if (dialect.isForeignKeyChecksPerSession() && dialect.getDisableForeignKeyChecksSql() != null) {
+                // the populator may have disabled them already for the whole load
+                boolean checksEnabled = isForeignKeyChecksEnabled(statement);
+                if (checksEnabled) {
+                    statement.execute(dialect.getDisableForeignKeyChecksSql());
+                }
+                try {
+                    for (String table : tables) {
+                        statement.execute(dialect.getTruncateTableSql(table));
+                    }
+                } finally {
+                    if (checksEnabled) {
+                        statement.execute(dialect.getEnableForeignKeyChecksSql());
+                    }
+                }
+
+            } else {
+                // referencing tables come after the ones they reference
+                List<String> reversedTables = new ArrayList<String>(tables);
+                Collections.reverse(reversedTables);
+                for (String table : reversedTables) {
+                    statement.addBatch("DELETE FROM " + table);
+                }
+                statement.executeBatch();
+            }
+            LOGGER.debug("emptied {} tables", tables.size());
+
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return the state of the session foreign key checks, assumed enabled
+     *         if the database can't tell
+     */
+    private boolean isForeignKeyChecksEnabled(Statement statement) throws SQLException {
+        String sql = dialect.getForeignKeyChecksEnabledSql();
+        if (sql == null) {
+            return true;
+        }
+        ResultSet resultSet = statement.executeQuery(sql);
+        try {
+            return !resultSet.next() || resultSet.getBoolean(1);
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    /**
+     * @return the qualified and escaped names of the dataset tables, in
+     *         dataset order
+     */
+    private List<String> getTables(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+        IDataSet databaseDataSet = connection.createDataSet();
+        Set<String> tables = new LinkedHashSet<String>();
+        for (String tableName : dataSet.getTableNames()) {
+            String databaseName = databaseDataSet.getTableMetaData(tableName).getTableName();
+            tables.add(getQualifiedName(connection.getSchema(), databaseName, connection));
+        }
+        return new ArrayList<String>(tables);
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation.bulk;
+
+import java.sql.SQLException;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+
+/**
+ * Inserts all the rows of a table with a single, database specific, load path.
+ * Loaders are provided by the {@link com.excilys.ebi.spring.dbunit.dialect.DatabaseDialect dialects}.
+ */
+public interface BulkLoader {
+
+    /**
+     * @param connection the connection
+     * @param table the rows to insert
+     * @return the number of inserted rows
+     */
+    int load(IDatabaseConnection connection, BulkTable table) throws SQLException, DataSetException;
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation.bulk;
+
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getQualifiedName;
+
+import java.sql.Types;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * The rows of a dataset table, read once and in order, with their values
+ * typed after the database columns.
+ * <p>
+ * Only the columns of the dataset are inserted, and values that are not set
+ * for a row are inserted as null.
+ */
+public class BulkTable {
+
+    private final ITable table;
+
+    private final String name;
+
+    private final String[] columnNames;
+
+    private final String[] sourceColumnNames;
+
+    private final DataType[] dataTypes;
+
+    private int row;
+
+    public BulkTable(IDatabaseConnection connection, ITable table, ITableMetaData databaseMetaData) throws DataSetException {
+
+        this.table = table;
+        this.name = getQualifiedName(connection.getSchema(), databaseMetaData.getTableName(), connection);
+
+        Column[] databaseColumns = databaseMetaData.getColumns();
+        Column[] columns = table.getTableMetaData().getColumns();
+        columnNames = new String[columns.length];
+        sourceColumnNames = new String[columns.length];
+        dataTypes = new DataType[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Column databaseColumn = databaseColumns[databaseMetaData.getColumnIndex(columns[i].getColumnName())];
+            columnNames[i] = getQualifiedName(null, databaseColumn.getColumnName(), connection);
+            sourceColumnNames[i] = columns[i].getColumnName();
+            dataTypes[i] = databaseColumn.getDataType();
+        }
+    }
+
+    /**
+     * @return the qualified and escaped table name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the escaped names of the inserted columns
+     */
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public DataType[] getDataTypes() {
+        return dataTypes;
+    }
+
+    /**
+     * @return true if one of the columns holds binary content, that text based
+     *         load paths can't carry
+     */
+    public boolean hasBinaryColumn() {
+        for (DataType dataType : dataTypes) {
+            switch (dataType.getSqlType()) {
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return true;
+            default:
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the values of the next row, or null once all the rows have been
+     *         read
+     */
+    public Object[] nextRow() throws DataSetException {
+        if (columnNames.length == 0) {
+            return null;
+        }
+
+        Object[] values = new Object[columnNames.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                Object value = table.getValue(row, sourceColumnNames[i]);
+                values[i] = value == ITable.NO_VALUE ? null : dataTypes[i].typeCast(value);
+            }
+        } catch (RowOutOfBoundsException e) {
+            // end of table, some tables can't tell their row count up front
+            return null;
+        }
+        row++;
+        return values;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation.bulk;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * PostgreSQL load path: <code>COPY ... FROM STDIN</code> through the
+ * <code>CopyManager</code> of the PostgreSQL driver.
+ */
+public class CopyBulkLoader extends TextBulkLoader {
+
+    private static final Class<?> PG_CONNECTION_CLASS = getDriverClass("org.postgresql.PGConnection");
+
+    @Override
+    protected boolean isAvailable(Connection connection) throws SQLException {
+        return PG_CONNECTION_CLASS != null && connection.isWrapperFor(PG_CONNECTION_CLASS);
+    }
+
+    @Override
+    protected void load(Connection connection, BulkTable table, String rows) throws SQLException {
+        String sql = "COPY " + table.getName() + " (" + StringUtils.arrayToDelimitedString(table.getColumnNames(), ", ") + ") FROM STDIN";
+        Object copyManager = invoke(PG_CONNECTION_CLASS, connection.unwrap(PG_CONNECTION_CLASS), "getCopyAPI", new Class<?>[0]);
+        invoke(copyManager.getClass(), copyManager, "copyIn", new Class<?>[] { String.class, Reader.class }, sql, new StringReader(rows));
+    }
+}
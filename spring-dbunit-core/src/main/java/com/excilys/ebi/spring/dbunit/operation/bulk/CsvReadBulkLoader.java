@@ -0,0 +1,146 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation.bulk;
+
+import static com.excilys.ebi.spring.dbunit.operation.bulk.TextBulkLoader.toText;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+/**
+ * H2 load path: the rows are written to a temporary CSV file, that is inserted
+ * with a single <code>INSERT ... SELECT * FROM CSVREAD(...)</code>.
+ * <p>
+ * <code>CSVREAD</code> requires admin rights. Binary values are written in
+ * hexadecimal, as H2 converts them from strings.
+ * <p>
+ * The file is read by the server, so this is only done for embedded
+ * databases; connections through a TCP or SSL server go through the
+ * {@link JdbcBatchBulkLoader}.
+ */
+public class CsvReadBulkLoader implements BulkLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvReadBulkLoader.class);
+
+    private final BulkLoader fallback = new JdbcBatchBulkLoader();
+
+    @Override
+    public int load(IDatabaseConnection connection, BulkTable table) throws SQLException, DataSetException {
+
+        if (!isEmbedded(connection.getConnection())) {
+            return fallback.load(connection, table);
+        }
+
+        File file;
+        try {
+            file = File.createTempFile("spring-dbunit-", ".csv");
+        } catch (IOException e) {
+            throw new DataSetException("Could not create CSV file for " + table.getName(), e);
+        }
+
+        try {
+            int rows = write(table, file);
+            if (rows > 0) {
+                String sql = "insert into " + table.getName() + " (" + StringUtils.arrayToDelimitedString(table.getColumnNames(), ", ")
+                        + ") select * from CSVREAD('" + file.getAbsolutePath().replace("'", "''") + "', null, 'charset=UTF-8')";
+                Statement statement = connection.getConnection().createStatement();
+                try {
+                    statement.executeUpdate(sql);
+                } finally {
+                    statement.close();
+                }
+            }
+            return rows;
+
+        } finally {
+            if (!file.delete()) {
+                LOGGER.debug("Could not delete {}", file);
+            }
+        }
+    }
+
+    /**
+     * @return true unless connected through a server, that may not see the
+     *         files written here: <code>jdbc:h2:mem:</code>,
+     *         <code>jdbc:h2:file:</code> and the implicit file URLs
+     */
+    private boolean isEmbedded(Connection connection) throws SQLException {
+        String url = connection.getMetaData().getURL();
+        return url != null && !url.startsWith("jdbc:h2:tcp:") && !url.startsWith("jdbc:h2:ssl:");
+    }
+
+    private int write(BulkTable table, File file) throws DataSetException {
+
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            try {
+                // header, only used for naming the CSVREAD columns
+                for (int i = 0; i < table.getColumnNames().length; i++) {
+                    writer.write(i == 0 ? "C1" : ",C" + (i + 1));
+                }
+                writer.write('\n');
+
+                int rows = 0;
+                for (Object[] values = table.nextRow(); values != null; values = table.nextRow()) {
+                    for (int i = 0; i < values.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        // unquoted empty fields are read as null
+                        if (values[i] != null) {
+                            writer.write('"');
+                            writer.write(toCsvText(values[i]).replace("\"", "\"\""));
+                            writer.write('"');
+                        }
+                    }
+                    writer.write('\n');
+                    rows++;
+                }
+                return rows;
+
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new DataSetException("Could not write CSV file for " + table.getName(), e);
+        }
+    }
+
+    private String toCsvText(Object value) {
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        return toText(value);
+    }
+}
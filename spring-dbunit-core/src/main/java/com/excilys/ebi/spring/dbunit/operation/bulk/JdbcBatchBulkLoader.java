@@ -0,0 +1,87 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation.bulk;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.datatype.DataType;
+import org.springframework.util.StringUtils;
+
+/**
+ * Portable load path: a single prepared insert, executed with JDBC batches of
+ * the configured batch size.
+ */
+public class JdbcBatchBulkLoader implements BulkLoader {
+
+    @Override
+    public int load(IDatabaseConnection connection, BulkTable table) throws SQLException, DataSetException {
+
+        int batchSize = getBatchSize(connection);
+        DataType[] dataTypes = table.getDataTypes();
+        PreparedStatement statement = connection.getConnection().prepareStatement(getInsertSql(table, 1));
+        try {
+            int rows = 0;
+            int pendingRows = 0;
+            for (Object[] values = table.nextRow(); values != null; values = table.nextRow()) {
+                for (int i = 0; i < values.length; i++) {
+                    dataTypes[i].setSqlValue(values[i], i + 1, statement);
+                }
+                statement.addBatch();
+                rows++;
+                if (++pendingRows == batchSize) {
+                    statement.executeBatch();
+                    pendingRows = 0;
+                }
+            }
+            if (pendingRows > 0) {
+                statement.executeBatch();
+            }
+            return rows;
+
+        } finally {
+            statement.close();
+        }
+    }
+
+    static int getBatchSize(IDatabaseConnection connection) {
+        Object batchSize = connection.getConfig().getProperty(DatabaseConfig.PROPERTY_BATCH_SIZE);
+        return batchSize instanceof Integer ? Math.max((Integer) batchSize, 1) : 100;
+    }
+
+    /**
+     * @param table the table
+     * @param rows the number of rows inserted by the statement
+     * @return the insert statement, with parameters for the given number of
+     *         rows
+     */
+    static String getInsertSql(BulkTable table, int rows) {
+        String[] columnNames = table.getColumnNames();
+        StringBuilder sql = new StringBuilder("insert into ").append(table.getName()).append(" (");
+        sql.append(StringUtils.arrayToDelimitedString(columnNames, ", ")).append(") values ");
+        for (int row = 0; row < rows; row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int i = 0; i < columnNames.length; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(")");
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation.bulk;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * MySQL load path: <code>LOAD DATA LOCAL INFILE</code>, with the rows handed
+ * to the driver as an in-memory stream instead of a file.
+ * <p>
+ * The server has to accept local infiles (<code>local_infile</code>), and
+ * recent drivers require <code>allowLoadLocalInfile=true</code> on the
+ * connection URL.
+ */
+public class LoadDataBulkLoader extends TextBulkLoader {
+
+    /**
+     * Connector/J 8, then 5
+     */
+    private static final Class<?> MYSQL_CONNECTION_CLASS = getDriverClass("com.mysql.cj.jdbc.JdbcConnection", "com.mysql.jdbc.Connection");
+
+    private static final Class<?> MYSQL_STATEMENT_CLASS = getDriverClass("com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement");
+
+    private static Class<?> getDriverClass(String className, String legacyClassName) {
+        Class<?> driverClass = getDriverClass(className);
+        return driverClass != null ? driverClass : getDriverClass(legacyClassName);
+    }
+
+    @Override
+    protected boolean isAvailable(Connection connection) throws SQLException {
+        return MYSQL_CONNECTION_CLASS != null && MYSQL_STATEMENT_CLASS != null && connection.isWrapperFor(MYSQL_CONNECTION_CLASS);
+    }
+
+    @Override
+    protected void load(Connection connection, BulkTable table, String rows) throws SQLException {
+
+        String sql = "LOAD DATA LOCAL INFILE 'stream' INTO TABLE " + table.getName() + " CHARACTER SET utf8 ("
+                + StringUtils.arrayToDelimitedString(table.getColumnNames(), ", ") + ")";
+
+        Statement statement = connection.createStatement();
+        try {
+            InputStream stream = new ByteArrayInputStream(rows.getBytes("UTF-8"));
+            invoke(MYSQL_STATEMENT_CLASS, statement.unwrap(MYSQL_STATEMENT_CLASS), "setLocalInfileInputStream", new Class<?>[] { InputStream.class }, stream);
+            statement.execute(sql);
+
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+
+        } finally {
+            statement.close();
+        }
+    }
+}
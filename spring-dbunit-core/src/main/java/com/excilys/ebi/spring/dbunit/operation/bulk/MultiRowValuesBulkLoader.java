@@ -0,0 +1,89 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation.bulk;
+
+import static com.excilys.ebi.spring.dbunit.operation.bulk.JdbcBatchBulkLoader.getBatchSize;
+import static com.excilys.ebi.spring.dbunit.operation.bulk.JdbcBatchBulkLoader.getInsertSql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * Inserts up to batch size rows per statement with a multi-row
+ * <code>VALUES</code> clause, for databases that support it.
+ */
+public class MultiRowValuesBulkLoader implements BulkLoader {
+
+    /**
+     * Stay below the bind parameter limits of the drivers
+     */
+    private static final int MAX_PARAMETERS = 2000;
+
+    @Override
+    public int load(IDatabaseConnection connection, BulkTable table) throws SQLException, DataSetException {
+
+        int columnCount = table.getColumnNames().length;
+        int rowsPerStatement = Math.max(1, Math.min(getBatchSize(connection), MAX_PARAMETERS / Math.max(columnCount, 1)));
+
+        PreparedStatement statement = null;
+        try {
+            int rows = 0;
+            List<Object[]> pendingRows = new ArrayList<Object[]>(rowsPerStatement);
+            for (Object[] values = table.nextRow(); values != null; values = table.nextRow()) {
+                pendingRows.add(values);
+                rows++;
+                if (pendingRows.size() == rowsPerStatement) {
+                    if (statement == null) {
+                        statement = connection.getConnection().prepareStatement(getInsertSql(table, rowsPerStatement));
+                    }
+                    execute(statement, table.getDataTypes(), pendingRows);
+                }
+            }
+
+            if (!pendingRows.isEmpty()) {
+                PreparedStatement lastStatement = connection.getConnection().prepareStatement(getInsertSql(table, pendingRows.size()));
+                try {
+                    execute(lastStatement, table.getDataTypes(), pendingRows);
+                } finally {
+                    lastStatement.close();
+                }
+            }
+            return rows;
+
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+
+    private void execute(PreparedStatement statement, DataType[] dataTypes, List<Object[]> rows) throws SQLException, DataSetException {
+        int parameter = 1;
+        for (Object[] values : rows) {
+            for (int i = 0; i < values.length; i++) {
+                dataTypes[i].setSqlValue(values[i], parameter++, statement);
+            }
+        }
+        statement.executeUpdate();
+        rows.clear();
+    }
+}
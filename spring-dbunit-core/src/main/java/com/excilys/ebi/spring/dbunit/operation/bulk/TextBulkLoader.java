@@ -0,0 +1,158 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.operation.bulk;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Base class for the load paths streaming rows to the database as tab
+ * separated text, in the format shared by PostgreSQL <code>COPY</code> and
+ * MySQL <code>LOAD DATA</code>: backslash escapes and <code>\N</code> for
+ * null.
+ * <p>
+ * Rows are sent in chunks, so that a table never has to be held in memory as
+ * a whole. Tables with binary columns, and connections whose driver doesn't
+ * provide the native API, go through the {@link JdbcBatchBulkLoader}.
+ */
+public abstract class TextBulkLoader implements BulkLoader {
+
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final BulkLoader fallback = new JdbcBatchBulkLoader();
+
+    @Override
+    public int load(IDatabaseConnection connection, BulkTable table) throws SQLException, DataSetException {
+
+        if (table.hasBinaryColumn() || !isAvailable(connection.getConnection())) {
+            return fallback.load(connection, table);
+        }
+
+        int rows = 0;
+        StringBuilder chunk = new StringBuilder();
+        for (Object[] values = table.nextRow(); values != null; values = table.nextRow()) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    chunk.append('\t');
+                }
+                appendValue(chunk, values[i]);
+            }
+            chunk.append('\n');
+            rows++;
+            if (chunk.length() >= CHUNK_SIZE) {
+                load(connection.getConnection(), table, chunk.toString());
+                chunk.setLength(0);
+            }
+        }
+        if (chunk.length() > 0) {
+            load(connection.getConnection(), table, chunk.toString());
+        }
+        return rows;
+    }
+
+    /**
+     * @param connection the connection
+     * @return true if the driver of the connection provides the native load API
+     */
+    protected abstract boolean isAvailable(Connection connection) throws SQLException;
+
+    /**
+     * @param connection the connection
+     * @param table the table
+     * @param rows the rows, one per line
+     */
+    protected abstract void load(Connection connection, BulkTable table, String rows) throws SQLException;
+
+    /**
+     * @return the driver type, if present on the classpath
+     */
+    protected static Class<?> getDriverClass(String className) {
+        ClassLoader classLoader = TextBulkLoader.class.getClassLoader();
+        if (!ClassUtils.isPresent(className, classLoader)) {
+            return null;
+        }
+        return ClassUtils.resolveClassName(className, classLoader);
+    }
+
+    /**
+     * Invokes a driver method that can't be linked at compile time
+     * 
+     * @param type the public type declaring the method, as implementations
+     *            are not always public
+     */
+    protected static Object invoke(Class<?> type, Object target, String methodName, Class<?>[] parameterTypes, Object... args) throws SQLException {
+        try {
+            Method method = type.getMethod(methodName, parameterTypes);
+            return method.invoke(target, args);
+
+        } catch (InvocationTargetException e) {
+            if (e.getTargetException() instanceof SQLException) {
+                throw (SQLException) e.getTargetException();
+            }
+            throw new SQLException("Failed to invoke " + methodName, e.getTargetException());
+
+        } catch (Exception e) {
+            throw new SQLException("Failed to invoke " + methodName, e);
+        }
+    }
+
+    /**
+     * @return the text of a value, as parsed by the databases from strings
+     */
+    static String toText(Object value) {
+        if (value instanceof Boolean) {
+            return ((Boolean) value) ? "1" : "0";
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+
+    private static void appendValue(StringBuilder chunk, Object value) {
+        if (value == null) {
+            chunk.append("\\N");
+            return;
+        }
+
+        String text = toText(value);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '\\':
+                chunk.append("\\\\");
+                break;
+            case '\t':
+                chunk.append("\\t");
+                break;
+            case '\n':
+                chunk.append("\\n");
+                break;
+            case '\r':
+                chunk.append("\\r");
+                break;
+            default:
+                chunk.append(c);
+            }
+        }
+    }
+}
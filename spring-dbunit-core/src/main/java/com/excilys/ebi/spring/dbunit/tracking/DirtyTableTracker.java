@@ -0,0 +1,181 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.tracking;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records the tables written since the last dataset load, from the SQL
+ * statements going through a {@link DirtyTableTrackingDataSource}.
+ * <p>
+ * Statements that can't be understood (DDL, stored procedures...) mark the
+ * whole database as dirty. Table names are stored upper-cased and without
+ * their schema.
+ * <p>
+ * Queries are considered read only: tables written by the functions a
+ * <code>SELECT</code> calls are not recorded, and have to be marked with
+ * {@link #markDirty(String)}.
+ */
+public class DirtyTableTracker {
+
+    private static final String NAME_PART = "(?:[\\w$#]+|\"[^\"]+\"|`[^`]+`|\\[[^\\]]+\\])";
+
+    private static final Pattern WRITE = Pattern.compile("^(?:insert\\s+(?:ignore\\s+)?into|replace\\s+into|merge\\s+into|update(?:\\s+only)?"
+            + "|delete\\s+(?:from\\s+)?(?:only\\s+)?|truncate\\s+(?:table\\s+)?(?:only\\s+)?)\\s*(" + NAME_PART + "(?:\\s*\\.\\s*" + NAME_PART + ")*)",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern READ = Pattern.compile("^(?:select|values|set|show|explain|commit|rollback|savepoint|release|begin|start\\s+transaction"
+            + "|call\\s+identity|call\\s+scope_identity)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern LEADING_COMMENTS = Pattern.compile("^(?:\\s+|/\\*.*?\\*/|--[^\\n]*\\n?)+", Pattern.DOTALL);
+
+    private final Set<String> dirtyTables = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Per thread, so that loading a dataset doesn't hide the writes of other
+     * threads
+     */
+    private final ThreadLocal<Integer> suspensions = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
+
+    private volatile boolean allDirty = true;
+
+    private volatile String fingerprint;
+
+    /**
+     * @param connection a connection
+     * @return the tracker of the connection, or null if it doesn't come from a
+     *         {@link DirtyTableTrackingDataSource}
+     */
+    public static DirtyTableTracker getTracker(Connection connection) {
+        if (connection instanceof DirtyTableTracking) {
+            return ((DirtyTableTracking) connection).getDirtyTableTracker();
+        }
+        try {
+            if (connection.isWrapperFor(DirtyTableTracking.class)) {
+                return connection.unwrap(DirtyTableTracking.class).getDirtyTableTracker();
+            }
+        } catch (SQLException e) {
+            // not a wrapper
+        } catch (AbstractMethodError e) {
+            // pre JDBC 4 driver
+        }
+        return null;
+    }
+
+    /**
+     * Records the table written by a statement
+     * 
+     * @param sql the SQL statement
+     */
+    public void statement(String sql) {
+        if (sql == null || isSuspended()) {
+            return;
+        }
+
+        String trimmed = LEADING_COMMENTS.matcher(sql).replaceFirst("");
+        Matcher matcher = WRITE.matcher(trimmed);
+        if (matcher.find()) {
+            dirtyTables.add(normalize(matcher.group(1)));
+        } else if (!READ.matcher(trimmed).find()) {
+            markAllDirty();
+        }
+    }
+
+    private static String normalize(String qualifiedName) {
+        String name = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1).trim();
+        char first = name.charAt(0);
+        if (first == '"' || first == '`' || first == '[') {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name.toUpperCase(Locale.ENGLISH);
+    }
+
+    public void markDirty(String tableName) {
+        dirtyTables.add(normalize(tableName));
+    }
+
+    public void markAllDirty() {
+        allDirty = true;
+    }
+
+    /**
+     * Stops recording the statements of the current thread, typically while
+     * loading a dataset
+     */
+    public void suspend() {
+        suspensions.set(suspensions.get() + 1);
+    }
+
+    public void resume() {
+        suspensions.set(suspensions.get() - 1);
+    }
+
+    /**
+     * @return true if the statements of the current thread are not recorded
+     */
+    public boolean isSuspended() {
+        return suspensions.get() > 0;
+    }
+
+    /**
+     * Records that a dataset has just been loaded
+     * 
+     * @param fingerprint the identity of the loaded content
+     */
+    public void loaded(String fingerprint) {
+        synchronized (dirtyTables) {
+            dirtyTables.clear();
+            this.fingerprint = fingerprint;
+            allDirty = false;
+        }
+    }
+
+    /**
+     * @param fingerprint the identity of the content to be loaded
+     * @return the tables written since this very content was loaded, or null
+     *         if it has to be fully loaded
+     */
+    public Set<String> getDirtyTables(String fingerprint) {
+        synchronized (dirtyTables) {
+            if (allDirty || !fingerprint.equals(this.fingerprint)) {
+                return null;
+            }
+            return new HashSet<String>(dirtyTables);
+        }
+    }
+
+    /**
+     * @return the tables written since the last load, or null if the whole
+     *         database is considered dirty
+     */
+    public Set<String> getDirtyTables() {
+        synchronized (dirtyTables) {
+            return allDirty ? null : new HashSet<String>(dirtyTables);
+        }
+    }
+}
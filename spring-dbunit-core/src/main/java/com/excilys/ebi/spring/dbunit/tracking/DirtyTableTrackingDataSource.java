@@ -0,0 +1,148 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.tracking;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * {@link DataSource} proxy that records in a {@link DirtyTableTracker} the
+ * tables written through its connections, so that datasets configured with
+ * <code>reloadDirtyTablesOnly</code> only reload these tables.
+ * <p>
+ * Statements are observed when they're prepared or executed, which is
+ * conservative: a statement prepared and never executed still marks its table
+ * as dirty.
+ * 
+ * @see DirtyTableTrackingBeanPostProcessor
+ */
+public class DirtyTableTrackingDataSource extends DelegatingDataSource implements DirtyTableTracking {
+
+    private final DirtyTableTracker tracker = new DirtyTableTracker();
+
+    public DirtyTableTrackingDataSource() {
+    }
+
+    public DirtyTableTrackingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public DirtyTableTracker getDirtyTableTracker() {
+        return tracker;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return trackingConnection(getTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return trackingConnection(getTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection trackingConnection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class, DirtyTableTracking.class },
+                new ConnectionInvocationHandler(target));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionInvocationHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private ConnectionInvocationHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            String name = method.getName();
+            if (method.getDeclaringClass() == DirtyTableTracking.class) {
+                return tracker;
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("unwrap") && args[0] == DirtyTableTracking.class) {
+                return proxy;
+            } else if (name.equals("isWrapperFor") && args[0] == DirtyTableTracking.class) {
+                return true;
+            } else if (name.equals("prepareStatement")) {
+                tracker.statement((String) args[0]);
+            } else if (name.equals("prepareCall")) {
+                // stored procedures may write anything
+                tracker.markAllDirty();
+            }
+
+            Object result = DirtyTableTrackingDataSource.invoke(target, method, args);
+
+            if (name.equals("createStatement")) {
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Statement.class }, new StatementInvocationHandler(
+                        (Statement) result, (Connection) proxy));
+            }
+            return result;
+        }
+    }
+
+    private class StatementInvocationHandler implements InvocationHandler {
+
+        private final Statement target;
+
+        private final Connection connection;
+
+        private StatementInvocationHandler(Statement target, Connection connection) {
+            this.target = target;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("getConnection")) {
+                // not the target one, whose statements wouldn't be recorded
+                return connection;
+            } else if ((name.startsWith("execute") || name.equals("addBatch")) && args != null && args.length > 0 && args[0] instanceof String) {
+                tracker.statement((String) args[0]);
+            }
+
+            return DirtyTableTrackingDataSource.invoke(target, method, args);
+        }
+    }
+}
@@ -16,20 +16,34 @@
 package com.excilys.ebi.spring.dbunit.utils;
 
 import static org.springframework.jdbc.datasource.DataSourceUtils.getConnection;
+import static org.springframework.jdbc.datasource.DataSourceUtils.releaseConnection;
 
+import java.io.IOException;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.sql.DataSource;
 
 import org.dbunit.DatabaseUnitException;
 import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.util.QualifiedTableName;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
 import org.springframework.util.StringUtils;
 
 import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
 import com.excilys.ebi.spring.dbunit.config.DatabaseConnectionConfigurer;
 import com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.config.PoolableConnectionConfigurer;
+import com.excilys.ebi.spring.dbunit.database.DatabaseConnectionPool;
+import com.excilys.ebi.spring.dbunit.database.MetadataCachingDatabaseConnection;
+import com.excilys.ebi.spring.dbunit.database.PooledDatabaseConnection;
 
 public class DbUnitUtils {
 
@@ -52,25 +66,181 @@ public class DbUnitUtils {
 
 	public static DatabaseConnection getDatabaseConnection(Connection connection, String schema, DatabaseConnectionConfigurer databaseConnectionConfigurer) throws DatabaseUnitException {
 
-		DatabaseConnection databaseConnection = StringUtils.hasLength(schema) ? new DatabaseConnection(connection, schema) : new DatabaseConnection(connection);
+		DatabaseConnection databaseConnection;
+		if (isCacheMetadata(databaseConnectionConfigurer)) {
+			databaseConnection = StringUtils.hasLength(schema) ? new MetadataCachingDatabaseConnection(connection, schema) : new MetadataCachingDatabaseConnection(connection);
+		} else {
+			databaseConnection = StringUtils.hasLength(schema) ? new DatabaseConnection(connection, schema) : new DatabaseConnection(connection);
+		}
 		DatabaseConfig databaseConfig = databaseConnection.getConfig();
 		databaseConnectionConfigurer.configure(databaseConfig);
 
 		return databaseConnection;
 	}
 
+	/**
+	 * @param dataSource
+	 *            the DataSource the connection comes from, may be null
+	 * @param connection
+	 *            the JDBC connection
+	 * @param schema
+	 *            the schema, may be null
+	 * @param databaseConnectionConfigurer
+	 *            the configuration
+	 * @return a DBUnit connection taken from the {@link DatabaseConnectionPool}
+	 *         , to be given back with
+	 *         {@link #releaseDatabaseConnection(IDatabaseConnection)}, or a new
+	 *         one if the DataSource is unknown or the configuration is not a
+	 *         {@link PoolableConnectionConfigurer}
+	 */
+	public static IDatabaseConnection getDatabaseConnection(DataSource dataSource, Connection connection, String schema,
+			DatabaseConnectionConfigurer databaseConnectionConfigurer) throws DatabaseUnitException {
+
+		String actualSchema = StringUtils.hasLength(schema) ? schema : null;
+		List<Object> key = getPoolKey(actualSchema, databaseConnectionConfigurer);
+		if (dataSource == null || key == null) {
+			return getDatabaseConnection(connection, actualSchema, databaseConnectionConfigurer);
+		}
+		return DatabaseConnectionPool.getInstance().acquire(dataSource, key, connection, actualSchema, databaseConnectionConfigurer,
+				isCacheMetadata(databaseConnectionConfigurer));
+	}
+
+	/**
+	 * Give back a DBUnit connection to the pool it comes from, if any. The
+	 * JDBC connection is not released.
+	 * 
+	 * @param databaseConnection
+	 *            the connection, may be null
+	 */
+	public static void releaseDatabaseConnection(IDatabaseConnection databaseConnection) {
+		if (databaseConnection instanceof PooledDatabaseConnection) {
+			DatabaseConnectionPool.getInstance().release((PooledDatabaseConnection) databaseConnection);
+		}
+	}
+
+	/**
+	 * @return the schema and the key of the configuration, or null if the
+	 *         configuration doesn't tell what it sets on the DatabaseConfig
+	 */
+	private static List<Object> getPoolKey(String schema, DatabaseConnectionConfigurer configuration) {
+		if (configuration instanceof PoolableConnectionConfigurer) {
+			return Arrays.<Object> asList(schema, ((PoolableConnectionConfigurer) configuration).getConnectionKey());
+		}
+		return null;
+	}
+
+	private static boolean isCacheMetadata(DatabaseConnectionConfigurer configuration) {
+		return configuration instanceof PoolableConnectionConfigurer && ((PoolableConnectionConfigurer) configuration).isCacheMetadata();
+	}
+
+	/**
+	 * The JDBC connection is taken from the DataSource, and has to be given
+	 * back with
+	 * {@link #releaseDatabaseConnection(ApplicationContext, DatabaseConnectionConfigurer, IDatabaseConnection)}
+	 * once done with the returned connection.
+	 */
 	public static DatabaseConnection getDatabaseConnection(ApplicationContext applicationContext, DatabaseConnectionConfigurer configuration) throws DatabaseUnitException {
-		DataSource dataSource = null;
 		String schema = null;
 		if (configuration instanceof DataSetConfiguration) {
-			dataSource = lookUpDataSource(applicationContext, ((DataSetConfiguration) configuration).getDataSourceSpringName());
 			schema = ((DataSetConfiguration) configuration).getSchema();
 		}
 		else if (configuration instanceof ExpectedDataSetConfiguration) {
-			dataSource = lookUpDataSource(applicationContext, ((ExpectedDataSetConfiguration) configuration).getDataSourceSpringName());
 			schema = ((ExpectedDataSetConfiguration) configuration).getSchema();
 		}
-		Connection connection = getConnection(dataSource);
+		Connection connection = getConnection(lookUpDataSource(applicationContext, configuration));
 		return getDatabaseConnection(connection, schema, configuration);
 	}
+
+	/**
+	 * Give back a DBUnit connection obtained with
+	 * {@link #getDatabaseConnection(ApplicationContext, DatabaseConnectionConfigurer)}
+	 * , along with its JDBC connection.
+	 * 
+	 * @param databaseConnection
+	 *            the connection, may be null
+	 */
+	public static void releaseDatabaseConnection(ApplicationContext applicationContext, DatabaseConnectionConfigurer configuration, IDatabaseConnection databaseConnection)
+			throws SQLException {
+		if (databaseConnection != null) {
+			releaseDatabaseConnection(databaseConnection);
+			releaseConnection(databaseConnection.getConnection(), lookUpDataSource(applicationContext, configuration));
+		}
+	}
+
+	private static DataSource lookUpDataSource(ApplicationContext applicationContext, DatabaseConnectionConfigurer configuration) {
+		if (configuration instanceof DataSetConfiguration) {
+			return lookUpDataSource(applicationContext, ((DataSetConfiguration) configuration).getDataSourceSpringName());
+		}
+		else if (configuration instanceof ExpectedDataSetConfiguration) {
+			return lookUpDataSource(applicationContext, ((ExpectedDataSetConfiguration) configuration).getDataSourceSpringName());
+		}
+		return null;
+	}
+
+	/**
+	 * @param configuration
+	 *            the configuration
+	 * @param connection
+	 *            the connection
+	 * @return a key identifying the content a configuration loads into a
+	 *         database: URL, user, schema, setup operations, format and
+	 *         decorators, and data files with their last modification time
+	 */
+	public static String getDataSetFingerprint(DataSetConfiguration configuration, IDatabaseConnection connection) throws SQLException, IOException {
+		return getDataSetKey(configuration, connection, true);
+	}
+
+	/**
+	 * @param configuration
+	 *            the configuration
+	 * @param connection
+	 *            the connection
+	 * @return the same key as
+	 *         {@link #getDataSetFingerprint(DataSetConfiguration, IDatabaseConnection)}
+	 *         , without the data files modification time, so that it doesn't
+	 *         change when they are edited
+	 */
+	public static String getDataSetKey(DataSetConfiguration configuration, IDatabaseConnection connection) throws SQLException, IOException {
+		return getDataSetKey(configuration, connection, false);
+	}
+
+	private static String getDataSetKey(DataSetConfiguration configuration, IDatabaseConnection connection, boolean lastModified) throws SQLException, IOException {
+
+		DatabaseMetaData metaData = connection.getConnection().getMetaData();
+
+		StringBuilder key = new StringBuilder();
+		key.append(metaData.getURL()).append('|').append(metaData.getUserName()).append('|').append(connection.getSchema());
+		key.append('|').append(configuration.getDbType()).append('|').append(configuration.getFormat());
+		key.append('|').append(configuration.getFormatOptions().hashCode());
+		key.append('|').append(Arrays.toString(configuration.getSetUpOperation()));
+		key.append('|').append(Arrays.toString(configuration.getTableType()));
+		if (configuration.getDecorators() != null) {
+			for (Class<?> decorator : configuration.getDecorators()) {
+				key.append('|').append(decorator.getName());
+			}
+		}
+		for (Resource resource : DataSetFormat.resolveResources(configuration.getDataSetResourceLocations())) {
+			key.append('|').append(resource.getDescription());
+			if (lastModified) {
+				key.append('@').append(resource.exists() ? resource.lastModified() : -1L);
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Qualifies and escapes a name the same way DBUnit operations do
+	 * 
+	 * @param prefix
+	 *            the prefix, typically the schema, may be null
+	 * @param name
+	 *            the table or column name
+	 * @param connection
+	 *            the connection holding the escape pattern
+	 * @return the name to be used in SQL statements
+	 */
+	public static String getQualifiedName(String prefix, String name, IDatabaseConnection connection) {
+		String escapePattern = (String) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN);
+		return new QualifiedTableName(name, prefix, escapePattern).getQualifiedName();
+	}
 }
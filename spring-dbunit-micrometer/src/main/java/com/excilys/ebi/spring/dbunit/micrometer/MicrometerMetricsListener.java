@@ -0,0 +1,76 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.micrometer;
+
+import java.util.concurrent.TimeUnit;
+
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetricsEvent;
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetricsListener;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes the dataset metrics to Micrometer: a <code>spring.dbunit.step</code>
+ * timer and a <code>spring.dbunit.rows</code> distribution summary, tagged
+ * with the test, phase, step and table.
+ * <p>
+ * This module registers it with the global registry through the
+ * {@link java.util.ServiceLoader}; declare a bean with another registry to
+ * publish elsewhere. Beware that the <code>test</code> tag has one value per
+ * test method.
+ */
+public class MicrometerMetricsListener implements DataSetMetricsListener {
+
+    public static final String TIMER_NAME = "spring.dbunit.step";
+
+    public static final String ROWS_NAME = "spring.dbunit.rows";
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry registry;
+
+    public MicrometerMetricsListener() {
+        this(Metrics.globalRegistry);
+    }
+
+    public MicrometerMetricsListener(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void onEvent(DataSetMetricsEvent event) {
+
+        Tags tags = Tags.of(/**/
+                "test", valueOrNone(event.getTestName()), /**/
+                "phase", event.getPhase() != null ? event.getPhase().name() : NONE, /**/
+                "step", event.getStep().name(), /**/
+                "table", valueOrNone(event.getTableName()));
+
+        Timer.builder(TIMER_NAME).tags(tags).register(registry).record(event.getElapsedNanos(), TimeUnit.NANOSECONDS);
+
+        if (event.getRowCount() >= 0) {
+            DistributionSummary.builder(ROWS_NAME).baseUnit("rows").tags(tags).register(registry).record(event.getRowCount());
+        }
+    }
+
+    private static String valueOrNone(String value) {
+        return value != null ? value : NONE;
+    }
+}
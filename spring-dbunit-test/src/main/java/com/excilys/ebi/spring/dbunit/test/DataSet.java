@@ -112,6 +112,28 @@ public @interface DataSet {
 	 */
 	boolean caseSensitiveTableNames() default ConfigurationDefaults.DEFAULT_CASE_SENSITIVE_TABLE_NAMES;
 
+	/**
+	 * Store the tables of the {@link DataSetFormat#FLYWEIGHT_FLAT},
+	 * {@link DataSetFormat#STAX_FLAT} and {@link DataSetFormat#BINARY} formats
+	 * column by column, with numbers in primitive arrays and strings in per
+	 * column dictionaries, instead of an array of boxed values per row. Worth
+	 * it for big datasets that stay cached.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_COLUMNAR}
+	 */
+	boolean columnar() default ConfigurationDefaults.DEFAULT_COLUMNAR;
+
+	/**
+	 * Parse each table of the {@link DataSetFormat#FLAT},
+	 * {@link DataSetFormat#FLYWEIGHT_FLAT} and {@link DataSetFormat#STAX_FLAT}
+	 * formats only when it's first used. The file is scanned once for the
+	 * location of the tables. Worth it for shared files with many tables, of
+	 * which each test only uses a few.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_LAZY}
+	 */
+	boolean lazy() default ConfigurationDefaults.DEFAULT_LAZY;
+
 	/**
 	 * @see DatabaseConfig#PROPERTY_ESCAPE_PATTERN
 	 * @return default {@link ConfigurationDefaults.DEFAULT_ESCAPE_PATTERN}
@@ -165,4 +187,87 @@ public @interface DataSet {
 	 * @return decorators to be applied on the dataset
 	 */
 	Class<? extends DataSetDecorator>[] decorators() default {};
+
+	/**
+	 * Insert rows while the dataset files are being parsed, instead of loading
+	 * the whole dataset in memory first. Only applies to INSERT, CLEAN_INSERT,
+	 * DELETE_ALL, TRUNCATE_TABLE and NONE operations.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_STREAMING}
+	 */
+	boolean streaming() default ConfigurationDefaults.DEFAULT_STREAMING;
+
+	/**
+	 * Load the dataset once, copy its tables into snapshot tables, and restore
+	 * them from there on the following setups. Only applies to setups starting
+	 * with CLEAN_INSERT, DELETE_ALL or TRUNCATE_TABLE, outside of transactions.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_SNAPSHOT}
+	 */
+	boolean snapshot() default ConfigurationDefaults.DEFAULT_SNAPSHOT;
+
+	/**
+	 * On setup, only reload the tables written since the same dataset was last
+	 * loaded. Requires the DataSource to be a DirtyTableTrackingDataSource,
+	 * for example through a DirtyTableTrackingBeanPostProcessor.
+	 * Queries are considered read only: the tables written by functions called
+	 * in a SELECT are not reloaded, unless marked dirty on the tracker.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_RELOAD_DIRTY_TABLES_ONLY}
+	 */
+	boolean reloadDirtyTablesOnly() default ConfigurationDefaults.DEFAULT_RELOAD_DIRTY_TABLES_ONLY;
+
+	/**
+	 * Share the database metadata (tables, columns, primary keys) with the
+	 * other loads on the same database instead of reading it again. The cache
+	 * has to be invalidated with DatabaseMetadataCache if the schema changes.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_CACHE_METADATA}
+	 */
+	boolean cacheMetadata() default ConfigurationDefaults.DEFAULT_CACHE_METADATA;
+
+	/**
+	 * Number of connections populating the tables that don't reference each
+	 * other at the same time, 1 to populate all the tables on the test
+	 * connection. Tables are ordered after their foreign keys, and setups
+	 * running inside a transaction are never parallelized.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_PARALLELISM}
+	 */
+	int parallelism() default ConfigurationDefaults.DEFAULT_PARALLELISM;
+
+	/**
+	 * Reorder the dataset tables after the foreign keys of the database, so
+	 * that referenced tables are inserted first and deleted last, whatever
+	 * their order in the files. The order is computed once per schema. Not
+	 * applied if the tables have cyclic foreign keys, and prevails over
+	 * streaming.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_ORDER_BY_FOREIGN_KEYS}
+	 */
+	boolean orderByForeignKeys() default ConfigurationDefaults.DEFAULT_ORDER_BY_FOREIGN_KEYS;
+
+	/**
+	 * Disable the foreign key checks while executing the operations, and
+	 * enable them again afterwards, even on failure. Supported on H2, HSQLDB,
+	 * MySQL, PostgreSQL and MSSQL. On H2, HSQLDB and MSSQL, the checks are
+	 * disabled for the whole database, so it's not done inside transactions.
+	 * On PostgreSQL, disabling them needs a superuser; other users get the
+	 * tables ordered by foreign keys and the checks kept.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_DISABLE_FOREIGN_KEY_CHECKS}
+	 */
+	boolean disableForeignKeyChecks() default ConfigurationDefaults.DEFAULT_DISABLE_FOREIGN_KEY_CHECKS;
+
+	/**
+	 * Restart the identity columns of the loaded tables, and the sequences
+	 * behind them, after the greatest loaded value, so that the rows inserted
+	 * by the test don't collide with the dataset ones. All the tables are reset
+	 * with a single query and a single batch. Only identity columns are reset,
+	 * not the sequences used through explicit calls, and not inside
+	 * transactions, as restarting an identity commits them on most databases.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_RESET_SEQUENCES}
+	 */
+	boolean resetSequences() default ConfigurationDefaults.DEFAULT_RESET_SEQUENCES;
 }
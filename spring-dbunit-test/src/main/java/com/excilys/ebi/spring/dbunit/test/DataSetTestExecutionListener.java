@@ -15,19 +15,29 @@
  */
 package com.excilys.ebi.spring.dbunit.test;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import org.dbunit.Assertion;
 import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.slf4j.Logger;
 import org.springframework.test.context.TestContext;
 import org.springframework.test.context.support.AbstractTestExecutionListener;
 
+import com.excilys.ebi.spring.dbunit.BulkDataReader;
 import com.excilys.ebi.spring.dbunit.ConfigurationProcessor;
 import com.excilys.ebi.spring.dbunit.DataLoader;
 import com.excilys.ebi.spring.dbunit.DataReader;
 import com.excilys.ebi.spring.dbunit.DefaultDataLoader;
 import com.excilys.ebi.spring.dbunit.DefaultDataReader;
+import com.excilys.ebi.spring.dbunit.assertion.HashingAssertion;
+import com.excilys.ebi.spring.dbunit.config.ComparisonMode;
 import com.excilys.ebi.spring.dbunit.config.DataSetConfiguration;
 import com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration;
 import com.excilys.ebi.spring.dbunit.config.Phase;
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetrics;
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetricsRecorder;
+import com.excilys.ebi.spring.dbunit.metrics.Step;
 
 /**
  * Spring test framework TestExecutionListener for executing DBUnit operations on JUnit tests setup and teardown. A
@@ -41,6 +51,8 @@ import com.excilys.ebi.spring.dbunit.config.Phase;
  */
 public class DataSetTestExecutionListener extends AbstractTestExecutionListener {
 
+    private static final Logger LOGGER = getLogger(DataSetTestExecutionListener.class);
+
     protected DataLoader dataLoader = new DefaultDataLoader();
 
     protected DataReader dataReader = new DefaultDataReader();
@@ -60,6 +72,7 @@ public class DataSetTestExecutionListener extends AbstractTestExecutionListener
      */
     @Override
     public void beforeTestMethod(TestContext testContext) throws Exception {
+        DataSetMetrics.setCurrentTest(testContext.getTestClass().getName() + "." + testContext.getTestMethod().getName());
         dataLoader.execute(testContext.getApplicationContext(), getConfiguration(testContext), Phase.SETUP);
     }
 
@@ -71,23 +84,93 @@ public class DataSetTestExecutionListener extends AbstractTestExecutionListener
         try {
             checkDatas(testContext);
         } finally {
-            dataLoader.execute(testContext.getApplicationContext(), getConfiguration(testContext), Phase.TEARDOWN);
+            try {
+                dataLoader.execute(testContext.getApplicationContext(), getConfiguration(testContext), Phase.TEARDOWN);
+            } finally {
+                DataSetMetrics.clearCurrentTest();
+            }
         }
     }
 
     private void checkDatas(TestContext testContext) throws Exception {
         ExpectedDataSetConfiguration expectedConfiguration = getExpectedConfiguration(testContext);
         if (expectedConfiguration != null) {
-            IDataSet expectedDataSet = expectedConfiguration.getDataSet();
-            for (String tableName : expectedDataSet.getTableNames()) {
-                IDataSet dataSet = dataReader.execute(testContext.getApplicationContext(), getExpectedConfiguration(testContext), tableName);
-                String[] columnsToIgnore = expectedConfiguration.getColumnsToIgnore();
-                if (columnsToIgnore == null || columnsToIgnore.length == 0) {
-                    Assertion.assertEquals(expectedDataSet.getTable(tableName), dataSet.getTable(tableName));
-                } else {
-                    Assertion.assertEqualsIgnoreCols(expectedDataSet.getTable(tableName), dataSet.getTable(tableName), columnsToIgnore);
-                }
+            DataSetMetricsRecorder metrics = new DataSetMetricsRecorder(DataSetMetrics.getListener(testContext.getApplicationContext()), null);
+            if (dataReader instanceof BulkDataReader) {
+                checkDatas(testContext, (BulkDataReader) dataReader, expectedConfiguration, metrics);
+            } else {
+                checkDatasTableByTable(testContext, expectedConfiguration, metrics);
             }
         }
     }
+
+    private void checkDatas(TestContext testContext, BulkDataReader bulkDataReader, ExpectedDataSetConfiguration expectedConfiguration,
+            DataSetMetricsRecorder metrics) throws Exception {
+
+        ComparisonMode comparisonMode = expectedConfiguration.getComparisonMode();
+        if (comparisonMode == ComparisonMode.STREAMING) {
+            // reading and comparing can't be told apart
+            long start = System.nanoTime();
+            bulkDataReader.verifyStreaming(testContext.getApplicationContext(), expectedConfiguration);
+            metrics.record(Step.ASSERT, null, start, -1);
+            return;
+        }
+
+        IDataSet expectedDataSet = expectedConfiguration.getDataSet();
+        String[] tableNames = expectedDataSet.getTableNames();
+
+        long start = System.nanoTime();
+        if (comparisonMode == ComparisonMode.CHECKSUM) {
+            // only the tables whose checksums differ are read
+            tableNames = bulkDataReader.verifyChecksums(testContext.getApplicationContext(), expectedConfiguration, expectedDataSet);
+        }
+        IDataSet dataSet = bulkDataReader.execute(testContext.getApplicationContext(), expectedConfiguration, tableNames);
+        metrics.record(Step.READ, null, start, -1);
+
+        for (String tableName : tableNames) {
+            start = System.nanoTime();
+            ITable expectedTable = expectedDataSet.getTable(tableName);
+            assertTable(expectedConfiguration, expectedTable, dataSet.getTable(tableName));
+            metrics.record(Step.ASSERT, tableName, start, expectedTable.getRowCount());
+        }
+    }
+
+    /**
+     * For readers that only implement {@link DataReader}: tables are read one
+     * by one, and the comparison modes needing the database are replaced with
+     * {@link ComparisonMode#HASH}
+     */
+    private void checkDatasTableByTable(TestContext testContext, ExpectedDataSetConfiguration expectedConfiguration, DataSetMetricsRecorder metrics)
+            throws Exception {
+
+        ComparisonMode comparisonMode = expectedConfiguration.getComparisonMode();
+        if (comparisonMode == ComparisonMode.STREAMING || comparisonMode == ComparisonMode.CHECKSUM) {
+            LOGGER.info("{} doesn't implement BulkDataReader, comparing with {} instead of {}", dataReader.getClass().getName(), ComparisonMode.HASH,
+                    comparisonMode);
+        }
+
+        IDataSet expectedDataSet = expectedConfiguration.getDataSet();
+        for (String tableName : expectedDataSet.getTableNames()) {
+            long start = System.nanoTime();
+            IDataSet dataSet = dataReader.execute(testContext.getApplicationContext(), expectedConfiguration, tableName);
+            metrics.record(Step.READ, tableName, start, -1);
+
+            start = System.nanoTime();
+            ITable expectedTable = expectedDataSet.getTable(tableName);
+            assertTable(expectedConfiguration, expectedTable, dataSet.getTable(tableName));
+            metrics.record(Step.ASSERT, tableName, start, expectedTable.getRowCount());
+        }
+    }
+
+    private void assertTable(ExpectedDataSetConfiguration expectedConfiguration, ITable expectedTable, ITable actualTable) throws Exception {
+        ComparisonMode comparisonMode = expectedConfiguration.getComparisonMode();
+        String[] columnsToIgnore = expectedConfiguration.getColumnsToIgnore();
+        if (comparisonMode != ComparisonMode.DBUNIT) {
+            HashingAssertion.assertEqualsIgnoreCols(expectedTable, actualTable, columnsToIgnore != null ? columnsToIgnore : new String[0]);
+        } else if (columnsToIgnore == null || columnsToIgnore.length == 0) {
+            Assertion.assertEquals(expectedTable, actualTable);
+        } else {
+            Assertion.assertEqualsIgnoreCols(expectedTable, actualTable, columnsToIgnore);
+        }
+    }
 }
@@ -27,6 +27,7 @@ import org.dbunit.dataset.IDataSet;
 
 import com.excilys.ebi.spring.dbunit.config.DBType;
 import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.config.ComparisonMode;
 import com.excilys.ebi.spring.dbunit.config.Constants.ConfigurationDefaults;
 
 @Target({ ElementType.METHOD, ElementType.TYPE })
@@ -95,6 +96,28 @@ public @interface ExpectedDataSet {
 	 */
 	boolean caseSensitiveTableNames() default ConfigurationDefaults.DEFAULT_CASE_SENSITIVE_TABLE_NAMES;
 
+	/**
+	 * Store the tables of the {@link DataSetFormat#FLYWEIGHT_FLAT},
+	 * {@link DataSetFormat#STAX_FLAT} and {@link DataSetFormat#BINARY} formats
+	 * column by column, with numbers in primitive arrays and strings in per
+	 * column dictionaries, instead of an array of boxed values per row. Worth
+	 * it for big datasets that stay cached.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_COLUMNAR}
+	 */
+	boolean columnar() default ConfigurationDefaults.DEFAULT_COLUMNAR;
+
+	/**
+	 * Parse each table of the {@link DataSetFormat#FLAT},
+	 * {@link DataSetFormat#FLYWEIGHT_FLAT} and {@link DataSetFormat#STAX_FLAT}
+	 * formats only when it's first used. The file is scanned once for the
+	 * location of the tables. Worth it for shared files with many tables, of
+	 * which each test only uses a few.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_LAZY}
+	 */
+	boolean lazy() default ConfigurationDefaults.DEFAULT_LAZY;
+
 	/**
 	 * @see DatabaseConfig#PROPERTY_ESCAPE_PATTERN
 	 * @return default {@link ConfigurationDefaults.DEFAULT_ESCAPE_PATTERN}
@@ -119,4 +142,32 @@ public @interface ExpectedDataSet {
 	 */
 	String schema() default "";
 
+	/**
+	 * Share the database metadata (tables, columns, primary keys) with the
+	 * other loads on the same database instead of reading it again. The cache
+	 * has to be invalidated with DatabaseMetadataCache if the schema changes.
+	 * 
+	 * @return default {@link ConfigurationDefaults.DEFAULT_CACHE_METADATA}
+	 */
+	boolean cacheMetadata() default ConfigurationDefaults.DEFAULT_CACHE_METADATA;
+
+	/**
+	 * How tables are compared with the database. {@link ComparisonMode#HASH}
+	 * ignores row order and only reports the first differing rows.
+	 * {@link ComparisonMode#CHECKSUM} lets the database checksum the tables,
+	 * and only reads the ones that differ, which suits big tables. Checksums
+	 * require a {@link #dbType()} whose dialect supports them: H2,
+	 * PostgreSQL 11+, MySQL 5.5+ or SQL Server 2019+.
+	 * {@link ComparisonMode#STREAMING} doesn't hold the tables in memory, but
+	 * requires the expected rows to be sorted by primary key.
+	 * 
+	 * @return default {@link ComparisonMode#DBUNIT}
+	 */
+	ComparisonMode comparisonMode() default ComparisonMode.DBUNIT;
+
+	/**
+	 * @see DatabaseConfig#PROPERTY_FETCH_SIZE
+	 * @return default {@link ConfigurationDefaults.DEFAULT_FETCH_SIZE}
+	 */
+	int fetchSize() default ConfigurationDefaults.DEFAULT_FETCH_SIZE;
 }
@@ -157,6 +157,8 @@ public class TestConfigurationProcessor implements ConfigurationProcessor<TestCo
                 .withDtdLocation(StringUtils.hasText(annotation.dtdLocation()) ? annotation.dtdLocation() : null)//
                 .withDtdMetadata(annotation.dtdMetadata())//
                 .withCaseSensitiveTableNames(annotation.caseSensitiveTableNames())//
+                .withColumnar(annotation.columnar())//
+                .withLazy(annotation.lazy())//
                 .build())/**/
         .withSetUpOp(annotation.setUpOperation())/**/
         .withSkipOracleRecycleBinTables(annotation.skipOracleRecycleBinTables())/**/
@@ -164,7 +166,15 @@ public class TestConfigurationProcessor implements ConfigurationProcessor<TestCo
         .withTableType(annotation.tableType())/**/
         .withQualifiedTableNames(annotation.qualifiedTableNames())/**/
         .withSchema(annotation.schema())/**/
-        .withDecorators(annotation.decorators()).build();
+        .withDecorators(annotation.decorators())/**/
+        .withStreaming(annotation.streaming())/**/
+        .withSnapshot(annotation.snapshot())/**/
+        .withReloadDirtyTablesOnly(annotation.reloadDirtyTablesOnly())/**/
+        .withCacheMetadata(annotation.cacheMetadata())/**/
+        .withParallelism(annotation.parallelism())/**/
+        .withOrderByForeignKeys(annotation.orderByForeignKeys())/**/
+        .withDisableForeignKeyChecks(annotation.disableForeignKeyChecks())/**/
+        .withResetSequences(annotation.resetSequences()).build();
     }
 
     protected final ExpectedDataSetConfiguration buildExpectedConfiguration(ExpectedDataSet annotation, TestContext testContext) {
@@ -183,10 +193,15 @@ public class TestConfigurationProcessor implements ConfigurationProcessor<TestCo
                 .withDtdLocation(StringUtils.hasText(annotation.dtdLocation()) ? annotation.dtdLocation() : null)//
                 .withDtdMetadata(annotation.dtdMetadata())//
                 .withCaseSensitiveTableNames(annotation.caseSensitiveTableNames())//
+                .withColumnar(annotation.columnar())//
+                .withLazy(annotation.lazy())//
                 .build())/**/
         .withTableType(annotation.tableType())/**/
         .withQualifiedTableNames(annotation.qualifiedTableNames())/**/
         .withSchema(annotation.schema())/**/
+        .withCacheMetadata(annotation.cacheMetadata())/**/
+        .withComparisonMode(annotation.comparisonMode())/**/
+        .withFetchSize(annotation.fetchSize())/**/
         .build();
     }
 
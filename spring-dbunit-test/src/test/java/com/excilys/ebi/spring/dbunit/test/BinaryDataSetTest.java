@@ -0,0 +1,105 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions.newFormatOptions;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import org.dbunit.Assertion;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.FileCopyUtils;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.dataset.binary.BinaryDataSet;
+import com.excilys.ebi.spring.dbunit.dataset.binary.BinaryDataSetCompiler;
+
+public class BinaryDataSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void flatDataSetRoundTrip() throws Exception {
+        IDataSet flat = DataSetFormat.FLAT.loadUnique(newFormatOptions().build(), "classpath:com/excilys/ebi/spring/dbunit/test/dataSet.xml");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDataSet.write(flat, out);
+        IDataSet binary = new BinaryDataSet(new ByteArrayInputStream(out.toByteArray()));
+
+        assertArrayEquals(flat.getTableNames(), binary.getTableNames());
+        Assertion.assertEquals(flat, binary);
+    }
+
+    @Test
+    public void typedValuesRoundTrip() throws Exception {
+        Column[] columns = { new Column("ID", DataType.BIGINT), new Column("AMOUNT", DataType.DECIMAL), new Column("CREATED", DataType.TIMESTAMP),
+                new Column("ACTIVE", DataType.BOOLEAN), new Column("CONTENT", DataType.BINARY), new Column("LABEL", DataType.UNKNOWN) };
+        DefaultTable table = new DefaultTable("TYPED", columns);
+        Timestamp created = new Timestamp(1300000000000L);
+        created.setNanos(123456789);
+        table.addRow(new Object[] { Long.valueOf(-42L), new BigDecimal("-12.345"), created, Boolean.TRUE, new byte[] { 1, 2, 3 }, "label" });
+        table.addRow(new Object[] { Long.valueOf(Long.MAX_VALUE), null, null, Boolean.FALSE, null, "label" });
+
+        File file = folder.newFile("typed.bin");
+        BinaryDataSet.write(new DefaultDataSet(table), file);
+        ITable read = DataSetFormat.BINARY.loadUnique(newFormatOptions().build(), file.toURI().toString()).getTable("TYPED");
+
+        assertEquals(DataType.BIGINT, read.getTableMetaData().getColumns()[0].getDataType());
+        assertEquals(DataType.UNKNOWN, read.getTableMetaData().getColumns()[5].getDataType());
+        assertEquals(2, read.getRowCount());
+        assertEquals(Long.valueOf(-42L), read.getValue(0, "ID"));
+        assertEquals(new BigDecimal("-12.345"), read.getValue(0, "AMOUNT"));
+        assertEquals(created, read.getValue(0, "CREATED"));
+        assertEquals(Boolean.TRUE, read.getValue(0, "ACTIVE"));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) read.getValue(0, "CONTENT"));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), read.getValue(1, "ID"));
+        assertNull(read.getValue(1, "AMOUNT"));
+        assertEquals("label", read.getValue(1, "LABEL"));
+    }
+
+    @Test
+    public void compileDirectory() throws Exception {
+        File source = folder.newFolder("datasets");
+        File nested = new File(source, "nested");
+        nested.mkdir();
+        FileCopyUtils.copy(getClass().getResourceAsStream("dataSet.xml"), new FileOutputStream(new File(source, "dataSet.xml")));
+        FileCopyUtils.copy(getClass().getResourceAsStream("dataSet2.xml"), new FileOutputStream(new File(nested, "dataSet2.xml")));
+        File target = folder.newFolder("compiled");
+
+        int count = new BinaryDataSetCompiler(DataSetFormat.FLAT, newFormatOptions().build()).compileDirectory(source, target);
+
+        assertEquals(2, count);
+        IDataSet binary = DataSetFormat.BINARY.loadUnique(newFormatOptions().build(), new File(target, "nested/dataSet2.bin").toURI().toString());
+        assertEquals("bar2", binary.getTable("MY_ENTITY").getValue(1, "NAME"));
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions.newFormatOptions;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.dbunit.Assertion;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.DataSetProducerAdapter;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.FileCopyUtils;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.dataset.columnar.ColumnarDataSet;
+
+public class ColumnarDataSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void flyWeightColumnarMatchesFlat() throws Exception {
+        String location = "classpath:com/excilys/ebi/spring/dbunit/test/dataSetWithChildren.xml";
+        IDataSet flat = DataSetFormat.FLAT.loadUnique(newFormatOptions().build(), location);
+        IDataSet columnar = DataSetFormat.FLYWEIGHT_FLAT.loadUnique(newFormatOptions().withColumnar(true).build(), location);
+
+        assertArrayEquals(flat.getTableNames(), columnar.getTableNames());
+        Assertion.assertEquals(flat, columnar);
+    }
+
+    @Test
+    public void textValuesStayText() throws Exception {
+        Column[] columns = { new Column("COUNT", DataType.UNKNOWN), new Column("CODE", DataType.UNKNOWN), new Column("RATE", DataType.UNKNOWN),
+                new Column("LABEL", DataType.UNKNOWN), new Column("ZIP", DataType.VARCHAR) };
+        DefaultTable table = new DefaultTable("TEXT", columns);
+        table.addRow(new Object[] { "1", "007", "1.5", "a", "75001" });
+        table.addRow(new Object[] { null, "7", "2.0", null, null });
+        table.addRow(new Object[] { "-42", null, null, "a", "75002" });
+
+        ITable read = new ColumnarDataSet(new DataSetProducerAdapter(new DefaultDataSet(table))).getTable("TEXT");
+
+        assertEquals(3, read.getRowCount());
+        assertEquals("1", read.getValue(0, "COUNT"));
+        assertNull(read.getValue(1, "COUNT"));
+        assertEquals("-42", read.getValue(2, "COUNT"));
+        assertEquals("007", read.getValue(0, "CODE"));
+        assertEquals("7", read.getValue(1, "CODE"));
+        assertEquals("2.0", read.getValue(1, "RATE"));
+        assertNull(read.getValue(2, "RATE"));
+        assertEquals("a", read.getValue(2, "LABEL"));
+        assertNull(read.getValue(1, "LABEL"));
+        assertEquals("75002", read.getValue(2, "ZIP"));
+    }
+
+    @Test
+    public void typedValuesKeepTheirType() throws Exception {
+        Column[] columns = { new Column("ID", DataType.INTEGER), new Column("AMOUNT", DataType.DOUBLE), new Column("ACTIVE", DataType.BOOLEAN) };
+        DefaultTable table = new DefaultTable("TYPED", columns);
+        table.addRow(new Object[] { Integer.valueOf(1), Double.valueOf(0.1), Boolean.TRUE });
+        table.addRow(new Object[] { Integer.valueOf(-2), null, null });
+
+        ITable read = new ColumnarDataSet(new DataSetProducerAdapter(new DefaultDataSet(table))).getTable("TYPED");
+
+        assertEquals(Integer.valueOf(-2), read.getValue(1, "ID"));
+        assertEquals(Double.valueOf(0.1), read.getValue(0, "AMOUNT"));
+        assertNull(read.getValue(1, "AMOUNT"));
+        assertEquals(Boolean.TRUE, read.getValue(0, "ACTIVE"));
+    }
+
+    @Test
+    public void tableDeclaredTwiceIsMerged() throws Exception {
+        File file = folder.newFile("split.xml");
+        FileCopyUtils.copy("<dataset><MY_ENTITY ID=\"id1\" NAME=\"name1\"/><MY_ANOTHER_ENTITY ID=\"id1\"/><MY_ENTITY ID=\"id2\" NAME=\"name2\"/></dataset>"
+                .getBytes("UTF-8"), file);
+
+        IDataSet columnar = DataSetFormat.FLYWEIGHT_FLAT.loadUnique(newFormatOptions().withColumnar(true).build(), file.toURI().toString());
+
+        assertArrayEquals(new String[] { "MY_ENTITY", "MY_ANOTHER_ENTITY" }, columnar.getTableNames());
+        assertEquals(2, columnar.getTable("MY_ENTITY").getRowCount());
+        assertEquals("name2", columnar.getTable("MY_ENTITY").getValue(1, "NAME"));
+    }
+
+    @Test
+    public void tableDeclaredTwiceWithOtherColumnsIsMerged() throws Exception {
+        final ITableMetaData first = new DefaultTableMetaData("MY_ENTITY", new Column[] { new Column("ID", DataType.UNKNOWN),
+                new Column("NAME", DataType.UNKNOWN) });
+        final ITableMetaData second = new DefaultTableMetaData("MY_ENTITY", new Column[] { new Column("LABEL", DataType.UNKNOWN),
+                new Column("ID", DataType.UNKNOWN) });
+        IDataSetProducer producer = new IDataSetProducer() {
+
+            private IDataSetConsumer consumer;
+
+            @Override
+            public void setConsumer(IDataSetConsumer consumer) {
+                this.consumer = consumer;
+            }
+
+            @Override
+            public void produce() throws DataSetException {
+                consumer.startDataSet();
+                consumer.startTable(first);
+                consumer.row(new Object[] { "id1", "name1" });
+                consumer.endTable();
+                consumer.startTable(second);
+                consumer.row(new Object[] { "label2", "id2" });
+                consumer.endTable();
+                consumer.endDataSet();
+            }
+        };
+
+        ITable table = new ColumnarDataSet(producer).getTable("MY_ENTITY");
+
+        assertEquals(3, table.getTableMetaData().getColumns().length);
+        assertEquals(2, table.getRowCount());
+        assertEquals("id1", table.getValue(0, "ID"));
+        assertEquals("name1", table.getValue(0, "NAME"));
+        assertNull(table.getValue(0, "LABEL"));
+        assertEquals("id2", table.getValue(1, "ID"));
+        assertNull(table.getValue(1, "NAME"));
+        assertEquals("label2", table.getValue(1, "LABEL"));
+    }
+}
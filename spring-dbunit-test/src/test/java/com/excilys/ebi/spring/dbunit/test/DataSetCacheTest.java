@@ -0,0 +1,68 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions.newFormatOptions;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.dbunit.dataset.IDataSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetCache;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions;
+
+public class DataSetCacheTest {
+
+    private static final String LOCATION = "classpath:com/excilys/ebi/spring/dbunit/test/dataSet.xml";
+
+    @Before
+    public void clearCache() {
+        DataSetCache.getInstance().clear();
+    }
+
+    @Test
+    public void sameResourceIsParsedOnce() throws Exception {
+        IDataSet first = DataSetFormat.FLAT.loadUnique(newFormatOptions().build(), LOCATION);
+        IDataSet second = DataSetFormat.FLAT.loadUnique(newFormatOptions().build(), LOCATION);
+
+        assertSame(first, second);
+        assertEquals(1, DataSetCache.getInstance().getMissCount());
+        assertEquals(1, DataSetCache.getInstance().getHitCount());
+        assertEquals(4, second.getTable("MY_ENTITY").getRowCount());
+    }
+
+    @Test
+    public void optionsAndFormatArePartOfTheKey() throws Exception {
+        DataSetFormatOptions options = newFormatOptions().build();
+        IDataSet flat = DataSetFormat.FLAT.loadUnique(options, LOCATION);
+
+        options.setColumnSensing(true);
+        assertNotSame(flat, DataSetFormat.FLAT.loadUnique(options, LOCATION));
+        assertNotSame(flat, DataSetFormat.FLYWEIGHT_FLAT.loadUnique(newFormatOptions().build(), LOCATION));
+        assertEquals(3, DataSetCache.getInstance().size());
+    }
+
+    @Test
+    public void streamingDataSetsAreNotCached() throws Exception {
+        DataSetFormat.STREAMING.loadUnique(newFormatOptions().build(), "classpath:com/excilys/ebi/spring/dbunit/test/expectedDataSet.xml");
+
+        assertEquals(0, DataSetCache.getInstance().size());
+    }
+}
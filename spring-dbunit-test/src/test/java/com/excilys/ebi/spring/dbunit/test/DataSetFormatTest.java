@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions.newFormatOptions;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dbunit.Assertion;
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.dataset.xml.flyweight.FlyWeightFlatXmlProducer;
+import com.excilys.ebi.spring.dbunit.dataset.xml.stax.StaxFlatXmlProducer;
+
+public class DataSetFormatTest {
+
+    private static final String PREFIX = "classpath:com/excilys/ebi/spring/dbunit/test/";
+
+    @Test
+    public void loadMultipleKeepsDeclarationOrder() throws Exception {
+        String[] locations = { PREFIX + "dataSet2.xml", PREFIX + "dataSet.xml", PREFIX + "ds.xml", PREFIX + "dataSet2.xml" };
+
+        List<IDataSet> dataSets = DataSetFormat.FLAT.loadMultiple(newFormatOptions().build(), locations);
+
+        assertEquals(4, dataSets.size());
+        assertEquals("foo1", dataSets.get(0).getTable("MY_ENTITY").getValue(0, "ID"));
+        assertEquals("id1", dataSets.get(1).getTable("MY_ENTITY").getValue(0, "ID"));
+        assertEquals("foo1", dataSets.get(3).getTable("MY_ENTITY").getValue(0, "ID"));
+    }
+
+    @Test
+    public void flyWeightReadsRowsOfDifferentShapes() throws Exception {
+        String xml = "<dataset><T A=\"a1\" B=\"b1\"/><T B=\"b2\" A=\"a2\"/><T A=\"a3\" C=\"c3\"/><T A=\"a4\" B=\"b4\"/></dataset>";
+        FlyWeightFlatXmlProducer producer = new FlyWeightFlatXmlProducer(new InputSource(new StringReader(xml)), false, true, false);
+
+        ITable table = new CachedDataSet(producer).getTable("T");
+
+        assertEquals(4, table.getRowCount());
+        assertEquals(3, table.getTableMetaData().getColumns().length);
+        assertEquals("a2", table.getValue(1, "A"));
+        assertEquals("b2", table.getValue(1, "B"));
+        assertNull(table.getValue(2, "B"));
+        assertEquals("c3", table.getValue(2, "C"));
+        assertEquals("b4", table.getValue(3, "B"));
+        assertNull(table.getValue(3, "C"));
+    }
+
+    @Test
+    public void staxFlatMatchesFlat() throws Exception {
+        String location = PREFIX + "dataSetWithChildren.xml";
+
+        IDataSet flat = DataSetFormat.FLAT.loadUnique(newFormatOptions().build(), location);
+        IDataSet stax = DataSetFormat.STAX_FLAT.loadUnique(newFormatOptions().build(), location);
+
+        Assertion.assertEquals(flat, stax);
+    }
+
+    @Test
+    public void staxReadsRowsOfDifferentShapes() throws Exception {
+        String xml = "<dataset><T A=\"a1\" B=\"b1\"/><T B=\"b2\" A=\"a2\"/><T A=\"a3\" C=\"c3\"/><T A=\"a4\" B=\"b4\"/></dataset>";
+        StaxFlatXmlProducer producer = new StaxFlatXmlProducer(new ByteArrayInputStream(xml.getBytes("UTF-8")), null, true, false);
+
+        ITable table = new CachedDataSet(producer).getTable("T");
+
+        assertEquals(4, table.getRowCount());
+        assertEquals(3, table.getTableMetaData().getColumns().length);
+        assertEquals("a2", table.getValue(1, "A"));
+        assertEquals("b2", table.getValue(1, "B"));
+        assertNull(table.getValue(2, "B"));
+        assertEquals("c3", table.getValue(2, "C"));
+        assertNull(table.getValue(3, "C"));
+    }
+
+    @Test
+    public void staxProducesRowsOnDemand() throws Exception {
+        String xml = "<dataset><T A=\"a1\"/><T A=\"a2\"/><U B=\"b1\"/></dataset>";
+        StaxFlatXmlProducer producer = new StaxFlatXmlProducer(new ByteArrayInputStream(xml.getBytes("UTF-8")), null, false, false);
+        final List<Object> rows = new ArrayList<Object>();
+        producer.setConsumer(new DefaultConsumer() {
+            @Override
+            public void row(Object[] values) {
+                rows.add(values[0]);
+            }
+        });
+
+        // dataset start, then the first table along with its first row
+        assertTrue(producer.produceNext());
+        assertTrue(rows.isEmpty());
+        assertTrue(producer.produceNext());
+        assertEquals(Arrays.<Object> asList("a1"), rows);
+        assertTrue(producer.produceNext());
+        assertEquals(Arrays.<Object> asList("a1", "a2"), rows);
+
+        producer.produce();
+        assertEquals(Arrays.<Object> asList("a1", "a2", "b1"), rows);
+        assertFalse(producer.produceNext());
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+
+import com.excilys.ebi.spring.dbunit.config.Phase;
+import com.excilys.ebi.spring.dbunit.metrics.CsvMetricsReportWriter;
+import com.excilys.ebi.spring.dbunit.metrics.DataSetMetricsEvent;
+import com.excilys.ebi.spring.dbunit.metrics.JsonMetricsReportWriter;
+import com.excilys.ebi.spring.dbunit.metrics.MetricsReportWriter;
+import com.excilys.ebi.spring.dbunit.metrics.Step;
+
+/**
+ * Tests the metrics reported while loading and checking datasets, with HSQLDB
+ * in-memory database.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({ "applicationContext-test.xml", "applicationContext-test-hsqldb.xml", "applicationContext-test-metrics.xml" })
+@TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DataSetTestExecutionListener.class })
+@DataSet
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class DataSetMetricsTest {
+
+	private static final String TEST1 = DataSetMetricsTest.class.getName() + ".test1DeleteById";
+
+	@Autowired
+	private IMyEntityDao myEntityDao;
+
+	@Autowired
+	private RecordingMetricsListener listener;
+
+	@Test
+	@ExpectedDataSet
+	public void test1DeleteById() {
+		myEntityDao.deleteById("id1");
+	}
+
+	@Test
+	public void test2Events() {
+		List<DataSetMetricsEvent> events = listener.getEvents();
+
+		assertNotNull(find(events, Phase.SETUP, Step.CONNECT, null));
+		assertNotNull(find(events, Phase.SETUP, Step.PARSE, null));
+		assertNotNull(find(events, Phase.SETUP, Step.EXECUTE, null));
+
+		// CLEAN_INSERT deletes then inserts: the last event of the table is the insert
+		DataSetMetricsEvent insert = find(events, Phase.SETUP, Step.EXECUTE, "MY_ENTITY");
+		assertNotNull(insert);
+		assertEquals(4, insert.getRowCount());
+
+		assertNotNull(find(events, null, Step.READ, null));
+
+		DataSetMetricsEvent assertion = find(events, null, Step.ASSERT, "MY_ENTITY");
+		assertNotNull(assertion);
+		assertEquals(3, assertion.getRowCount());
+
+		assertNull(find(events, null, Step.ASSERT, "UNKNOWN"));
+	}
+
+	private static DataSetMetricsEvent find(List<DataSetMetricsEvent> events, Phase phase, Step step, String tableName) {
+		DataSetMetricsEvent found = null;
+		for (DataSetMetricsEvent event : events) {
+			if (TEST1.equals(event.getTestName()) && event.getPhase() == phase && event.getStep() == step
+					&& (tableName == null ? event.getTableName() == null : tableName.equals(event.getTableName()))) {
+				found = event;
+			}
+		}
+		return found;
+	}
+
+	@Test
+	public void test3ReportWriters() {
+		DataSetMetricsEvent event = new DataSetMetricsEvent("Foo.bar", Phase.SETUP, Step.EXECUTE, "MY,TABLE", 1500, 4);
+
+		StringWriter csv = new StringWriter();
+		MetricsReportWriter csvWriter = new CsvMetricsReportWriter(csv);
+		csvWriter.writeHeader();
+		csvWriter.onEvent(event);
+		assertEquals("test,phase,step,table,elapsedNanos,rowCount\nFoo.bar,SETUP,EXECUTE,\"MY,TABLE\",1500,4\n", csv.toString());
+
+		StringWriter json = new StringWriter();
+		MetricsReportWriter jsonWriter = new JsonMetricsReportWriter(json);
+		jsonWriter.writeHeader();
+		jsonWriter.onEvent(new DataSetMetricsEvent("Foo.\"bar\"", null, Step.ASSERT, null, 1500, -1));
+		assertEquals("{\"test\":\"Foo.\\\"bar\\\"\",\"step\":\"ASSERT\",\"elapsedNanos\":1500,\"rowCount\":-1}\n", json.toString());
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration.newExpectedDataSetConfiguration;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getDatabaseConnection;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.releaseDatabaseConnection;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.excilys.ebi.spring.dbunit.config.DBType;
+import com.excilys.ebi.spring.dbunit.config.DatabaseConnectionConfigurer;
+import com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration;
+import com.excilys.ebi.spring.dbunit.config.PoolableConnectionConfigurer;
+import com.excilys.ebi.spring.dbunit.database.DatabaseConnectionPool;
+import com.excilys.ebi.spring.dbunit.database.PooledDatabaseConnection;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({ "applicationContext-test.xml", "applicationContext-test-h2.xml" })
+public class DatabaseConnectionPoolTest {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        DatabaseConnectionPool.getInstance().clear();
+        connection = dataSource.getConnection();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    private ExpectedDataSetConfiguration configuration(int fetchSize) {
+        return newExpectedDataSetConfiguration().withDbType(DBType.H2).withFetchSize(fetchSize).build();
+    }
+
+    @Test
+    public void releasedConnectionsAreReused() throws Exception {
+        IDatabaseConnection first = getDatabaseConnection(dataSource, connection, null, configuration(100));
+        releaseDatabaseConnection(first);
+        assertEquals(1, DatabaseConnectionPool.getInstance().size());
+
+        IDatabaseConnection second = getDatabaseConnection(dataSource, connection, null, configuration(100));
+        assertSame(first, second);
+        assertSame(connection, second.getConnection());
+        assertEquals(0, DatabaseConnectionPool.getInstance().size());
+        releaseDatabaseConnection(second);
+    }
+
+    @Test
+    public void connectionsInUseAreNotShared() throws Exception {
+        IDatabaseConnection first = getDatabaseConnection(dataSource, connection, null, configuration(100));
+        IDatabaseConnection second = getDatabaseConnection(dataSource, connection, null, configuration(100));
+        assertNotSame(first, second);
+        releaseDatabaseConnection(first);
+        releaseDatabaseConnection(second);
+        assertEquals(2, DatabaseConnectionPool.getInstance().size());
+    }
+
+    @Test
+    public void configurationIsPartOfTheKey() throws Exception {
+        IDatabaseConnection first = getDatabaseConnection(dataSource, connection, null, configuration(100));
+        releaseDatabaseConnection(first);
+
+        IDatabaseConnection second = getDatabaseConnection(dataSource, connection, null, configuration(10));
+        assertNotSame(first, second);
+        assertEquals(10, second.getConfig().getProperty(DatabaseConfig.PROPERTY_FETCH_SIZE));
+        releaseDatabaseConnection(second);
+
+        assertNotSame(first, getDatabaseConnection(dataSource, connection, "PUBLIC", configuration(100)));
+    }
+
+    @Test
+    public void releasedConnectionsAreUnbound() throws Exception {
+        IDatabaseConnection databaseConnection = getDatabaseConnection(dataSource, connection, null, configuration(100));
+        releaseDatabaseConnection(databaseConnection);
+        try {
+            databaseConnection.getConnection();
+            fail("a released connection can't be used");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertFalse(connection.isClosed());
+    }
+
+    @Test
+    public void unknownConfigurationsAreNotPooled() throws Exception {
+        DatabaseConnectionConfigurer configurer = new DatabaseConnectionConfigurer() {
+            @Override
+            public void configure(DatabaseConfig databaseConfig) {
+                databaseConfig.setProperty(DatabaseConfig.PROPERTY_FETCH_SIZE, 10);
+            }
+        };
+        IDatabaseConnection databaseConnection = getDatabaseConnection(dataSource, connection, null, configurer);
+        assertFalse(databaseConnection instanceof PooledDatabaseConnection);
+        releaseDatabaseConnection(databaseConnection);
+        assertEquals(0, DatabaseConnectionPool.getInstance().size());
+    }
+
+    @Test
+    public void customConfigurationsArePooledByKey() throws Exception {
+        PoolableConnectionConfigurer configurer = new PoolableConnectionConfigurer() {
+            @Override
+            public void configure(DatabaseConfig databaseConfig) {
+                databaseConfig.setProperty(DatabaseConfig.PROPERTY_FETCH_SIZE, 10);
+            }
+
+            @Override
+            public boolean isCacheMetadata() {
+                return false;
+            }
+
+            @Override
+            public List<Object> getConnectionKey() {
+                return Arrays.<Object> asList("fetchSize", 10);
+            }
+        };
+        IDatabaseConnection first = getDatabaseConnection(dataSource, connection, null, configurer);
+        releaseDatabaseConnection(first);
+        assertEquals(1, DatabaseConnectionPool.getInstance().size());
+        assertSame(first, getDatabaseConnection(dataSource, connection, null, configurer));
+    }
+
+    @Test
+    public void applicationContextConnectionsAreReleased() throws Exception {
+        ExpectedDataSetConfiguration configuration = configuration(100);
+        IDatabaseConnection databaseConnection = getDatabaseConnection(applicationContext, configuration);
+        Connection jdbcConnection = databaseConnection.getConnection();
+        assertFalse(jdbcConnection.isClosed());
+        releaseDatabaseConnection(applicationContext, configuration, databaseConnection);
+        assertTrue(jdbcConnection.isClosed());
+    }
+}
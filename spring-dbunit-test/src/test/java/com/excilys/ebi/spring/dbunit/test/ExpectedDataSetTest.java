@@ -15,15 +15,25 @@
  */
 package com.excilys.ebi.spring.dbunit.test;
 
+import static com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration.newExpectedDataSetConfiguration;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
 
 import org.dbunit.DatabaseUnitException;
+import org.dbunit.assertion.DbComparisonFailure;
+import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.ITableMetaData;
@@ -39,6 +49,9 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
 
 import com.excilys.ebi.spring.dbunit.ConfigurationProcessor;
+import com.excilys.ebi.spring.dbunit.DataReader;
+import com.excilys.ebi.spring.dbunit.DefaultDataReader;
+import com.excilys.ebi.spring.dbunit.config.ComparisonMode;
 import com.excilys.ebi.spring.dbunit.config.DBType;
 import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
 import com.excilys.ebi.spring.dbunit.config.ExpectedDataSetConfiguration;
@@ -132,11 +145,19 @@ public class ExpectedDataSetTest {
         public void test1() {
             /* NO-OP */
         }
+
+        @ExpectedDataSet(dbType = DBType.H2, comparisonMode = ComparisonMode.CHECKSUM)
+        public void test2() {
+            /* NO-OP */
+        }
     }
 
     @Autowired
     private IMyEntityDao myEntityDao;
 
+    @Autowired
+    private ApplicationContext applicationContext;
+
     private ConfigurationProcessor<TestContext> configurationProcessor = new TestConfigurationProcessor();
 
     @Test
@@ -156,6 +177,7 @@ public class ExpectedDataSetTest {
         assertFalse(configuration.getFormatOptions().isDtdMetadata());
         assertNull(configuration.getSchema());
         assertArrayEquals(new String[] { "TABLE" }, configuration.getTableType());
+        assertEquals(100, configuration.getFetchSize());
     }
 
     @Test
@@ -218,4 +240,195 @@ public class ExpectedDataSetTest {
         myEntity2.setName("name5");
         myEntityDao.saveOrUpdate(myEntity2);
     }
+
+    @Test
+    @DataSet(cacheMetadata = true)
+    @ExpectedDataSet(cacheMetadata = true)
+    public void testExpectedDataSetCachedMetadata() {
+        myEntityDao.deleteById("id1");
+    }
+
+    @Test
+    @DataSet
+    @ExpectedDataSet(comparisonMode = ComparisonMode.HASH)
+    public void testExpectedDataSetHash() {
+        myEntityDao.deleteById("id1");
+    }
+
+    @Test
+    @DataSet
+    @ExpectedDataSet(value = "expectedDataSetWithColumnToIgnore.xml", columnsToIgnore = "ID", comparisonMode = ComparisonMode.HASH)
+    public void testExpectedDataSetHashWithColumnToIgnore() {
+        MyEntity myEntity = new MyEntity();
+        myEntity.setId("id6");
+        myEntity.setName("name6");
+        myEntityDao.saveOrUpdate(myEntity);
+        MyEntity myEntity2 = new MyEntity();
+        myEntity2.setId("id5");
+        myEntity2.setName("name5");
+        myEntityDao.saveOrUpdate(myEntity2);
+    }
+
+    @Test
+    @DataSet
+    public void testReadTables() throws Exception {
+        ExpectedDataSetConfiguration configuration = newExpectedDataSetConfiguration()/**/
+        .withColumnsToIgnore(new String[] { "id" })/**/
+        .withDbType(DBType.H2).build();
+
+        IDataSet dataSet = new DefaultDataReader().execute(applicationContext, configuration, new String[] { "my_entity", "MY_ANOTHER_ENTITY" });
+
+        // the tables are cached and the connection is back in the pool
+        assertEquals(0, ((org.apache.tomcat.jdbc.pool.DataSource) applicationContext.getBean(DataSource.class)).getActive());
+
+        assertEquals(2, dataSet.getTableNames().length);
+        ITable table = dataSet.getTable("MY_ENTITY");
+        assertEquals(1, table.getTableMetaData().getColumns().length);
+        assertEquals("NAME", table.getTableMetaData().getColumns()[0].getColumnName());
+        assertEquals(4, table.getRowCount());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("name" + (i + 1), table.getValue(i, "NAME"));
+        }
+        assertEquals(1, dataSet.getTable("MY_ANOTHER_ENTITY").getRowCount());
+    }
+
+    @Test
+    @DataSet
+    public void testReadTable() throws Exception {
+        ExpectedDataSetConfiguration configuration = newExpectedDataSetConfiguration()/**/
+        .withColumnsToIgnore(new String[] { "id" })/**/
+        .withDbType(DBType.H2).build();
+
+        IDataSet dataSet = new DefaultDataReader().execute(applicationContext, configuration, "my_entity");
+
+        // the connection is released, and all the columns are read
+        assertEquals(0, ((org.apache.tomcat.jdbc.pool.DataSource) applicationContext.getBean(DataSource.class)).getActive());
+
+        ITable table = dataSet.getTable("MY_ENTITY");
+        assertEquals(2, table.getTableMetaData().getColumns().length);
+        assertEquals(4, table.getRowCount());
+        assertEquals("id1", table.getValue(0, "ID"));
+    }
+
+    @Test
+    @DataSet
+    @ExpectedDataSet(dbType = DBType.H2, comparisonMode = ComparisonMode.CHECKSUM)
+    public void testExpectedDataSetChecksum() {
+        myEntityDao.deleteById("id1");
+    }
+
+    @Test
+    @DataSet
+    @ExpectedDataSet(value = "expectedDataSetWithColumnToIgnore.xml", columnsToIgnore = "ID", dbType = DBType.H2, comparisonMode = ComparisonMode.CHECKSUM)
+    public void testExpectedDataSetChecksumWithColumnToIgnore() {
+        MyEntity myEntity = new MyEntity();
+        myEntity.setId("id6");
+        myEntity.setName("name6");
+        myEntityDao.saveOrUpdate(myEntity);
+        MyEntity myEntity2 = new MyEntity();
+        myEntity2.setId("id5");
+        myEntity2.setName("name5");
+        myEntityDao.saveOrUpdate(myEntity2);
+    }
+
+    @Test
+    @DataSet
+    public void testVerifyChecksums() throws Exception {
+        ExpectedDataSetConfiguration configuration = newExpectedDataSetConfiguration()/**/
+        .withDataSetResourceLocations(new String[] { "classpath:com/excilys/ebi/spring/dbunit/test/expectedDataSet.xml" })/**/
+        .withDbType(DBType.H2).build();
+
+        // MY_ENTITY still holds the row the expected dataset doesn't
+        String[] mismatches = new DefaultDataReader().verifyChecksums(applicationContext, configuration, configuration.getDataSet());
+
+        assertArrayEquals(new String[] { "MY_ENTITY" }, mismatches);
+    }
+
+    @Test
+    @DataSet
+    public void testPlainDataReaderComparesTableByTable() throws Exception {
+        myEntityDao.deleteById("id1");
+
+        final List<String> readTables = new ArrayList<String>();
+        DataSetTestExecutionListener listener = new DataSetTestExecutionListener();
+        listener.dataReader = new DataReader() {
+            @Override
+            public IDataSet execute(ApplicationContext context, ExpectedDataSetConfiguration configuration, String tableName) throws Exception {
+                readTables.add(tableName);
+                return new DefaultDataReader().execute(context, configuration, tableName);
+            }
+        };
+
+        // checksums need a BulkDataReader, the tables are read and hashed instead
+        listener.afterTestMethod(new TestContextMock(ClassForTest.class, ClassForTest.class.getMethod("test2")) {
+            @Override
+            public ApplicationContext getApplicationContext() {
+                return applicationContext;
+            }
+        });
+
+        assertEquals(2, readTables.size());
+    }
+
+    @Test
+    @DataSet
+    @ExpectedDataSet(comparisonMode = ComparisonMode.STREAMING, fetchSize = 2)
+    public void testExpectedDataSetStreaming() {
+        myEntityDao.deleteById("id1");
+    }
+
+    @Test
+    @DataSet
+    @ExpectedDataSet(value = "expectedDataSetWithColumnToIgnore.xml", columnsToIgnore = "ID", comparisonMode = ComparisonMode.STREAMING)
+    public void testExpectedDataSetStreamingWithColumnToIgnore() {
+        MyEntity myEntity = new MyEntity();
+        myEntity.setId("id6");
+        myEntity.setName("name6");
+        myEntityDao.saveOrUpdate(myEntity);
+        MyEntity myEntity2 = new MyEntity();
+        myEntity2.setId("id5");
+        myEntity2.setName("name5");
+        myEntityDao.saveOrUpdate(myEntity2);
+    }
+
+    @Test
+    @DataSet
+    public void testVerifyStreamingReportsDifferences() throws Exception {
+        ExpectedDataSetConfiguration configuration = newExpectedDataSetConfiguration()/**/
+        .withDataSetResourceLocations(new String[] { "classpath:com/excilys/ebi/spring/dbunit/test/expectedDataSet.xml" })/**/
+        .withDbType(DBType.H2).build();
+
+        try {
+            new DefaultDataReader().verifyStreaming(applicationContext, configuration);
+            fail("MY_ENTITY still holds the row the expected dataset doesn't");
+        } catch (DbComparisonFailure e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Row mismatch in table MY_ENTITY: 0 of 3 expected rows missing, 1 of 4 actual rows unexpected"));
+            assertEquals("\n[ID=id1, NAME=name1]", e.getActual());
+        }
+        DataSource dataSource = applicationContext.getBean(DataSource.class);
+        assertEquals(0, ((org.apache.tomcat.jdbc.pool.DataSource) dataSource).getActive());
+
+        // autocommit was disabled for the cursor only
+        Connection connection = dataSource.getConnection();
+        try {
+            assertTrue(connection.getAutoCommit());
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    @DataSet
+    public void testVerifyStreamingRequiresSortedRows() throws Exception {
+        ExpectedDataSetConfiguration configuration = newExpectedDataSetConfiguration()/**/
+        .withDataSetResourceLocations(new String[] { "classpath:com/excilys/ebi/spring/dbunit/test/expectedDataSetUnsorted.xml" })/**/
+        .withDbType(DBType.H2).build();
+
+        try {
+            new DefaultDataReader().verifyStreaming(applicationContext, configuration);
+            fail("id2 comes after id3");
+        } catch (DataSetException e) {
+            assertEquals("Expected rows of table MY_ENTITY must be sorted by [ID] to be streamed", e.getMessage());
+        }
+    }
 }
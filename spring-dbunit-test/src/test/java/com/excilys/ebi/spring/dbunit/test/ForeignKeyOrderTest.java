@@ -0,0 +1,130 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetConfiguration.newDataSetConfiguration;
+import static com.excilys.ebi.spring.dbunit.utils.DbUnitUtils.getDatabaseConnection;
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
+import com.excilys.ebi.spring.dbunit.config.DBType;
+import com.excilys.ebi.spring.dbunit.dialect.HsqldbDialect;
+import com.excilys.ebi.spring.dbunit.operation.TruncateAllOperation;
+
+/**
+ * Tests reordering the dataset tables after the foreign keys, or disabling
+ * the checks. Children come before their parents in the dataset, so they can
+ * only be inserted after reordering or without checks.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({ "applicationContext-test.xml", "applicationContext-test-hsqldb.xml" })
+@TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DataSetTestExecutionListener.class })
+public class ForeignKeyOrderTest {
+
+	@Autowired
+	private IMyEntityDao myEntityDao;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	@DataSet(value = "dataSetWithChildren.xml", orderByForeignKeys = true, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testLoadAllOrdered() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(3, new JdbcTemplate(dataSource).queryForObject("select count(*) from MY_CHILD_ENTITY", Integer.class).intValue());
+	}
+
+	@Test
+	@DataSet(value = "dataSetWithChildren.xml", orderByForeignKeys = true, streaming = true, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testLoadAllOrderedNotStreamed() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(3, new JdbcTemplate(dataSource).queryForObject("select count(*) from MY_CHILD_ENTITY", Integer.class).intValue());
+	}
+
+	@Test
+	@DataSet(value = "dataSetWithChildren.xml", disableForeignKeyChecks = true, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testLoadAllWithoutForeignKeyChecks() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(3, new JdbcTemplate(dataSource).queryForObject("select count(*) from MY_CHILD_ENTITY", Integer.class).intValue());
+	}
+
+	@Test(expected = DataIntegrityViolationException.class)
+	@DataSet(value = "dataSetWithChildren.xml", disableForeignKeyChecks = true, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testForeignKeyChecksEnabledAfterSetup() {
+		new JdbcTemplate(dataSource).update("insert into MY_CHILD_ENTITY (ID, PARENT_ID) values ('orphan', 'unknown')");
+	}
+
+	@Test
+	@DataSet(value = "dataSetWithChildren.xml", orderByForeignKeys = true, setUpOperation = { DBOperation.TRUNCATE_ALL, DBOperation.INSERT }, tearDownOperation = DBOperation.TRUNCATE_ALL)
+	public void testLoadAllOrderedTruncateAll() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(3, new JdbcTemplate(dataSource).queryForObject("select count(*) from MY_CHILD_ENTITY", Integer.class).intValue());
+	}
+
+	/**
+	 * HSQLDB behaving like MySQL, whose checks are per session and which
+	 * can tell if they are enabled
+	 */
+	private static class PerSessionChecksDialect extends HsqldbDialect {
+
+		@Override
+		public boolean isForeignKeyChecksPerSession() {
+			return true;
+		}
+
+		@Override
+		public String getForeignKeyChecksEnabledSql() {
+			return "SELECT PROPERTY_VALUE = 'true' FROM INFORMATION_SCHEMA.SYSTEM_PROPERTIES WHERE PROPERTY_NAME = 'sql.ref_integrity'";
+		}
+	}
+
+	@Test
+	public void testTruncateAllKeepsForeignKeyChecksDisabled() throws Exception {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		Connection connection = dataSource.getConnection();
+		try {
+			IDatabaseConnection databaseConnection = getDatabaseConnection(connection, null, newDataSetConfiguration().withDbType(DBType.HSQLDB).build());
+			jdbcTemplate.execute("SET DATABASE REFERENTIAL INTEGRITY FALSE");
+			try {
+				new TruncateAllOperation(new PerSessionChecksDialect()).execute(databaseConnection,
+						databaseConnection.createDataSet(new String[] { "MY_ENTITY", "MY_CHILD_ENTITY" }));
+
+				// the populator disabled them, they must still be
+				jdbcTemplate.update("insert into MY_CHILD_ENTITY (ID, PARENT_ID) values ('orphan', 'unknown')");
+				jdbcTemplate.update("delete from MY_CHILD_ENTITY");
+			} finally {
+				jdbcTemplate.execute("SET DATABASE REFERENTIAL INTEGRITY TRUE");
+			}
+		} finally {
+			connection.close();
+		}
+	}
+}
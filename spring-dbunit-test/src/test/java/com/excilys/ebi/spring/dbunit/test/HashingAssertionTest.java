@@ -0,0 +1,96 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+
+import org.dbunit.assertion.DbComparisonFailure;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Test;
+
+import com.excilys.ebi.spring.dbunit.assertion.HashingAssertion;
+
+public class HashingAssertionTest {
+
+    private static DefaultTable expected(Object[]... rows) throws Exception {
+        DefaultTable table = new DefaultTable("T", new Column[] { new Column("ID", DataType.UNKNOWN), new Column("AMOUNT", DataType.UNKNOWN) });
+        for (Object[] row : rows) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    private static DefaultTable actual(Object[]... rows) throws Exception {
+        DefaultTable table = new DefaultTable("T", new Column[] { new Column("AMOUNT", DataType.DECIMAL), new Column("ID", DataType.VARCHAR) });
+        for (Object[] row : rows) {
+            table.addRow(new Object[] { row[1], row[0] });
+        }
+        return table;
+    }
+
+    @Test
+    public void rowOrderAndNumberScaleDontMatter() throws Exception {
+        HashingAssertion.assertEquals(expected(new Object[] { "a", "1.50" }, new Object[] { "b", "2" }, new Object[] { "b", "2" }),
+                actual(new Object[] { "b", new BigDecimal("2.00") }, new Object[] { "a", new BigDecimal("1.5") }, new Object[] { "b", new BigDecimal("2") }));
+    }
+
+    @Test
+    public void duplicatesAreCounted() throws Exception {
+        try {
+            HashingAssertion.assertEquals(expected(new Object[] { "a", "1" }, new Object[] { "a", "1" }),
+                    actual(new Object[] { "a", new BigDecimal("1") }, new Object[] { "b", new BigDecimal("1") }));
+            fail("one a is missing");
+        } catch (DbComparisonFailure e) {
+            assertTrue(e.getReason(), e.getReason().contains("1 of 2 expected rows missing, 1 of 2 actual rows unexpected"));
+            assertEquals("\n[ID=a, AMOUNT=1]", e.getExpected());
+            assertEquals("\n[ID=b, AMOUNT=1]", e.getActual());
+        }
+    }
+
+    @Test
+    public void reportedRowsAreBounded() throws Exception {
+        Object[][] rows = new Object[100][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] { "id" + i, new BigDecimal(i) };
+        }
+
+        try {
+            HashingAssertion.assertEquals(expected(), actual(rows));
+            fail("all rows are unexpected");
+        } catch (DbComparisonFailure e) {
+            assertTrue(e.getActual(), e.getActual().endsWith("\n... and 90 more"));
+            assertEquals("", e.getExpected());
+        }
+    }
+
+    @Test
+    public void ignoredColumnsAreNotCompared() throws Exception {
+        HashingAssertion.assertEqualsIgnoreCols(expected(new Object[] { "a", "1" }), actual(new Object[] { "a", new BigDecimal("2") }),
+                new String[] { "amount" });
+    }
+
+    @Test(expected = DbComparisonFailure.class)
+    public void columnsMustMatch() throws Exception {
+        DefaultTable expected = new DefaultTable("T", new Column[] { new Column("ID", DataType.UNKNOWN) });
+        HashingAssertion.assertEquals(expected, actual());
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions.newFormatOptions;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.dbunit.Assertion;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.FileCopyUtils;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.dataset.LazyCompositeDataSet;
+import com.excilys.ebi.spring.dbunit.dataset.xml.lazy.LazyFlatXmlDataSet;
+
+public class LazyFlatXmlDataSetTest {
+
+    private static final String PREFIX = "classpath:com/excilys/ebi/spring/dbunit/test/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void lazyMatchesFlat() throws Exception {
+        IDataSet flat = DataSetFormat.FLAT.loadUnique(newFormatOptions().build(), PREFIX + "dataSetWithChildren.xml");
+
+        for (DataSetFormat format : new DataSetFormat[] { DataSetFormat.FLAT, DataSetFormat.FLYWEIGHT_FLAT, DataSetFormat.STAX_FLAT }) {
+            IDataSet lazy = format.loadUnique(newFormatOptions().withLazy(true).build(), PREFIX + "dataSetWithChildren.xml");
+
+            assertTrue(lazy instanceof LazyFlatXmlDataSet);
+            assertArrayEquals(flat.getTableNames(), lazy.getTableNames());
+            Assertion.assertEquals(flat, lazy);
+        }
+    }
+
+    @Test
+    public void onlyRequestedTablesAreParsed() throws Exception {
+        File file = folder.newFile("lazy.xml");
+        FileCopyUtils.copy(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!DOCTYPE dataset SYSTEM \"missing.dtd\">\n<!-- <BROKEN/> -->\n"
+                + "<dataset>\n  <A ID=\"1\" NAME=\"x &gt; y\"/>\n  <B ID=\"&undefined;\"/>\n  <A ID=\"2\" NAME='&apos;z&apos;'></A>\n</dataset>")
+                .getBytes("UTF-8"), file);
+
+        IDataSet lazy = DataSetFormat.STAX_FLAT.loadUnique(newFormatOptions().withLazy(true).build(), file.toURI().toString());
+
+        // B can't be parsed, but isn't needed to list the tables or read A
+        assertArrayEquals(new String[] { "A", "B" }, lazy.getTableNames());
+        ITable a = lazy.getTable("A");
+        assertEquals(2, a.getRowCount());
+        assertEquals("x > y", a.getValue(0, "NAME"));
+        assertEquals("'z'", a.getValue(1, "NAME"));
+
+        try {
+            lazy.getTable("B");
+            fail("B is malformed");
+        } catch (DataSetException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void compositeCombinesTablesOnDemand() throws Exception {
+        IDataSet first = DataSetFormat.FLAT.loadUnique(newFormatOptions().withLazy(true).build(), PREFIX + "dataSet.xml");
+        IDataSet second = DataSetFormat.FLAT.loadUnique(newFormatOptions().withLazy(true).build(), PREFIX + "dataSet2.xml");
+
+        IDataSet composite = new LazyCompositeDataSet(new IDataSet[] { first, second }, false);
+
+        ITable myEntity = composite.getTable("MY_ENTITY");
+        assertEquals(first.getTable("MY_ENTITY").getRowCount() + second.getTable("MY_ENTITY").getRowCount(), myEntity.getRowCount());
+        assertEquals("foo1", myEntity.getValue(first.getTable("MY_ENTITY").getRowCount(), "ID"));
+    }
+}
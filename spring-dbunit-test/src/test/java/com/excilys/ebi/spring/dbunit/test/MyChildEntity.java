@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+
+/**
+ * Test entity, referencing a {@link MyEntity} with a foreign key
+ */
+@SuppressWarnings("serial")
+@Entity(name = "MY_CHILD_ENTITY")
+public class MyChildEntity implements Serializable {
+
+	private String id;
+
+	private MyEntity parent;
+
+	@Id
+	@Column(name = "ID", nullable = false, updatable = false)
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	@ManyToOne(optional = false)
+	@JoinColumn(name = "PARENT_ID", nullable = false)
+	public MyEntity getParent() {
+		return parent;
+	}
+
+	public void setParent(MyEntity parent) {
+		this.parent = parent;
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+
+import com.excilys.ebi.spring.dbunit.tracking.DirtyTableTracker;
+import com.excilys.ebi.spring.dbunit.tracking.DirtyTableTracking;
+
+/**
+ * Tests reloading only the tables written by the previous tests, with HSQLDB
+ * in-memory database.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({ "applicationContext-test.xml", "applicationContext-test-hsqldb.xml", "applicationContext-test-tracking.xml" })
+@TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DataSetTestExecutionListener.class })
+@DataSet(reloadDirtyTablesOnly = true)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MyEntityDaoDirtyTablesTest {
+
+	@Autowired
+	private IMyEntityDao myEntityDao;
+
+	@Autowired
+	private DataSource dataSource;
+
+	private DirtyTableTracker getTracker() {
+		assertTrue(dataSource instanceof DirtyTableTracking);
+		return ((DirtyTableTracking) dataSource).getDirtyTableTracker();
+	}
+
+	@Test
+	public void test1LoadAll() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(Collections.emptySet(), getTracker().getDirtyTables());
+	}
+
+	@Test
+	public void test2DeleteById() {
+		myEntityDao.deleteById("id1");
+		assertEquals(3, myEntityDao.loadAll().size());
+		assertEquals(Collections.singleton("MY_ENTITY"), getTracker().getDirtyTables());
+	}
+
+	@Test
+	public void test3LoadAllAfterDelete() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(Collections.emptySet(), getTracker().getDirtyTables());
+	}
+
+	@Test
+	public void test4Statements() {
+		DirtyTableTracker tracker = new DirtyTableTracker();
+		tracker.loaded("fingerprint");
+		tracker.statement("/* comment */ select * from MY_ENTITY");
+		tracker.statement("insert into PUBLIC.\"MY_ENTITY\" (ID, NAME) values (?, ?)");
+		tracker.statement("update my_another_entity set NAME=?");
+		assertEquals(2, tracker.getDirtyTables("fingerprint").size());
+		assertTrue(tracker.getDirtyTables("fingerprint").contains("MY_ANOTHER_ENTITY"));
+		assertEquals(null, tracker.getDirtyTables("other"));
+
+		tracker.statement("create table FOO (ID int)");
+		assertEquals(null, tracker.getDirtyTables("fingerprint"));
+	}
+
+	@Test
+	public void test5SuspendedPerThread() throws Exception {
+		final DirtyTableTracker tracker = new DirtyTableTracker();
+		tracker.loaded("fingerprint");
+		tracker.suspend();
+		try {
+			tracker.statement("delete from MY_ENTITY");
+			Thread other = new Thread() {
+				@Override
+				public void run() {
+					tracker.statement("update MY_ANOTHER_ENTITY set NAME=?");
+				}
+			};
+			other.start();
+			other.join();
+		} finally {
+			tracker.resume();
+		}
+		assertEquals(Collections.singleton("MY_ANOTHER_ENTITY"), tracker.getDirtyTables());
+	}
+
+	@Test
+	public void test6StatementConnection() throws Exception {
+		Connection connection = dataSource.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				assertSame(connection, statement.getConnection());
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+}
@@ -16,9 +16,15 @@
 package com.excilys.ebi.spring.dbunit.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
 
+import javax.sql.DataSource;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,7 +33,10 @@ import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
 
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
 import com.excilys.ebi.spring.dbunit.config.DBType;
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.operation.SnapshotOperation;
 
 /**
  * Tests with H2 in-memory database.
@@ -43,9 +52,66 @@ public class MyEntityDaoH2Test {
 	@Autowired
 	private IMyEntityDao myEntityDao;
 
+	@Autowired
+	private DataSource dataSource;
+
 	@Test
 	public void testLoadAll() {
 		List<MyEntity> entities = myEntityDao.loadAll();
 		assertEquals(4, entities.size());
 	}
+
+	@Test
+	@DataSet(dbType = DBType.H2, format = DataSetFormat.FLYWEIGHT_FLAT, streaming = true)
+	public void testLoadAllStreaming() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(4, entities.size());
+		assertEquals("name1", myEntityDao.getById("id1").getName());
+	}
+
+	@Test
+	@DataSet(dbType = DBType.H2, snapshot = true)
+	public void testDeleteByIdSnapshot() {
+		myEntityDao.deleteById("id1");
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(3, entities.size());
+	}
+
+	@Test
+	@DataSet(dbType = DBType.H2, snapshot = true)
+	public void testLoadAllSnapshot() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(4, entities.size());
+		assertEquals("name1", myEntityDao.getById("id1").getName());
+	}
+
+	@Test
+	@DataSet(dbType = DBType.H2, snapshot = true)
+	public void testClearDropsSnapshotTables() throws SQLException {
+		assertTrue(countSnapshotTables() > 0);
+		SnapshotOperation.clear();
+		assertEquals(0, countSnapshotTables());
+	}
+
+	private int countSnapshotTables() throws SQLException {
+		Connection connection = dataSource.getConnection();
+		try {
+			ResultSet tables = connection.getMetaData().getTables(null, null, "SDBU%", null);
+			int count = 0;
+			while (tables.next()) {
+				count++;
+			}
+			return count;
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	@DataSet(dbType = DBType.H2, setUpOperation = DBOperation.BULK_CLEAN_INSERT)
+	public void testLoadAllBulk() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(4, entities.size());
+		assertEquals("name1", myEntityDao.getById("id1").getName());
+	}
 }
@@ -18,10 +18,13 @@ package com.excilys.ebi.spring.dbunit.test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
 import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.database.DatabaseMetadataCache;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -97,6 +100,17 @@ public class MyEntityDaoHSQLDBTest {
 		assertEquals("bar1", entity.getName());
 	}
 
+	@Test
+	@DataSet(locations = { "dataSet.xml", "dataSet2.xml" }, streaming = true)
+	public void testMultipleDataSetsStreaming() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(6, entities.size());
+
+		MyEntity entity = myEntityDao.getById("foo2");
+		assertNotNull("entity with id=foo2 not found", entity);
+		assertEquals("bar2", entity.getName());
+	}
+
 	@Test
 	public void testGetByName() {
 		MyEntity entity = myEntityDao.getByName("name1");
@@ -111,4 +125,59 @@ public class MyEntityDaoHSQLDBTest {
 		assertEquals(2, entities.size());
 	}
 
+	@Test
+	@DataSet(snapshot = true)
+	public void testDeleteByIdSnapshot() {
+		myEntityDao.deleteById("id1");
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(3, entities.size());
+	}
+
+	@Test
+	@DataSet(snapshot = true)
+	public void testLoadAllSnapshot() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(4, entities.size());
+		assertEquals("name1", myEntityDao.getById("id1").getName());
+	}
+
+	@Test
+	@DataSet(cacheMetadata = true)
+	public void testDeleteByIdCachedMetadata() {
+		assertTrue(DatabaseMetadataCache.getInstance().size() > 0);
+		myEntityDao.deleteById("id1");
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(3, entities.size());
+	}
+
+	@Test
+	@DataSet(format = DataSetFormat.FLYWEIGHT_FLAT, columnar = true)
+	public void testLoadAllColumnar() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(4, entities.size());
+		assertEquals("name1", myEntityDao.getById("id1").getName());
+	}
+
+	@Test
+	@DataSet(lazy = true)
+	public void testLoadAllLazy() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(4, entities.size());
+		assertEquals("name1", myEntityDao.getById("id1").getName());
+	}
+
+	@Test
+	@DataSet(setUpOperation = DBOperation.BULK_CLEAN_INSERT)
+	public void testLoadAllBulk() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(4, entities.size());
+		assertEquals("name1", myEntityDao.getById("id1").getName());
+	}
+
+	@Test
+	@DataSet(setUpOperation = { DBOperation.TRUNCATE_ALL, DBOperation.INSERT }, tearDownOperation = DBOperation.TRUNCATE_ALL)
+	public void testLoadAllTruncateAll() {
+		List<MyEntity> entities = myEntityDao.loadAll();
+		assertEquals(4, entities.size());
+	}
 }
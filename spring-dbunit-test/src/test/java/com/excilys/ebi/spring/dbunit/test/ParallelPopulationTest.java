@@ -0,0 +1,69 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
+
+/**
+ * Tests populating tables on several connections, with HSQLDB in-memory
+ * database. Children come before their parents in the dataset, so they can
+ * only be inserted after the foreign keys.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({ "applicationContext-test.xml", "applicationContext-test-hsqldb.xml" })
+@TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DataSetTestExecutionListener.class })
+public class ParallelPopulationTest {
+
+	@Autowired
+	private IMyEntityDao myEntityDao;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	@DataSet(value = "dataSetWithChildren.xml", parallelism = 4, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testLoadAllParallel() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(3, new JdbcTemplate(dataSource).queryForObject("select count(*) from MY_CHILD_ENTITY", Integer.class).intValue());
+	}
+
+	@Test
+	@DataSet(value = "dataSetWithChildren.xml", parallelism = 4, setUpOperation = DBOperation.BULK_CLEAN_INSERT, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testBulkLoadParallel() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(3, new JdbcTemplate(dataSource).queryForObject("select count(*) from MY_CHILD_ENTITY", Integer.class).intValue());
+	}
+
+	@Test
+	@DataSet(value = "dataSetWithChildren.xml", parallelism = 4, disableForeignKeyChecks = true, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testLoadAllParallelWithoutForeignKeyChecks() {
+		assertEquals(4, myEntityDao.loadAll().size());
+		assertEquals(3, new JdbcTemplate(dataSource).queryForObject("select count(*) from MY_CHILD_ENTITY", Integer.class).intValue());
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+
+import com.excilys.ebi.spring.dbunit.config.DBOperation;
+
+/**
+ * Tests restarting identity columns after the loaded values, with HSQLDB
+ * in-memory database. The dataset sets the identities explicitly, so the
+ * next generated value collides with a loaded row unless it's restarted.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({ "applicationContext-test.xml", "applicationContext-test-hsqldb.xml" })
+@TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DataSetTestExecutionListener.class })
+public class SequenceResetTest {
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	@DataSet(value = "dataSetWithIdentities.xml", resetSequences = true, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testInsertAfterReset() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("insert into MY_IDENTITY_ENTITY (NAME) values ('name6')");
+		assertEquals(6L, jdbcTemplate.queryForObject("select ID from MY_IDENTITY_ENTITY where NAME = 'name6'", Long.class).longValue());
+	}
+
+	@Test
+	@DataSet(value = "dataSetWithIdentities.xml", resetSequences = true, cacheMetadata = true, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testInsertAfterResetCachedMetadata() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("insert into MY_IDENTITY_ENTITY (NAME) values ('name6')");
+		assertEquals(6L, jdbcTemplate.queryForObject("select ID from MY_IDENTITY_ENTITY where NAME = 'name6'", Long.class).longValue());
+	}
+
+	@Test(expected = DataIntegrityViolationException.class)
+	@DataSet(value = "dataSetWithIdentities.xml", setUpOperation = DBOperation.INSERT, tearDownOperation = DBOperation.DELETE_ALL)
+	public void testInsertWithoutReset() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		// restart the identity, in case a previous test moved it
+		jdbcTemplate.execute("alter table MY_IDENTITY_ENTITY alter column ID restart with 1");
+		jdbcTemplate.update("insert into MY_IDENTITY_ENTITY (NAME) values ('name1bis')");
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static com.excilys.ebi.spring.dbunit.config.DataSetFormatOptions.newFormatOptions;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.dbunit.dataset.IDataSet;
+import org.junit.Test;
+
+import com.excilys.ebi.spring.dbunit.config.DataSetFormat;
+import com.excilys.ebi.spring.dbunit.dataset.StringPool;
+
+public class StringPoolTest {
+
+    private static final String PREFIX = "classpath:com/excilys/ebi/spring/dbunit/test/";
+
+    @Test
+    public void internReturnsPooledString() {
+        StringPool pool = new StringPool(100);
+        String first = new String("value");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(new String("value")));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+    }
+
+    @Test
+    public void poolIsBounded() {
+        StringPool pool = new StringPool(64);
+        for (int i = 0; i < 10000; i++) {
+            pool.intern("value" + i);
+        }
+        assertTrue(pool.size() <= 64);
+    }
+
+    @Test
+    public void emptyPoolDoesntIntern() {
+        StringPool pool = new StringPool(0);
+        String value = new String("value");
+        assertSame(value, pool.intern(value));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void producersShareStrings() throws Exception {
+        IDataSet first = DataSetFormat.FLYWEIGHT_FLAT.loadUnique(newFormatOptions().build(), PREFIX + "dataSet.xml");
+        IDataSet second = DataSetFormat.FLYWEIGHT_FLAT.loadUnique(newFormatOptions().build(), PREFIX + "dataSetWithChildren.xml");
+
+        assertEquals("name1", first.getTable("MY_ENTITY").getValue(0, "NAME"));
+        assertSame(first.getTable("MY_ENTITY").getValue(0, "NAME"), second.getTable("MY_ENTITY").getValue(0, "NAME"));
+    }
+
+    @Test
+    public void concurrentIntern() throws Exception {
+        final StringPool pool = new StringPool(1000);
+        final String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        pool.intern("value" + (j % 100));
+                    }
+                    results[index] = pool.intern(new String("value0"));
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (String result : results) {
+            assertSame(results[0], result);
+        }
+        assertEquals(8 * 10001, pool.getHitCount() + pool.getMissCount());
+    }
+}
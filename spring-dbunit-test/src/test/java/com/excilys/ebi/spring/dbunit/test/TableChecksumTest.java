@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011-2012 eBusiness Information, Groupe Excilys (www.excilys.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.excilys.ebi.spring.dbunit.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Test;
+
+import com.excilys.ebi.spring.dbunit.assertion.TableChecksum;
+import com.excilys.ebi.spring.dbunit.dialect.H2Dialect;
+
+public class TableChecksumTest {
+
+    private static final Column[] COLUMNS = { new Column("ID", DataType.INTEGER), new Column("NAME", DataType.VARCHAR),
+            new Column("AMOUNT", DataType.DECIMAL), new Column("ACTIVE", DataType.BOOLEAN), new Column("CREATED", DataType.TIMESTAMP) };
+
+    private static DefaultTable table(Object[]... rows) throws Exception {
+        DefaultTable table = new DefaultTable("T", COLUMNS);
+        for (Object[] row : rows) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    @Test
+    public void h2ComputesTheSameChecksum() throws Exception {
+        Connection connection = DriverManager.getConnection("jdbc:h2:mem:checksum", "sa", "");
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("CREATE TABLE T (ID INTEGER PRIMARY KEY, NAME VARCHAR(64), AMOUNT DECIMAL(12, 2), ACTIVE BOOLEAN, CREATED TIMESTAMP)");
+            statement.execute("INSERT INTO T VALUES (1, 'é', 1.50, TRUE, '2012-01-01 10:00:00'), (2, NULL, 10, FALSE, NULL), (3, '', 0, NULL, '2012-01-01 10:00:00.5')");
+
+            ResultSet resultSet = statement.executeQuery(new H2Dialect().getTableChecksumSql("T", new String[] { "ID", "NAME", "AMOUNT", "ACTIVE", "CREATED" },
+                    new int[] { Types.INTEGER, Types.VARCHAR, Types.DECIMAL, Types.BOOLEAN, Types.TIMESTAMP }));
+            resultSet.next();
+            TableChecksum actual = new TableChecksum(resultSet.getLong(1), resultSet.getBigDecimal(2).toBigInteger());
+
+            TableChecksum expected = TableChecksum.of(table(new Object[] { "3", "", "0.00", null, "2012-01-01 10:00:00.5" }, new Object[] { "1", "é", "1.5",
+                    "true", "2012-01-01 10:00:00" }, new Object[] { "2", null, "10", "false", null }), COLUMNS);
+
+            assertEquals(expected, actual);
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void everyRowCounts() throws Exception {
+        TableChecksum checksum = TableChecksum.of(table(new Object[] { "1", "a", "1", "true", null }), COLUMNS);
+        TableChecksum withDuplicate = TableChecksum.of(table(new Object[] { "1", "a", "1", "true", null }, new Object[] { "1", "a", "1", "true", null }), COLUMNS);
+
+        assertEquals(2, withDuplicate.getRowCount());
+        assertEquals(checksum.getSum().multiply(BigInteger.valueOf(2)), withDuplicate.getSum());
+        assertFalse(checksum.equals(TableChecksum.of(table(new Object[] { "1", "b", "1", "true", null }), COLUMNS)));
+        assertEquals(new TableChecksum(0, BigInteger.ZERO), TableChecksum.of(table(), COLUMNS));
+    }
+
+    @Test
+    public void decimalsIgnoreTheirScale() throws Exception {
+        Column[] columns = { new Column("AMOUNT", DataType.DECIMAL) };
+        DefaultTable table = new DefaultTable("T", columns);
+        table.addRow(new Object[] { new BigDecimal("100.00") });
+        DefaultTable other = new DefaultTable("T", columns);
+        other.addRow(new Object[] { "100" });
+
+        assertEquals(TableChecksum.of(table, columns), TableChecksum.of(other, columns));
+    }
+
+    @Test
+    public void nullsDifferFromAnyString() throws Exception {
+        TableChecksum withNull = TableChecksum.of(table(new Object[] { "1", null, "1", "true", null }), COLUMNS);
+
+        assertFalse(withNull.equals(TableChecksum.of(table(new Object[] { "1", String.valueOf((char) 0), "1", "true", null }), COLUMNS)));
+        assertFalse(withNull.equals(TableChecksum.of(table(new Object[] { "1", "", "1", "true", null }), COLUMNS)));
+    }
+}